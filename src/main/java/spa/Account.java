@@ -25,6 +25,7 @@ import spa.db.DbUtils;
 import spa.db.DerivedDbTable;
 import spa.db.VersionedEntityDbTable;
 import spa.db.VersionedPersistentDbTable;
+import spa.util.ClockCache;
 import spa.util.Convert;
 import spa.util.Listener;
 import spa.util.Listeners;
@@ -33,12 +34,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 @SuppressWarnings({"UnusedDeclaration", "SuspiciousNameCombination"})
 public final class Account {
@@ -169,9 +172,12 @@ public final class Account {
         public void trim(int height) {
             try (Connection con = Db.db.getConnection();
                  PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM account_guaranteed_balance "
-                         + "WHERE height < ? AND height >= 0")) {
+                         + "WHERE height < ? AND height >= 0 LIMIT ?")) {
                 pstmtDelete.setInt(1, height - Constants.GUARANTEED_BALANCE_CONFIRMATIONS);
-                pstmtDelete.executeUpdate();
+                pstmtDelete.setInt(2, TRIM_BATCH_SIZE);
+                while (pstmtDelete.executeUpdate() >= TRIM_BATCH_SIZE) {
+                    trimCheckpoint();
+                }
             } catch (SQLException e) {
                 throw new RuntimeException(e.toString(), e);
             }
@@ -179,8 +185,15 @@ public final class Account {
 
     };
 
-    private static final ConcurrentMap<DbKey, byte[]> publicKeyCache = Spa.getBooleanProperty("spa.enablePublicKeyCache") ?
-            new ConcurrentHashMap<>() : null;
+    /** Maximum number of cached public keys */
+    private static final int PUBLIC_KEY_CACHE_SIZE = Spa.getIntProperty("spa.publicKeyCacheSize", 100000);
+
+    /** Public key cache indexed by account identifier, keys which are not used are evicted */
+    private static final ClockCache<Long, byte[]> publicKeyCache = Spa.getBooleanProperty("spa.enablePublicKeyCache") ?
+            new ClockCache<>(PUBLIC_KEY_CACHE_SIZE) : null;
+
+    /** Maximum number of accounts in a public key prefetch query */
+    private static final int PREFETCH_BATCH_SIZE = 100;
 
     private static final Listeners<Account,Event> listeners = new Listeners<>();
 
@@ -244,23 +257,72 @@ public final class Account {
     }
 
     public static byte[] getPublicKey(long id) {
-        DbKey dbKey = publicKeyDbKeyFactory.newKey(id);
         byte[] key = null;
         if (publicKeyCache != null) {
-            key = publicKeyCache.get(dbKey);
+            key = publicKeyCache.get(id);
         }
         if (key == null) {
-            PublicKey publicKey = publicKeyTable.get(dbKey);
+            PublicKey publicKey = publicKeyTable.get(publicKeyDbKeyFactory.newKey(id));
             if (publicKey == null || (key = publicKey.publicKey) == null) {
                 return null;
             }
             if (publicKeyCache != null) {
-                publicKeyCache.put(dbKey, key);
+                publicKeyCache.put(id, key);
             }
         }
         return key;
     }
 
+    /**
+     * Load the public keys for a set of accounts into the public key cache
+     *
+     * This is used before processing a page of transactions loaded from the database,
+     * so the sender public keys are read with a few queries instead of one query per
+     * transaction.
+     *
+     * @param   accountIds              Account identifiers
+     */
+    public static void prefetchPublicKeys(Collection<Long> accountIds) {
+        if (publicKeyCache == null) {
+            return;
+        }
+        List<Long> missingIds = new ArrayList<>();
+        for (Long accountId : new HashSet<>(accountIds)) {
+            if (accountId != 0 && !publicKeyCache.containsKey(accountId)) {
+                missingIds.add(accountId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return;
+        }
+        try (Connection con = Db.db.getConnection()) {
+            for (int start = 0; start < missingIds.size(); start += PREFETCH_BATCH_SIZE) {
+                List<Long> batch = missingIds.subList(start, Math.min(start + PREFETCH_BATCH_SIZE, missingIds.size()));
+                StringBuilder sb = new StringBuilder("SELECT account_id, public_key FROM public_key WHERE latest = TRUE AND account_id IN (?");
+                for (int i = 1; i < batch.size(); i++) {
+                    sb.append(", ?");
+                }
+                sb.append(")");
+                try (PreparedStatement pstmt = con.prepareStatement(sb.toString())) {
+                    int i = 0;
+                    for (Long accountId : batch) {
+                        pstmt.setLong(++i, accountId);
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            byte[] key = rs.getBytes("public_key");
+                            if (key != null) {
+                                publicKeyCache.put(rs.getLong("account_id"), key);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
     static Account addOrGetAccount(long id) {
         if (id == 0) {
             throw new IllegalArgumentException("Invalid accountId 0");
@@ -284,15 +346,21 @@ public final class Account {
         if (publicKeyCache != null) {
 
             Spa.getBlockchainProcessor().addListener(block -> {
-                publicKeyCache.remove(accountDbKeyFactory.newKey(block.getGeneratorId()));
+                publicKeyCache.remove(block.getGeneratorId());
                 block.getTransactions().forEach(transaction -> {
-                    publicKeyCache.remove(accountDbKeyFactory.newKey(transaction.getSenderId()));
+                    publicKeyCache.remove(transaction.getSenderId());
                     if (!transaction.getAppendages(appendix -> (appendix instanceof Appendix.PublicKeyAnnouncement), false).isEmpty()) {
-                        publicKeyCache.remove(accountDbKeyFactory.newKey(transaction.getRecipientId()));
+                        publicKeyCache.remove(transaction.getRecipientId());
                     }
                 });
             }, BlockchainProcessor.Event.BLOCK_POPPED);
 
+            Spa.getBlockchainProcessor().addListener(block -> {
+                publicKeyCache.put(block.getGeneratorId(), block.getGeneratorPublicKey());
+                block.getTransactions().forEach(transaction ->
+                        publicKeyCache.put(transaction.getSenderId(), transaction.getSenderPublicKey()));
+            }, BlockchainProcessor.Event.BLOCK_PUSHED);
+
             Spa.getBlockchainProcessor().addListener(block -> publicKeyCache.clear(), BlockchainProcessor.Event.RESCAN_BEGIN);
 
         }
@@ -493,7 +561,7 @@ public final class Account {
             }
         }
         if (publicKeyCache != null) {
-            publicKeyCache.put(dbKey, key);
+            publicKeyCache.put(id, key);
         }
         this.publicKey = publicKey;
     }
@@ -127,10 +127,13 @@ public class AccountLedger {
             if (trimKeep <= 0)
                 return;
             try (Connection con = db.getConnection();
-                 PreparedStatement pstmt = con.prepareStatement("DELETE FROM account_ledger WHERE height <= ?")) {
+                 PreparedStatement pstmt = con.prepareStatement("DELETE FROM account_ledger WHERE height <= ? LIMIT ?")) {
                 int trimHeight = Math.max(blockchain.getHeight() - trimKeep, 0);
                 pstmt.setInt(1, trimHeight);
-                pstmt.executeUpdate();
+                pstmt.setInt(2, TRIM_BATCH_SIZE);
+                while (pstmt.executeUpdate() >= TRIM_BATCH_SIZE) {
+                    trimCheckpoint();
+                }
             } catch (SQLException e) {
                 throw new RuntimeException(e.toString(), e);
             }
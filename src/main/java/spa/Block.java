@@ -17,6 +17,7 @@
 package spa;
 
 import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
 
 import java.math.BigInteger;
 import java.util.List;
@@ -65,4 +66,6 @@ public interface Block {
 
     JSONObject getJSONObject();
 
+    JSONStreamAware getJSONStream();
+
 }
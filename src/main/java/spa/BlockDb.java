@@ -17,6 +17,7 @@
 package spa;
 
 import spa.db.DbUtils;
+import spa.db.EntityDbTable;
 import spa.util.Logger;
 
 import java.math.BigInteger;
@@ -106,6 +107,10 @@ final class BlockDb {
                 return block.getHeight() <= height;
             }
         }
+        // Check the existence filter
+        if (!ExistenceFilter.mightContainBlock(blockId)) {
+            return false;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT height FROM block WHERE id = ?")) {
@@ -239,9 +244,12 @@ final class BlockDb {
             byte[] blockSignature = rs.getBytes("block_signature");
             byte[] payloadHash = rs.getBytes("payload_hash");
             long id = rs.getLong("id");
-            return new BlockImpl(version, timestamp, previousBlockId, totalAmountAPL, totalFeeAPL, payloadLength, payloadHash,
+            long storePosition = rs.getLong("store_position");
+            BlockImpl block = new BlockImpl(version, timestamp, previousBlockId, totalAmountAPL, totalFeeAPL, payloadLength, payloadHash,
                     generatorId, generationSignature, blockSignature, previousBlockHash,
                     cumulativeDifficulty, baseTarget, nextBlockId, height, id, loadTransactions ? TransactionDb.findBlockTransactions(con, id) : null);
+            block.setStorePosition(storePosition);
+            return block;
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
@@ -249,10 +257,12 @@ final class BlockDb {
 
     static void saveBlock(Connection con, BlockImpl block) {
         try {
+            ExistenceFilter.addBlock(block.getId());
+            block.setStorePosition(BlockStore.storeBlock(block));
             try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO block (id, version, timestamp, previous_block_id, "
                     + "total_amount, total_fee, payload_length, previous_block_hash, cumulative_difficulty, "
-                    + "base_target, height, generation_signature, block_signature, payload_hash, generator_id) "
-                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    + "base_target, height, generation_signature, block_signature, payload_hash, generator_id, store_position) "
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
                 int i = 0;
                 pstmt.setLong(++i, block.getId());
                 pstmt.setInt(++i, block.getVersion());
@@ -269,6 +279,7 @@ final class BlockDb {
                 pstmt.setBytes(++i, block.getBlockSignature());
                 pstmt.setBytes(++i, block.getPayloadHash());
                 pstmt.setLong(++i, block.getGeneratorId());
+                DbUtils.setLongZeroToNull(pstmt, ++i, block.getStorePosition());
                 pstmt.executeUpdate();
                 TransactionDb.saveTransactions(con, block.getTransactions());
             }
@@ -384,6 +395,9 @@ final class BlockDb {
                         try {
                             stmt.executeUpdate("TRUNCATE TABLE " + table.toString());
                         } catch (SQLException ignore) {}
+                        if (table instanceof EntityDbTable) {
+                            ((EntityDbTable<?>)table).tableChanged();
+                        }
                     }
                 });
                 stmt.executeUpdate("SET REFERENTIAL_INTEGRITY TRUE");
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa;
+
+import spa.crypto.Crypto;
+
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * Block header received from a peer during headers-first synchronization
+ *
+ * The header bytes are the signed block bytes as returned by BlockImpl.getHeaderBytes()
+ * and contain everything needed to link the header to its predecessor and to verify the
+ * block signature without downloading the block transactions.
+ */
+final class BlockHeader {
+
+    /** Block version */
+    private final int version;
+
+    /** Block timestamp */
+    private final int timestamp;
+
+    /** Previous block identifier */
+    private final long previousBlockId;
+
+    /** Number of transactions in the block */
+    private final int numberOfTransactions;
+
+    /** Generator public key */
+    private final byte[] generatorPublicKey;
+
+    /** Generation signature */
+    private final byte[] generationSignature;
+
+    /** Previous block hash (null for version 1 blocks) */
+    private final byte[] previousBlockHash;
+
+    /** Block signature */
+    private final byte[] blockSignature;
+
+    /** Header bytes */
+    private final byte[] bytes;
+
+    /** Block identifier */
+    private final long id;
+
+    /**
+     * Parse the block header bytes
+     *
+     * @param   bytes                   Header bytes
+     * @return                          Block header
+     * @throws  SpaException.NotValidException  Header bytes are not valid
+     */
+    static BlockHeader parse(byte[] bytes) throws SpaException.NotValidException {
+        try {
+            return new BlockHeader(bytes);
+        } catch (BufferUnderflowException | IllegalArgumentException exc) {
+            throw new SpaException.NotValidException("Invalid block header: " + exc.toString(), exc);
+        }
+    }
+
+    /**
+     * Create the block header
+     *
+     * @param   bytes                   Header bytes
+     */
+    private BlockHeader(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        version = buffer.getInt();
+        if (version < 1) {
+            throw new IllegalArgumentException("Invalid block version " + version);
+        }
+        timestamp = buffer.getInt();
+        previousBlockId = buffer.getLong();
+        numberOfTransactions = buffer.getInt();
+        if (numberOfTransactions < 0 || numberOfTransactions > Constants.MAX_NUMBER_OF_TRANSACTIONS) {
+            throw new IllegalArgumentException("Invalid number of transactions " + numberOfTransactions);
+        }
+        buffer.position(buffer.position() + (version < 3 ? 4 + 4 : 8 + 8) + 4 + 32);
+        generatorPublicKey = new byte[32];
+        buffer.get(generatorPublicKey);
+        if (version == 1) {
+            generationSignature = new byte[64];
+            buffer.get(generationSignature);
+            previousBlockHash = null;
+        } else {
+            generationSignature = new byte[32];
+            buffer.get(generationSignature);
+            previousBlockHash = new byte[32];
+            buffer.get(previousBlockHash);
+        }
+        blockSignature = new byte[64];
+        buffer.get(blockSignature);
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Extra bytes following block header");
+        }
+        this.bytes = bytes;
+        byte[] hash = Crypto.sha256().digest(bytes);
+        id = new BigInteger(1, new byte[] {hash[7], hash[6], hash[5], hash[4], hash[3], hash[2], hash[1], hash[0]}).longValue();
+    }
+
+    /**
+     * Return the block identifier
+     *
+     * @return                          Block identifier
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Return the block version
+     *
+     * @return                          Block version
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the block timestamp
+     *
+     * @return                          Block timestamp
+     */
+    int getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return the previous block identifier
+     *
+     * @return                          Previous block identifier
+     */
+    long getPreviousBlockId() {
+        return previousBlockId;
+    }
+
+    /**
+     * Return the number of transactions in the block
+     *
+     * @return                          Number of transactions
+     */
+    int getNumberOfTransactions() {
+        return numberOfTransactions;
+    }
+
+    /**
+     * Return the generator public key
+     *
+     * @return                          Generator public key
+     */
+    byte[] getGeneratorPublicKey() {
+        return generatorPublicKey;
+    }
+
+    /**
+     * Return the generation signature
+     *
+     * @return                          Generation signature
+     */
+    byte[] getGenerationSignature() {
+        return generationSignature;
+    }
+
+    /**
+     * Return the previous block hash
+     *
+     * @return                          Previous block hash or null for a version 1 block
+     */
+    byte[] getPreviousBlockHash() {
+        return previousBlockHash;
+    }
+
+    /**
+     * Return the header bytes
+     *
+     * @return                          Header bytes
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Verify the block signature
+     *
+     * @return                          TRUE if the signature is valid
+     */
+    boolean checkSignature() {
+        MessageDigest digest = Crypto.sha256();
+        digest.update(bytes, 0, bytes.length - 64);
+        return Crypto.verifyHash(blockSignature, digest.digest(), generatorPublicKey, version >= 3);
+    }
+}
@@ -22,6 +22,7 @@ import spa.util.Convert;
 import spa.util.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
@@ -55,6 +56,7 @@ final class BlockImpl implements Block {
     private volatile String stringId = null;
     private volatile long generatorId;
     private volatile byte[] bytes = null;
+    private volatile long storePosition;
 
 
     BlockImpl(int version, int timestamp, long previousBlockId, long totalAmountAPL, long totalFeeAPL, int payloadLength, byte[] payloadHash,
@@ -260,7 +262,38 @@ final class BlockImpl implements Block {
         return json;
     }
 
+    @Override
+    public JSONStreamAware getJSONStream() {
+        if (storePosition != 0 && BlockStore.isEnabled()) {
+            JSONStreamAware json = BlockStore.getBlockJSON(storePosition, getId());
+            if (json != null) {
+                return json;
+            }
+        }
+        return getJSONObject();
+    }
+
+    long getStorePosition() {
+        return storePosition;
+    }
+
+    void setStorePosition(long storePosition) {
+        this.storePosition = storePosition;
+    }
+
     static BlockImpl parseBlock(JSONObject blockData) throws SpaException.NotValidException {
+        return parseBlock(blockData, true);
+    }
+
+    /**
+     * Parse a block
+     *
+     * @param   blockData               Block JSON
+     * @param   checkSignature          TRUE to verify the block signature
+     * @return                          Block
+     * @throws  SpaException.NotValidException  Block is not valid
+     */
+    static BlockImpl parseBlock(JSONObject blockData, boolean checkSignature) throws SpaException.NotValidException {
         try {
             int version = ((Long) blockData.get("version")).intValue();
             int timestamp = ((Long) blockData.get("timestamp")).intValue();
@@ -279,7 +312,7 @@ final class BlockImpl implements Block {
             }
             BlockImpl block = new BlockImpl(version, timestamp, previousBlock, totalAmountAPL, totalFeeAPL, payloadLength, payloadHash, generatorPublicKey,
                     generationSignature, blockSignature, previousBlockHash, blockTransactions);
-            if (!block.checkSignature()) {
+            if (checkSignature && !block.checkSignature()) {
                 throw new SpaException.NotValidException("Invalid block signature");
             }
             return block;
@@ -296,44 +329,58 @@ final class BlockImpl implements Block {
 
     byte[] bytes() {
         if (bytes == null) {
-            ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 4 + (version < 3 ? (4 + 4) : (8 + 8)) + 4 + 32 + 32 + (32 + 32) + (blockSignature != null ? 64 : 0));
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            buffer.putInt(version);
-            buffer.putInt(timestamp);
-            buffer.putLong(previousBlockId);
-            buffer.putInt(getTransactions().size());
-            if (version < 3) {
-                buffer.putInt((int) (totalAmountAPL / Constants.ONE_SPA));
-                buffer.putInt((int) (totalFeeAPL / Constants.ONE_SPA));
-            } else {
-                buffer.putLong(totalAmountAPL);
-                buffer.putLong(totalFeeAPL);
-            }
-            buffer.putInt(payloadLength);
-            buffer.put(payloadHash);
-            buffer.put(getGeneratorPublicKey());
-            buffer.put(generationSignature);
-            if (version > 1) {
-                buffer.put(previousBlockHash);
-            }
-            if (blockSignature != null) {
-                buffer.put(blockSignature);
-            }
-            bytes = buffer.array();
+            bytes = getHeaderBytes(getTransactions().size());
         }
         return bytes;
     }
 
+    /**
+     * Return the block bytes without loading the block transactions
+     *
+     * @param   numberOfTransactions    Number of transactions in the block
+     * @return                          Block bytes
+     */
+    byte[] getHeaderBytes(int numberOfTransactions) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 4 + (version < 3 ? (4 + 4) : (8 + 8)) + 4 + 32 + 32 + (32 + 32) + (blockSignature != null ? 64 : 0));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(version);
+        buffer.putInt(timestamp);
+        buffer.putLong(previousBlockId);
+        buffer.putInt(numberOfTransactions);
+        if (version < 3) {
+            buffer.putInt((int) (totalAmountAPL / Constants.ONE_SPA));
+            buffer.putInt((int) (totalFeeAPL / Constants.ONE_SPA));
+        } else {
+            buffer.putLong(totalAmountAPL);
+            buffer.putLong(totalFeeAPL);
+        }
+        buffer.putInt(payloadLength);
+        buffer.put(payloadHash);
+        buffer.put(getGeneratorPublicKey());
+        buffer.put(generationSignature);
+        if (version > 1) {
+            buffer.put(previousBlockHash);
+        }
+        if (blockSignature != null) {
+            buffer.put(blockSignature);
+        }
+        return buffer.array();
+    }
+
     boolean verifyBlockSignature() {
         return checkSignature() && Account.setOrVerify(getGeneratorId(), getGeneratorPublicKey());
     }
 
     private volatile boolean hasValidSignature = false;
 
-    private boolean checkSignature() {
+    boolean checkSignature() {
         if (! hasValidSignature) {
-            byte[] data = Arrays.copyOf(bytes(), bytes.length - 64);
-            hasValidSignature = blockSignature != null && Crypto.verify(blockSignature, data, getGeneratorPublicKey(), version >= 3);
+            if (blockSignature != null) {
+                byte[] data = bytes();
+                MessageDigest digest = Crypto.sha256();
+                digest.update(data, 0, data.length - 64);
+                hasValidSignature = Crypto.verifyHash(blockSignature, digest.digest(), getGeneratorPublicKey(), version >= 3);
+            }
         }
         return hasValidSignature;
     }
@@ -431,10 +478,31 @@ final class BlockImpl implements Block {
     }
 
     private void calculateBaseTarget(BlockImpl previousBlock) {
-        long prevBaseTarget = previousBlock.baseTarget;
-        if (previousBlock.getHeight() < 2) {
+        int olderTimestamp = 0;
+        if (previousBlock.getHeight() >= 2 && previousBlock.getHeight() % 2 == 0) {
+            olderTimestamp = BlockDb.findBlockAtHeight(previousBlock.getHeight() - 2).timestamp;
+        }
+        baseTarget = calculateBaseTarget(previousBlock.baseTarget, previousBlock.getHeight(), previousBlock.timestamp,
+                olderTimestamp, timestamp);
+        cumulativeDifficulty = previousBlock.cumulativeDifficulty.add(Convert.two64.divide(BigInteger.valueOf(baseTarget)));
+    }
+
+    /**
+     * Calculate the base target for a block
+     *
+     * @param   prevBaseTarget          Base target of the previous block
+     * @param   prevHeight              Height of the previous block
+     * @param   prevTimestamp           Timestamp of the previous block
+     * @param   olderTimestamp          Timestamp of the block two blocks before the previous block, only
+     *                                  used when the previous height is even and at least 2
+     * @param   timestamp               Block timestamp
+     * @return                          Base target
+     */
+    static long calculateBaseTarget(long prevBaseTarget, int prevHeight, int prevTimestamp, int olderTimestamp, int timestamp) {
+        long baseTarget;
+        if (prevHeight < 2) {
             baseTarget = BigInteger.valueOf(prevBaseTarget)
-                    .multiply(BigInteger.valueOf(this.timestamp - previousBlock.timestamp))
+                    .multiply(BigInteger.valueOf(timestamp - prevTimestamp))
                     .divide(BigInteger.valueOf(60)).longValue();
             if (baseTarget < 0 || baseTarget > Constants.MAX_BASE_TARGET) {
                 baseTarget = Constants.MAX_BASE_TARGET;
@@ -452,9 +520,8 @@ final class BlockImpl implements Block {
             if (baseTarget > twofoldCurBaseTarget) {
                 baseTarget = twofoldCurBaseTarget;
             }
-        } else if (previousBlock.getHeight() % 2 == 0) {
-            BlockImpl block = BlockDb.findBlockAtHeight(previousBlock.getHeight() - 2);
-            int blocktimeAverage = (this.timestamp - block.timestamp) / 3;
+        } else if (prevHeight % 2 == 0) {
+            int blocktimeAverage = (timestamp - olderTimestamp) / 3;
             if (blocktimeAverage > 60) {
                 baseTarget = (prevBaseTarget * Math.min(blocktimeAverage, Constants.MAX_BLOCKTIME_LIMIT)) / 60;
             } else {
@@ -470,7 +537,7 @@ final class BlockImpl implements Block {
         } else {
             baseTarget = prevBaseTarget;
         }
-        cumulativeDifficulty = previousBlock.cumulativeDifficulty.add(Convert.two64.divide(BigInteger.valueOf(baseTarget)));
+        return baseTarget;
     }
 
 }
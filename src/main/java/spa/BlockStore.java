@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa;
+
+import spa.util.JSON;
+import spa.util.Logger;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only block store
+ *
+ * The block store contains the serialized JSON of each block, including the block transactions,
+ * in fixed-size segment files which are memory-mapped for reading.  The store position of a block
+ * is saved in the block table and the stored JSON is used when sending blocks to peers instead of
+ * loading the block transactions from the database.
+ *
+ * Each record consists of the block identifier (8 bytes), the JSON length (4 bytes), the JSON CRC32
+ * (4 bytes) and the UTF-8 JSON.  A zero block identifier marks the end of the data in a segment.
+ * Records for blocks that are popped off are not reclaimed.  A record is verified before it is used,
+ * so a record that was not committed to the database or was damaged by a crash is never returned.
+ */
+final class BlockStore {
+
+    /** Record header length */
+    private static final int HEADER_LENGTH = 8 + 4 + 4;
+
+    /** Block store enabled */
+    private static final boolean enabled = Spa.getBooleanProperty("spa.enableBlockStore");
+
+    /** Segment size */
+    private static final int segmentSize = Math.min(Math.max(Spa.getIntProperty("spa.blockStoreSegmentSize", 256), 16), 1024) * 1024 * 1024;
+
+    /** Mapped segments */
+    private static final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /** Store directory */
+    private static Path storeDir;
+
+    /** Current segment */
+    private static int writeSegment;
+
+    /** Write offset in the current segment */
+    private static int writeOffset;
+
+    /**
+     * Open the block store
+     */
+    static synchronized void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            storeDir = Paths.get(Spa.getDbDir(Spa.getStringProperty("spa.dbDir"))).resolveSibling("blockstore");
+            Files.createDirectories(storeDir);
+            int segment = 0;
+            while (Files.exists(getSegmentPath(segment))) {
+                segments.add(mapSegment(segment));
+                segment++;
+            }
+            if (segments.isEmpty()) {
+                segments.add(mapSegment(0));
+            }
+            writeSegment = segments.size() - 1;
+            writeOffset = findEndOfData(segments.get(writeSegment));
+            Logger.logMessage("Block store opened with " + segments.size() + " segments, write position " + writeOffset);
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Close the block store
+     */
+    static synchronized void shutdown() {
+        segments.forEach(MappedByteBuffer::force);
+    }
+
+    /**
+     * Check if the block store is enabled
+     *
+     * @return                          TRUE if the block store is enabled
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append a block to the block store
+     *
+     * @param   block                   Block
+     * @return                          Store position or 0 if the block was not stored
+     */
+    static synchronized long storeBlock(BlockImpl block) {
+        if (!enabled || segments.isEmpty()) {
+            return 0;
+        }
+        byte[] data = JSON.toJSONString(block.getJSONObject()).getBytes(StandardCharsets.UTF_8);
+        if (HEADER_LENGTH + data.length + 8 > segmentSize) {
+            Logger.logWarningMessage("Block " + block.getStringId() + " is too large for the block store");
+            return 0;
+        }
+        try {
+            if (writeOffset + HEADER_LENGTH + data.length + 8 > segmentSize) {
+                segments.get(writeSegment).force();
+                writeSegment++;
+                segments.add(mapSegment(writeSegment));
+                writeOffset = 0;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer buffer = segments.get(writeSegment).duplicate();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(writeOffset);
+        buffer.putLong(block.getId());
+        buffer.putInt(data.length);
+        buffer.putInt((int)crc.getValue());
+        buffer.put(data);
+        long position = ((long)writeSegment << 32) | writeOffset;
+        writeOffset = buffer.position();
+        buffer.putLong(0);
+        return position;
+    }
+
+    /**
+     * Return the stored JSON for a block
+     *
+     * @param   position                Store position
+     * @param   blockId                 Block identifier
+     * @return                          Block JSON or null if the block is not in the block store
+     */
+    static JSONStreamAware getBlockJSON(long position, long blockId) {
+        int segment = (int)(position >>> 32);
+        int offset = (int)position;
+        ByteBuffer buffer;
+        synchronized (BlockStore.class) {
+            if (segment >= segments.size()) {
+                return null;
+            }
+            buffer = segments.get(segment).duplicate();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (offset < 0 || offset > segmentSize - HEADER_LENGTH) {
+            return null;
+        }
+        buffer.position(offset);
+        if (buffer.getLong() != blockId) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return null;
+        }
+        buffer.limit(buffer.position() + length);
+        ByteBuffer data = buffer.slice();
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        if ((int)crc.getValue() != checksum) {
+            Logger.logWarningMessage("Block store record for block " + Long.toUnsignedString(blockId) + " is damaged");
+            return null;
+        }
+        return new StoredJSON(data);
+    }
+
+    /**
+     * Map a segment file
+     *
+     * @param   segment                 Segment number
+     * @return                          Mapped segment
+     * @throws  IOException             I/O error occurred
+     */
+    private static MappedByteBuffer mapSegment(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(getSegmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Return the segment file path
+     *
+     * @param   segment                 Segment number
+     * @return                          Segment path
+     */
+    private static Path getSegmentPath(int segment) {
+        return storeDir.resolve(String.format("segment-%05d.dat", segment));
+    }
+
+    /**
+     * Find the end of the data in a segment
+     *
+     * @param   segment                 Mapped segment
+     * @return                          End of data offset
+     */
+    private static int findEndOfData(MappedByteBuffer segment) {
+        ByteBuffer buffer = segment.duplicate();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 0;
+        while (offset + HEADER_LENGTH <= segmentSize) {
+            buffer.position(offset);
+            if (buffer.getLong() == 0) {
+                break;
+            }
+            int length = buffer.getInt();
+            if (length <= 0 || length > segmentSize - offset - HEADER_LENGTH) {
+                break;
+            }
+            offset += HEADER_LENGTH + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Block JSON read from the block store
+     */
+    private static final class StoredJSON implements JSONAware, JSONStreamAware {
+
+        /** UTF-8 JSON */
+        private final ByteBuffer data;
+
+        /**
+         * Create the stored JSON
+         *
+         * @param   data                UTF-8 JSON
+         */
+        private StoredJSON(ByteBuffer data) {
+            this.data = data;
+        }
+
+        /**
+         * Return the JSON string
+         *
+         * @return                      JSON string
+         */
+        @Override
+        public String toJSONString() {
+            return StandardCharsets.UTF_8.decode(data.duplicate()).toString();
+        }
+
+        /**
+         * Write the JSON string
+         *
+         * @param   out                 Writer
+         * @throws  IOException         I/O error occurred
+         */
+        @Override
+        public void writeJSONString(Writer out) throws IOException {
+            out.append(StandardCharsets.UTF_8.decode(data.duplicate()));
+        }
+    }
+
+    private BlockStore() {}
+}
@@ -18,6 +18,7 @@ package spa;
 
 import spa.db.DbIterator;
 import spa.util.Filter;
+import spa.util.ReadWriteUpdateLock;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -33,6 +34,20 @@ public interface Blockchain {
 
     void updateUnlock();
 
+    long tryOptimisticRead();
+
+    boolean validateOptimisticRead(long stamp);
+
+    boolean isLockMetricsEnabled();
+
+    int getLockQueueLength();
+
+    List<ReadWriteUpdateLock.SiteStatistics> getLockStatistics();
+
+    List<ReadWriteUpdateLock.Holder> getLockHolders();
+
+    void resetLockStatistics();
+
     Block getLastBlock();
 
     Block getLastBlock(int timestamp);
@@ -61,6 +76,8 @@ public interface Blockchain {
 
     List<Long> getBlockIdsAfter(long blockId, int limit);
 
+    List<byte[]> getBlockHeadersAfter(long blockId, int limit);
+
     List<? extends Block> getBlocksAfter(long blockId, int limit);
 
     List<? extends Block> getBlocksAfter(long blockId, List<Long> blockList);
@@ -90,6 +107,11 @@ public interface Blockchain {
                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                       int from, int to, boolean includeExpiredPrunable, boolean executedOnly);
 
+    DbIterator<? extends Transaction> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                      int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                      int from, int to, boolean includeExpiredPrunable, boolean executedOnly,
+                                                      int cursorTimestamp, short cursorIndex);
+
     DbIterator<? extends Transaction> getTransactions(Connection con, PreparedStatement pstmt);
 
     List<? extends Transaction> getExpectedTransactions(Filter<Transaction> filter);
@@ -18,6 +18,7 @@ package spa;
 
 import spa.db.DbIterator;
 import spa.db.DbUtils;
+import spa.db.TransactionalDb;
 import spa.util.Convert;
 import spa.util.Filter;
 import spa.util.ReadWriteUpdateLock;
@@ -39,9 +40,45 @@ final class BlockchainImpl implements Blockchain {
 
     private BlockchainImpl() {}
 
-    private final ReadWriteUpdateLock lock = new ReadWriteUpdateLock();
+    private final ReadWriteUpdateLock lock = new ReadWriteUpdateLock(Spa.getBooleanProperty("spa.enableLockMetrics"));
     private final AtomicReference<BlockImpl> lastBlock = new AtomicReference<>();
 
+    /** Transaction count lock */
+    private final Object countLock = new Object();
+
+    /** Height of the maintained transaction counts or -1 if the counts must be reloaded */
+    private int countHeight = -1;
+
+    /** Count generation, incremented each time the counts are invalidated */
+    private int countGeneration;
+
+    /** Total number of transactions */
+    private int transactionCount;
+
+    /** Number of transactions for each block in the last day */
+    private final SortedMap<Integer, Integer> lastDayCounts = new TreeMap<>();
+
+    /** Number of transactions in the last day */
+    private int lastDayTransactionCount;
+
+    /** Invalidate the transaction counts when the transaction popping blocks ends */
+    private final TransactionalDb.TransactionCallback countCallback = new TransactionalDb.TransactionCallback() {
+        @Override
+        public void commit() {
+            invalidateCounts();
+        }
+
+        @Override
+        public void rollback() {
+            invalidateCounts();
+        }
+
+        @Override
+        public void rollbackToSavepoint() {
+            invalidateCounts();
+        }
+    };
+
     @Override
     public void readLock() {
         lock.readLock().lock();
@@ -62,6 +99,41 @@ final class BlockchainImpl implements Blockchain {
         lock.updateLock().unlock();
     }
 
+    @Override
+    public long tryOptimisticRead() {
+        return lock.tryOptimisticRead();
+    }
+
+    @Override
+    public boolean validateOptimisticRead(long stamp) {
+        return lock.validate(stamp);
+    }
+
+    @Override
+    public boolean isLockMetricsEnabled() {
+        return lock.isMetricsEnabled();
+    }
+
+    @Override
+    public int getLockQueueLength() {
+        return lock.getQueueLength();
+    }
+
+    @Override
+    public List<ReadWriteUpdateLock.SiteStatistics> getLockStatistics() {
+        return lock.getSiteStatistics();
+    }
+
+    @Override
+    public List<ReadWriteUpdateLock.Holder> getLockHolders() {
+        return lock.getHolders();
+    }
+
+    @Override
+    public void resetLockStatistics() {
+        lock.resetStatistics();
+    }
+
     void writeLock() {
         lock.writeLock().lock();
     }
@@ -223,6 +295,28 @@ final class BlockchainImpl implements Blockchain {
         return result;
     }
 
+    @Override
+    public List<byte[]> getBlockHeadersAfter(long blockId, int limit) {
+        List<byte[]> result = new ArrayList<>();
+        try (Connection con = Db.db.getConnection();
+                PreparedStatement pstmt = con.prepareStatement("SELECT block.*, "
+                        + "(SELECT COUNT(*) FROM transaction WHERE transaction.block_id = block.id) AS transaction_count "
+                        + "FROM block WHERE db_id > IFNULL ((SELECT db_id FROM block WHERE id = ?), " + Long.MAX_VALUE + ") "
+                        + "ORDER BY db_id ASC LIMIT ?")) {
+            pstmt.setLong(1, blockId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    BlockImpl block = BlockDb.loadBlock(con, rs);
+                    result.add(block.getHeaderBytes(rs.getInt("transaction_count")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return result;
+    }
+
     @Override
     public List<BlockImpl> getBlocksAfter(long blockId, int limit) {
         if (limit <= 0) {
@@ -252,7 +346,7 @@ final class BlockchainImpl implements Blockchain {
             pstmt.setInt(2, limit);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    result.add(BlockDb.loadBlock(con, rs, true));
+                    result.add(BlockDb.loadBlock(con, rs, !BlockStore.isEnabled()));
                 }
             }
         } catch (SQLException e) {
@@ -292,7 +386,7 @@ final class BlockchainImpl implements Blockchain {
             try (ResultSet rs = pstmt.executeQuery()) {
                 int index = 0;
                 while (rs.next()) {
-                    BlockImpl block = BlockDb.loadBlock(con, rs, true);
+                    BlockImpl block = BlockDb.loadBlock(con, rs, !BlockStore.isEnabled());
                     if (block.getId() != blockList.get(index++)) {
                         break;
                     }
@@ -360,24 +454,133 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public int getTransactionCount() {
-        try (Connection con = Db.db.getConnection(); PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM transaction");
-             ResultSet rs = pstmt.executeQuery()) {
-            rs.next();
-            return rs.getInt(1);
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
+        synchronized (countLock) {
+            if (countHeight >= 0 && !Db.db.isInTransaction()) {
+                return transactionCount;
+            }
         }
+        return loadCounts()[0];
     }
 
     @Override
     public int getTransactionCountLastDay() {
-        try (Connection con = Db.db.getConnection(); PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM transaction WHERE height > " + Integer.toString(getHeight() - 1440));
-             ResultSet rs = pstmt.executeQuery()) {
-            rs.next();
-            return rs.getInt(1);
+        synchronized (countLock) {
+            if (countHeight >= 0 && !Db.db.isInTransaction()) {
+                return lastDayTransactionCount;
+            }
+        }
+        return loadCounts()[1];
+    }
+
+    /**
+     * Update the transaction counts for a pushed block
+     *
+     * @param   block                   Pushed block
+     */
+    void blockPushed(BlockImpl block) {
+        synchronized (countLock) {
+            if (countHeight < 0 || block.getHeight() <= countHeight) {
+                return;
+            }
+            if (block.getHeight() != countHeight + 1) {
+                invalidateCounts();
+                return;
+            }
+            int count = block.getTransactions().size();
+            countHeight = block.getHeight();
+            transactionCount += count;
+            lastDayCounts.put(countHeight, count);
+            lastDayTransactionCount += count;
+            SortedMap<Integer, Integer> expired = lastDayCounts.headMap(countHeight - 1440 + 1);
+            expired.values().forEach(expiredCount -> lastDayTransactionCount -= expiredCount);
+            expired.clear();
+        }
+    }
+
+    /**
+     * Invalidate the transaction counts for a popped block
+     *
+     * The counts are invalidated again when the database transaction ends since
+     * counts loaded before the pop is committed do not reflect the pop.
+     */
+    void blockPopped() {
+        invalidateCounts();
+        if (Db.db.isInTransaction()) {
+            Db.db.registerCallback(countCallback);
+        }
+    }
+
+    /**
+     * Invalidate the transaction counts
+     */
+    void invalidateCounts() {
+        synchronized (countLock) {
+            countHeight = -1;
+            countGeneration++;
+            transactionCount = 0;
+            lastDayCounts.clear();
+            lastDayTransactionCount = 0;
+        }
+    }
+
+    /**
+     * Load the transaction counts from the database
+     *
+     * The loaded counts are maintained by blockPushed() unless they were invalidated
+     * while they were being loaded or they were loaded within a database transaction.
+     *
+     * @return                          Total transaction count and last day transaction count
+     */
+    private int[] loadCounts() {
+        int generation;
+        synchronized (countLock) {
+            generation = countGeneration;
+        }
+        int height;
+        int count;
+        SortedMap<Integer, Integer> counts = new TreeMap<>();
+        int lastDayCount = 0;
+        try (Connection con = Db.db.getConnection()) {
+            try (PreparedStatement pstmt = con.prepareStatement("SELECT MAX(height) FROM block");
+                    ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                height = rs.getInt(1);
+                if (rs.wasNull()) {
+                    return new int[] {0, 0};
+                }
+            }
+            try (PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM transaction WHERE height <= ?")) {
+                pstmt.setInt(1, height);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    count = rs.getInt(1);
+                }
+            }
+            try (PreparedStatement pstmt = con.prepareStatement("SELECT height, COUNT(*) FROM transaction "
+                    + "WHERE height > ? AND height <= ? GROUP BY height")) {
+                pstmt.setInt(1, height - 1440);
+                pstmt.setInt(2, height);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        counts.put(rs.getInt(1), rs.getInt(2));
+                        lastDayCount += rs.getInt(2);
+                    }
+                }
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
+        if (!Db.db.isInTransaction()) {
+            synchronized (countLock) {
+                if (generation == countGeneration && countHeight < 0) {
+                    countHeight = height;
+                    transactionCount = count;
+                    lastDayCounts.putAll(counts);
+                    lastDayTransactionCount = lastDayCount;
+                }
+            }
+        }
+        return new int[] {count, lastDayCount};
     }
 
     @Override
@@ -403,6 +606,25 @@ final class BlockchainImpl implements Blockchain {
     public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
                                                        int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                        int from, int to, boolean includeExpiredPrunable, boolean executedOnly) {
+        return getTransactions(accountId, numberOfConfirmations, type, subtype, blockTimestamp, withMessage, phasedOnly, nonPhasedOnly,
+                from, to, includeExpiredPrunable, executedOnly, -1, (short)0);
+    }
+
+    /**
+     * Return the account transactions
+     *
+     * The transactions are returned in descending block timestamp and transaction index order.
+     * The recipient and sender queries are each limited to the requested page and read in index
+     * order using the (recipient_id, block_timestamp, transaction_index) and (sender_id, block_timestamp,
+     * transaction_index) indexes, so only the rows for the page are read instead of all of the
+     * account transactions.  A keyset cursor returns the transactions following the transaction with
+     * the cursor block timestamp and transaction index without reading the preceding pages.
+     */
+    @Override
+    public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                       int from, int to, boolean includeExpiredPrunable, boolean executedOnly,
+                                                       int cursorTimestamp, short cursorIndex) {
         if (phasedOnly && nonPhasedOnly) {
             throw new IllegalArgumentException("At least one of phasedOnly or nonPhasedOnly must be false");
         }
@@ -411,69 +633,17 @@ final class BlockchainImpl implements Blockchain {
             throw new IllegalArgumentException("Number of confirmations required " + numberOfConfirmations
                     + " exceeds current blockchain height " + getHeight());
         }
+        boolean limited = to >= 0 && to >= from && to < Integer.MAX_VALUE;
         Connection con = null;
         try {
             StringBuilder buf = new StringBuilder();
-            buf.append("SELECT transaction.* FROM transaction ");
-            if (executedOnly && !nonPhasedOnly) {
-                buf.append(" LEFT JOIN phasing_poll_result ON transaction.id = phasing_poll_result.id ");
-            }
-            buf.append("WHERE recipient_id = ? AND sender_id <> ? ");
-            if (blockTimestamp > 0) {
-                buf.append("AND block_timestamp >= ? ");
-            }
-            if (type >= 0) {
-                buf.append("AND type = ? ");
-                if (subtype >= 0) {
-                    buf.append("AND subtype = ? ");
-                }
-            }
-            if (height < Integer.MAX_VALUE) {
-                buf.append("AND transaction.height <= ? ");
-            }
-            if (withMessage) {
-                buf.append("AND (has_message = TRUE OR has_encrypted_message = TRUE ");
-                buf.append("OR ((has_prunable_message = TRUE OR has_prunable_encrypted_message = TRUE) AND timestamp > ?)) ");
-            }
-            if (phasedOnly) {
-                buf.append("AND phased = TRUE ");
-            } else if (nonPhasedOnly) {
-                buf.append("AND phased = FALSE ");
-            }
-            if (executedOnly && !nonPhasedOnly) {
-                buf.append("AND (phased = FALSE OR approved = TRUE) ");
-            }
-            buf.append("UNION ALL SELECT transaction.* FROM transaction ");
-            if (executedOnly && !nonPhasedOnly) {
-                buf.append(" LEFT JOIN phasing_poll_result ON transaction.id = phasing_poll_result.id ");
-            }
-            buf.append("WHERE sender_id = ? ");
-            if (blockTimestamp > 0) {
-                buf.append("AND block_timestamp >= ? ");
-            }
-            if (type >= 0) {
-                buf.append("AND type = ? ");
-                if (subtype >= 0) {
-                    buf.append("AND subtype = ? ");
-                }
-            }
-            if (height < Integer.MAX_VALUE) {
-                buf.append("AND transaction.height <= ? ");
-            }
-            if (withMessage) {
-                buf.append("AND (has_message = TRUE OR has_encrypted_message = TRUE OR has_encrypttoself_message = TRUE ");
-                buf.append("OR ((has_prunable_message = TRUE OR has_prunable_encrypted_message = TRUE) AND timestamp > ?)) ");
-            }
-            if (phasedOnly) {
-                buf.append("AND phased = TRUE ");
-            } else if (nonPhasedOnly) {
-                buf.append("AND phased = FALSE ");
-            }
-            if (executedOnly && !nonPhasedOnly) {
-                buf.append("AND (phased = FALSE OR approved = TRUE) ");
-            }
-
-            buf.append("ORDER BY block_timestamp DESC, transaction_index DESC");
+            buf.append("SELECT * FROM (");
+            appendTransactionQuery(buf, "recipient_id = ? AND sender_id <> ? ", false, blockTimestamp, type, subtype, height,
+                    withMessage, phasedOnly, nonPhasedOnly, executedOnly, cursorTimestamp, limited);
+            buf.append(" UNION ALL ");
+            appendTransactionQuery(buf, "sender_id = ? ", true, blockTimestamp, type, subtype, height,
+                    withMessage, phasedOnly, nonPhasedOnly, executedOnly, cursorTimestamp, limited);
+            buf.append(") AS account_transaction ORDER BY block_timestamp DESC, transaction_index DESC");
             buf.append(DbUtils.limitsClause(from, to));
             con = Db.db.getConnection();
             PreparedStatement pstmt;
@@ -481,38 +651,11 @@ final class BlockchainImpl implements Blockchain {
             pstmt = con.prepareStatement(buf.toString());
             pstmt.setLong(++i, accountId);
             pstmt.setLong(++i, accountId);
-            if (blockTimestamp > 0) {
-                pstmt.setInt(++i, blockTimestamp);
-            }
-            if (type >= 0) {
-                pstmt.setByte(++i, type);
-                if (subtype >= 0) {
-                    pstmt.setByte(++i, subtype);
-                }
-            }
-            if (height < Integer.MAX_VALUE) {
-                pstmt.setInt(++i, height);
-            }
-            int prunableExpiration = 1;
-            if (withMessage) {
-                pstmt.setInt(++i, prunableExpiration);
-            }
+            i = setTransactionQuery(pstmt, i, blockTimestamp, type, subtype, height, withMessage,
+                    cursorTimestamp, cursorIndex, limited ? to + 1 : 0);
             pstmt.setLong(++i, accountId);
-            if (blockTimestamp > 0) {
-                pstmt.setInt(++i, blockTimestamp);
-            }
-            if (type >= 0) {
-                pstmt.setByte(++i, type);
-                if (subtype >= 0) {
-                    pstmt.setByte(++i, subtype);
-                }
-            }
-            if (height < Integer.MAX_VALUE) {
-                pstmt.setInt(++i, height);
-            }
-            if (withMessage) {
-                pstmt.setInt(++i, prunableExpiration);
-            }
+            i = setTransactionQuery(pstmt, i, blockTimestamp, type, subtype, height, withMessage,
+                    cursorTimestamp, cursorIndex, limited ? to + 1 : 0);
             DbUtils.setLimits(++i, pstmt, from, to);
             return getTransactions(con, pstmt);
         } catch (SQLException e) {
@@ -521,6 +664,112 @@ final class BlockchainImpl implements Blockchain {
         }
     }
 
+    /**
+     * Append the recipient or sender transaction query
+     *
+     * @param   buf                     Query buffer
+     * @param   accountClause           Account selection
+     * @param   isSender                TRUE for the sender query
+     * @param   blockTimestamp          Minimum block timestamp or 0
+     * @param   type                    Transaction type or -1
+     * @param   subtype                 Transaction subtype or -1
+     * @param   height                  Maximum height or Integer.MAX_VALUE
+     * @param   withMessage             Only transactions with a message
+     * @param   phasedOnly              Only phased transactions
+     * @param   nonPhasedOnly           Only non-phased transactions
+     * @param   executedOnly            Only executed transactions
+     * @param   cursorTimestamp         Cursor block timestamp or -1
+     * @param   limited                 TRUE if the query is limited to the page size
+     */
+    private static void appendTransactionQuery(StringBuilder buf, String accountClause, boolean isSender, int blockTimestamp,
+                                               byte type, byte subtype, int height, boolean withMessage, boolean phasedOnly,
+                                               boolean nonPhasedOnly, boolean executedOnly, int cursorTimestamp, boolean limited) {
+        buf.append("(SELECT transaction.* FROM transaction ");
+        if (executedOnly && !nonPhasedOnly) {
+            buf.append(" LEFT JOIN phasing_poll_result ON transaction.id = phasing_poll_result.id ");
+        }
+        buf.append("WHERE ").append(accountClause);
+        if (blockTimestamp > 0) {
+            buf.append("AND block_timestamp >= ? ");
+        }
+        if (cursorTimestamp >= 0) {
+            buf.append("AND block_timestamp <= ? AND (block_timestamp < ? OR transaction_index < ?) ");
+        }
+        if (type >= 0) {
+            buf.append("AND type = ? ");
+            if (subtype >= 0) {
+                buf.append("AND subtype = ? ");
+            }
+        }
+        if (height < Integer.MAX_VALUE) {
+            buf.append("AND transaction.height <= ? ");
+        }
+        if (withMessage) {
+            buf.append("AND (has_message = TRUE OR has_encrypted_message = TRUE ");
+            if (isSender) {
+                buf.append("OR has_encrypttoself_message = TRUE ");
+            }
+            buf.append("OR ((has_prunable_message = TRUE OR has_prunable_encrypted_message = TRUE) AND timestamp > ?)) ");
+        }
+        if (phasedOnly) {
+            buf.append("AND phased = TRUE ");
+        } else if (nonPhasedOnly) {
+            buf.append("AND phased = FALSE ");
+        }
+        if (executedOnly && !nonPhasedOnly) {
+            buf.append("AND (phased = FALSE OR approved = TRUE) ");
+        }
+        if (limited) {
+            buf.append("ORDER BY block_timestamp DESC, transaction_index DESC LIMIT ? ");
+        }
+        buf.append(")");
+    }
+
+    /**
+     * Set the recipient or sender transaction query parameters following the account parameters
+     *
+     * @param   pstmt                   Prepared statement
+     * @param   i                       Last parameter index
+     * @param   blockTimestamp          Minimum block timestamp or 0
+     * @param   type                    Transaction type or -1
+     * @param   subtype                 Transaction subtype or -1
+     * @param   height                  Maximum height or Integer.MAX_VALUE
+     * @param   withMessage             Only transactions with a message
+     * @param   cursorTimestamp         Cursor block timestamp or -1
+     * @param   cursorIndex             Cursor transaction index
+     * @param   limit                   Query limit or 0
+     * @return                          Last parameter index
+     * @throws  SQLException            Database error occurred
+     */
+    private static int setTransactionQuery(PreparedStatement pstmt, int i, int blockTimestamp, byte type, byte subtype,
+                                           int height, boolean withMessage, int cursorTimestamp, short cursorIndex,
+                                           int limit) throws SQLException {
+        if (blockTimestamp > 0) {
+            pstmt.setInt(++i, blockTimestamp);
+        }
+        if (cursorTimestamp >= 0) {
+            pstmt.setInt(++i, cursorTimestamp);
+            pstmt.setInt(++i, cursorTimestamp);
+            pstmt.setShort(++i, cursorIndex);
+        }
+        if (type >= 0) {
+            pstmt.setByte(++i, type);
+            if (subtype >= 0) {
+                pstmt.setByte(++i, subtype);
+            }
+        }
+        if (height < Integer.MAX_VALUE) {
+            pstmt.setInt(++i, height);
+        }
+        if (withMessage) {
+            pstmt.setInt(++i, 1);
+        }
+        if (limit > 0) {
+            pstmt.setInt(++i, limit);
+        }
+        return i;
+    }
+
     @Override
     public DbIterator<TransactionImpl> getReferencingTransactions(long transactionId, int from, int to) {
         Connection con = null;
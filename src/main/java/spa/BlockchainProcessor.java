@@ -21,6 +21,8 @@ import spa.peer.Peer;
 import spa.util.Observable;
 import org.json.simple.JSONObject;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface BlockchainProcessor extends Observable<Block,BlockchainProcessor.Event> {
@@ -48,6 +50,8 @@ public interface BlockchainProcessor extends Observable<Block,BlockchainProcesso
 
     void processPeerBlock(JSONObject request) throws SpaException;
 
+    void processPeerCompactBlock(JSONObject request, Peer peer) throws SpaException;
+
     void fullReset();
 
     void scan(int height, boolean validate);
@@ -58,6 +62,10 @@ public interface BlockchainProcessor extends Observable<Block,BlockchainProcesso
 
     List<? extends Block> popOffTo(int height);
 
+    ReplayStatistics replayBlocks(int count) throws BlockNotAcceptedException;
+
+    ReplayStatistics replayArchive(Path file, int count) throws IOException, BlockNotAcceptedException;
+
     void registerDerivedTable(DerivedDbTable table);
 
     void trimDerivedTables();
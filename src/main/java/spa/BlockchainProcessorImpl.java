@@ -23,6 +23,7 @@ import spa.db.FilteringIterator;
 import spa.peer.Peer;
 import spa.peer.Peers;
 import spa.util.Convert;
+import spa.util.FlightRecorder;
 import spa.util.JSON;
 import spa.util.Listener;
 import spa.util.Listeners;
@@ -33,17 +34,24 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 import org.json.simple.JSONValue;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -53,12 +61,14 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 final class BlockchainProcessorImpl implements BlockchainProcessor {
 
@@ -70,11 +80,17 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     private final BlockchainImpl blockchain = BlockchainImpl.getInstance();
 
-    private final ExecutorService networkService = Executors.newCachedThreadPool();
+    private final ExecutorService networkService = ThreadPool.newBlockingExecutor("network", 2, 32);
+    private final ExecutorService derivedTableService = ThreadPool.newExecutor("derivedTable", 4, 4);
     private final List<DerivedDbTable> derivedTables = new CopyOnWriteArrayList<>();
     private final boolean trimDerivedTables = Spa.getBooleanProperty("spa.trimDerivedTables");
     private final int defaultNumberOfForkConfirmations = Spa.getIntProperty("spa.numberOfForkConfirmations");
     private final boolean simulateEndlessDownload = Spa.getBooleanProperty("spa.simulateEndlessDownload");
+    private final int downloadWindowSize = Math.max(Spa.getIntProperty("spa.downloadWindowSize", 16), 1);
+    private final int bulkImportBatchSize = Spa.getIntProperty("spa.bulkImportBatchSize", 100);
+    private final boolean headersFirstSync = Spa.getBooleanProperty("spa.headersFirstSync");
+    private final int scanThreads = Math.max(Spa.getIntProperty("spa.scanThreads", Runtime.getRuntime().availableProcessors()), 1);
+    private final ExecutorService blockVerifyService = ThreadPool.newExecutor("blockVerify", 0, scanThreads);
 
     private int initialScanHeight;
     private volatile int lastTrimHeight;
@@ -90,6 +106,9 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
     private volatile boolean isScanning;
     private volatile boolean isDownloading;
     private volatile boolean isProcessingBlock;
+
+    /** Stage statistics for the blocks being replayed */
+    private volatile ReplayStatistics replayStatistics;
     private volatile boolean isRestoring;
     private volatile boolean alreadyInitialized = false;
 
@@ -193,7 +212,11 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     return;
                 }
 
-                chainBlockIds = getBlockIdsAfterCommon(peer, commonMilestoneBlockId, false);
+                if (headersFirstSync && peer.providesService(Peer.Service.BLOCK_HEADERS)) {
+                    chainBlockIds = getBlockHeadersAfterCommon(peer, commonMilestoneBlockId);
+                } else {
+                    chainBlockIds = getBlockIdsAfterCommon(peer, commonMilestoneBlockId, false);
+                }
                 if (chainBlockIds.size() < 2 || !peerHasMore) {
                     return;
                 }
@@ -387,9 +410,166 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             return blockList;
         }
 
+        /**
+         * Get the block headers following the common block and verify them before
+         * downloading the block bodies
+         *
+         * The headers are linked to the common block and their signatures, previous block hashes
+         * and generation signatures are verified. The cumulative difficulty of the peer chain is
+         * then calculated from the header base targets and the chain is rejected without downloading
+         * any blocks if it does not improve on our chain.
+         *
+         * @param   peer                    Peer
+         * @param   startBlockId            Start search at this block
+         * @return                          Common block identifier followed by the new block identifiers
+         */
+        private List<Long> getBlockHeadersAfterCommon(final Peer peer, final long startBlockId) {
+            long matchId = startBlockId;
+            boolean matched = false;
+            boolean peerAtTip;
+            List<BlockHeader> headers = new ArrayList<>(720);
+            while (true) {
+                JSONObject request = new JSONObject();
+                request.put("requestType", "getNextBlockHeaders");
+                request.put("blockId", Long.toUnsignedString(matchId));
+                request.put("limit", 720);
+                JSONObject response = peer.send(JSON.prepareRequest(request));
+                if (response == null) {
+                    return Collections.emptyList();
+                }
+                JSONArray blockHeaders = (JSONArray) response.get("blockHeaders");
+                if (blockHeaders == null) {
+                    return Collections.emptyList();
+                }
+                // prevent overloading with block headers
+                if (blockHeaders.size() > 720) {
+                    Logger.logDebugMessage("Obsolete or rogue peer " + peer.getHost() + " sends too many blockHeaders, blacklisting");
+                    peer.blacklist("Too many blockHeaders");
+                    return Collections.emptyList();
+                }
+                peerAtTip = blockHeaders.size() < 720;
+                try {
+                    for (Object blockHeader : blockHeaders) {
+                        BlockHeader header = BlockHeader.parse(Convert.parseHexString((String) blockHeader));
+                        if (headers.isEmpty() && BlockDb.hasBlock(header.getId())) {
+                            matchId = header.getId();
+                            matched = true;
+                        } else {
+                            headers.add(header);
+                        }
+                    }
+                } catch (SpaException.NotValidException | RuntimeException e) {
+                    Logger.logDebugMessage("Peer " + peer.getHost() + " sent invalid block header: " + e.toString());
+                    peer.blacklist(e);
+                    return Collections.emptyList();
+                }
+                if (!headers.isEmpty() || peerAtTip) {
+                    break;
+                }
+            }
+            List<Long> blockList = new ArrayList<>(headers.size() + 1);
+            if (headers.isEmpty()) {
+                if (matched) {
+                    blockList.add(matchId);
+                }
+                return blockList;
+            }
+            BlockImpl commonBlock = blockchain.getBlock(matchId);
+            if (commonBlock == null) {
+                return Collections.emptyList();
+            }
+            BigInteger cumulativeDifficulty = verifyBlockHeaders(commonBlock, headers);
+            if (cumulativeDifficulty == null) {
+                Logger.logDebugMessage("Peer " + peer.getHost() + " sent invalid block headers, blacklisting");
+                peer.blacklist("Invalid block headers");
+                return Collections.emptyList();
+            }
+            if (peerAtTip && cumulativeDifficulty.compareTo(blockchain.getLastBlock().getCumulativeDifficulty()) <= 0) {
+                Logger.logDebugMessage("Peer " + peer.getHost() + " block headers do not improve our cumulative difficulty");
+                return Collections.emptyList();
+            }
+            blockList.add(matchId);
+            headers.forEach(header -> blockList.add(header.getId()));
+            return blockList;
+        }
+
+        /**
+         * Verify a chain of block headers
+         *
+         * The hit verification requires the generator effective balance and is performed
+         * when the block is pushed.
+         *
+         * @param   commonBlock             Block preceding the first header
+         * @param   headers                 Block headers
+         * @return                          Cumulative difficulty of the last header or null if the headers are not valid
+         */
+        private BigInteger verifyBlockHeaders(BlockImpl commonBlock, List<BlockHeader> headers) {
+            if (!headers.parallelStream().allMatch(BlockHeader::checkSignature)) {
+                Logger.logDebugMessage("Block header signature verification failed");
+                return null;
+            }
+            int curTime = Spa.getEpochTime();
+            int commonHeight = commonBlock.getHeight();
+            long prevId = commonBlock.getId();
+            int prevHeight = commonHeight;
+            int prevTimestamp = commonBlock.getTimestamp();
+            long prevBaseTarget = commonBlock.getBaseTarget();
+            byte[] prevGenerationSignature = commonBlock.getGenerationSignature();
+            byte[] prevBytes = commonBlock.bytes();
+            BigInteger cumulativeDifficulty = commonBlock.getCumulativeDifficulty();
+            for (BlockHeader header : headers) {
+                if (header.getPreviousBlockId() != prevId) {
+                    Logger.logDebugMessage("Block header " + Long.toUnsignedString(header.getId()) + " does not link to the previous block");
+                    return null;
+                }
+                if (header.getVersion() != getBlockVersion(prevHeight)) {
+                    Logger.logDebugMessage("Block header " + Long.toUnsignedString(header.getId()) + " has invalid version " + header.getVersion());
+                    return null;
+                }
+                if (header.getTimestamp() <= prevTimestamp || header.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT) {
+                    Logger.logDebugMessage("Block header " + Long.toUnsignedString(header.getId()) + " has invalid timestamp " + header.getTimestamp());
+                    return null;
+                }
+                if (header.getVersion() > 1) {
+                    if (!Arrays.equals(Crypto.sha256().digest(prevBytes), header.getPreviousBlockHash())) {
+                        Logger.logDebugMessage("Block header " + Long.toUnsignedString(header.getId()) + " previous block hash doesn't match");
+                        return null;
+                    }
+                    MessageDigest digest = Crypto.sha256();
+                    digest.update(prevGenerationSignature);
+                    if (!Arrays.equals(digest.digest(header.getGeneratorPublicKey()), header.getGenerationSignature())) {
+                        Logger.logDebugMessage("Block header " + Long.toUnsignedString(header.getId()) + " generation signature doesn't match");
+                        return null;
+                    }
+                }
+                int olderTimestamp = 0;
+                if (prevHeight >= 2 && prevHeight % 2 == 0) {
+                    int olderHeight = prevHeight - 2;
+                    olderTimestamp = olderHeight <= commonHeight ? BlockDb.findBlockAtHeight(olderHeight).getTimestamp()
+                            : headers.get(olderHeight - commonHeight - 1).getTimestamp();
+                }
+                long baseTarget = BlockImpl.calculateBaseTarget(prevBaseTarget, prevHeight, prevTimestamp, olderTimestamp, header.getTimestamp());
+                cumulativeDifficulty = cumulativeDifficulty.add(Convert.two64.divide(BigInteger.valueOf(baseTarget)));
+                prevId = header.getId();
+                prevHeight++;
+                prevTimestamp = header.getTimestamp();
+                prevBaseTarget = baseTarget;
+                prevGenerationSignature = header.getGenerationSignature();
+                prevBytes = header.getBytes();
+            }
+            return cumulativeDifficulty;
+        }
+
         /**
          * Download the block chain
          *
+         * The block identifier list is split into segments and a sliding window of
+         * segment requests is kept in flight.  When the download extends our current
+         * chain, blocks are pushed as soon as they are available in order.  A failed or
+         * partial segment is requested again from the peer with the best observed
+         * throughput, and a second request is sent for the next segment needed in order
+         * if it is taking much longer than the average response time.
+         *
          * @param   feederPeer              Peer supplying the blocks list
          * @param   commonBlock             Common block
          * @throws  InterruptedException    Download interrupted
@@ -400,114 +580,229 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             // Break the download into multiple segments.  The first block in each segment
             // is the common block for that segment.
             //
-            List<GetNextBlocks> getList = new ArrayList<>();
+            List<DownloadSegment> segments = new ArrayList<>();
             int segSize = 36;
             int stop = chainBlockIds.size() - 1;
             for (int start = 0; start < stop; start += segSize) {
-                getList.add(new GetNextBlocks(chainBlockIds, start, Math.min(start + segSize, stop)));
+                segments.add(new DownloadSegment(start, Math.min(start + segSize, stop)));
             }
+            CompletionService<List<BlockImpl>> completionService = new ExecutorCompletionService<>(networkService);
+            Map<Future<List<BlockImpl>>, DownloadSegment> pending = new HashMap<>();
+            Map<Peer, Integer> peerRequests = new HashMap<>();
+            Map<Peer, Long> peerThroughput = new HashMap<>();
             int nextPeerIndex = ThreadLocalRandom.current().nextInt(connectedPublicPeers.size());
+            boolean pushInOrder = commonBlock.getId() == blockchain.getLastBlock().getId();
+            int nextIndex = 1;
+            int nextSegment = 0;
+            long totalResponseTime = 0;
+            int responseCount = 0;
             long maxResponseTime = 0;
             Peer slowestPeer = null;
             //
-            // Issue the getNextBlocks requests and get the results.  We will repeat
-            // a request if the peer didn't respond or returned a partial block list.
-            // The download will be aborted if we are unable to get a segment after
-            // retrying with different peers.
+            // Issue the getNextBlocks requests and process the results as they complete.
+            // The first segment is always sent to the feeder peer.  The download is
+            // stopped if we are unable to get a segment after retrying with a different peer.
             //
-            download: while (!getList.isEmpty()) {
-                //
-                // Submit threads to issue 'getNextBlocks' requests.  The first segment
-                // will always be sent to the feeder peer.  Subsequent segments will
-                // be sent to the feeder peer if we failed trying to download the blocks
-                // from another peer.  We will stop the download and process any pending
-                // blocks if we are unable to download a segment from the feeder peer.
-                //
-                for (GetNextBlocks nextBlocks : getList) {
+            download: while (true) {
+                while (pending.size() < downloadWindowSize && nextSegment < segments.size()) {
+                    DownloadSegment segment = segments.get(nextSegment++);
                     Peer peer;
-                    if (nextBlocks.getRequestCount() > 1) {
-                        break download;
-                    }
-                    if (nextBlocks.getStart() == 0 || nextBlocks.getRequestCount() != 0) {
+                    if (segment.start == 0) {
                         peer = feederPeer;
                     } else {
                         if (nextPeerIndex >= connectedPublicPeers.size()) {
                             nextPeerIndex = 0;
                         }
-                        peer = connectedPublicPeers.get(nextPeerIndex++);
-                    }
-                    if (nextBlocks.getPeer() == peer) {
-                        break download;
+                        peer = selectPeer(null, peerRequests, peerThroughput, nextPeerIndex++);
+                        if (peer == null) {
+                            peer = feederPeer;
+                        }
                     }
-                    nextBlocks.setPeer(peer);
-                    Future<List<BlockImpl>> future = networkService.submit(nextBlocks);
-                    nextBlocks.setFuture(future);
+                    submitSegment(segment, peer, completionService, pending, peerRequests);
                 }
-                //
-                // Get the results.  A peer is on a different fork if a returned
-                // block is not in the block identifier list.
-                //
-                Iterator<GetNextBlocks> it = getList.iterator();
-                while (it.hasNext()) {
-                    GetNextBlocks nextBlocks = it.next();
-                    List<BlockImpl> blockList;
-                    try {
-                        blockList = nextBlocks.getFuture().get();
-                    } catch (ExecutionException exc) {
-                        throw new RuntimeException(exc.getMessage(), exc);
+                if (pending.isEmpty()) {
+                    break;
+                }
+                long hedgeDelay = responseCount > 0 ? Math.max(3 * totalResponseTime / responseCount, 2000) : 5000;
+                Future<List<BlockImpl>> future = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    //
+                    // Send a second request for the next segment we need if the request is slow
+                    //
+                    for (DownloadSegment segment : segments) {
+                        if (!segment.complete) {
+                            if (!segment.hedged && segment.requests.size() == 1 &&
+                                    System.currentTimeMillis() - segment.requests.get(0).getRequestTime() >= hedgeDelay) {
+                                Peer peer = selectPeer(segment, peerRequests, peerThroughput, nextPeerIndex++);
+                                if (peer != null) {
+                                    segment.hedged = true;
+                                    submitSegment(segment, peer, completionService, pending, peerRequests);
+                                }
+                            }
+                            break;
+                        }
                     }
-                    if (blockList == null) {
-                        nextBlocks.getPeer().deactivate();
-                        continue;
+                    continue;
+                }
+                DownloadSegment segment = pending.remove(future);
+                if (segment == null) {
+                    continue;
+                }
+                GetNextBlocks nextBlocks = null;
+                for (GetNextBlocks request : segment.requests) {
+                    if (request.getFuture() == future) {
+                        nextBlocks = request;
+                        break;
                     }
-                    Peer peer = nextBlocks.getPeer();
+                }
+                segment.requests.remove(nextBlocks);
+                Peer peer = nextBlocks.getPeer();
+                peerRequests.merge(peer, -1, Integer::sum);
+                if (segment.complete) {
+                    continue;
+                }
+                List<BlockImpl> blockList;
+                try {
+                    blockList = future.get();
+                } catch (ExecutionException exc) {
+                    throw new RuntimeException(exc.getMessage(), exc);
+                }
+                if (blockList == null) {
+                    peer.deactivate();
+                } else {
+                    //
+                    // A peer is on a different fork if a returned block is not in the block identifier list
+                    //
                     int index = nextBlocks.getStart() + 1;
                     for (BlockImpl block : blockList) {
-                        if (block.getId() != chainBlockIds.get(index)) {
+                        if (index > segment.stop || block.getId() != chainBlockIds.get(index)) {
                             break;
                         }
-                        blockMap.put(block.getId(), new PeerBlock(peer, block));
+                        blockMap.putIfAbsent(block.getId(), new PeerBlock(peer, block));
                         index++;
                     }
-                    if (index > nextBlocks.getStop()) {
-                        it.remove();
+                    long responseTime = Math.max(nextBlocks.getResponseTime(), 1);
+                    totalResponseTime += responseTime;
+                    responseCount++;
+                    peerThroughput.put(peer, (index - nextBlocks.getStart() - 1) * 1000L / responseTime);
+                    if (responseTime > maxResponseTime) {
+                        maxResponseTime = responseTime;
+                        slowestPeer = peer;
+                    }
+                    if (index > segment.stop) {
+                        segment.complete = true;
+                        //
+                        // Cancel the other requests for the segment and stop counting them as
+                        // in flight now instead of when the peer finally responds
+                        //
+                        for (GetNextBlocks request : segment.requests) {
+                            request.getFuture().cancel(false);
+                            pending.remove(request.getFuture());
+                            peerRequests.merge(request.getPeer(), -1, Integer::sum);
+                        }
+                        segment.requests.clear();
                     } else {
-                        nextBlocks.setStart(index - 1);
+                        segment.start = Math.max(segment.start, index - 1);
                     }
-                    if (nextBlocks.getResponseTime() > maxResponseTime) {
-                        maxResponseTime = nextBlocks.getResponseTime();
-                        slowestPeer = nextBlocks.getPeer();
+                }
+                if (!segment.complete && segment.requests.isEmpty()) {
+                    //
+                    // Request the rest of the segment from another peer.  We will stop the
+                    // download and process any pending blocks if the retry fails.
+                    //
+                    if (++segment.failures > 1) {
+                        break download;
+                    }
+                    Peer retryPeer = selectPeer(segment, peerRequests, peerThroughput, nextPeerIndex++);
+                    if (retryPeer == null) {
+                        retryPeer = feederPeer;
+                    }
+                    if (segment.peers.contains(retryPeer)) {
+                        break download;
+                    }
+                    submitSegment(segment, retryPeer, completionService, pending, peerRequests);
+                }
+                //
+                // Push the blocks that are now available in order
+                //
+                if (pushInOrder && segment.complete) {
+                    List<BlockImpl> pushedBlocks = new ArrayList<>();
+                    blockchain.writeLock();
+                    try {
+                        List<BlockImpl> bulkBlocks = new ArrayList<>();
+                        boolean bulkImport = isDownloading && bulkImportBatchSize > 1;
+                        try {
+                            while (nextIndex < chainBlockIds.size() && blockchain.getHeight() - startHeight < 720) {
+                                PeerBlock peerBlock = blockMap.get(chainBlockIds.get(nextIndex));
+                                if (peerBlock == null) {
+                                    break;
+                                }
+                                BlockImpl block = peerBlock.getBlock();
+                                if (blockchain.getLastBlock().getId() != block.getPreviousBlockId()) {
+                                    pushInOrder = false;
+                                    break;
+                                }
+                                nextIndex++;
+                                try {
+                                    if (bulkImport) {
+                                        bulkPushBlock(block, bulkBlocks, pushedBlocks);
+                                    } else {
+                                        pushBlock(block);
+                                    }
+                                } catch (BlockNotAcceptedException e) {
+                                    peerBlock.getPeer().blacklist(e);
+                                    pushInOrder = false;
+                                    break;
+                                }
+                            }
+                        } finally {
+                            bulkCommit(bulkBlocks, pushedBlocks);
+                        }
+                    } finally {
+                        blockchain.writeUnlock();
+                        notifyBlocksPushed(pushedBlocks);
                     }
                 }
-
             }
+            pending.keySet().forEach(future -> future.cancel(false));
             if (slowestPeer != null && connectedPublicPeers.size() >= Peers.maxNumberOfConnectedPublicPeers && chainBlockIds.size() > 360) {
                 Logger.logDebugMessage(slowestPeer.getHost() + " took " + maxResponseTime + " ms, disconnecting");
                 slowestPeer.deactivate();
             }
             //
-            // Add the new blocks to the blockchain.  We will stop if we encounter
+            // Add the remaining blocks to the blockchain.  We will stop if we encounter
             // a missing block (this will happen if an invalid block is encountered
             // when downloading the blocks)
             //
+            List<BlockImpl> pushedBlocks = new ArrayList<>();
             blockchain.writeLock();
             try {
                 List<BlockImpl> forkBlocks = new ArrayList<>();
-                for (int index = 1; index < chainBlockIds.size() && blockchain.getHeight() - startHeight < 720; index++) {
-                    PeerBlock peerBlock = blockMap.get(chainBlockIds.get(index));
-                    if (peerBlock == null) {
-                        break;
-                    }
-                    BlockImpl block = peerBlock.getBlock();
-                    if (blockchain.getLastBlock().getId() == block.getPreviousBlockId()) {
-                        try {
-                            pushBlock(block);
-                        } catch (BlockNotAcceptedException e) {
-                            peerBlock.getPeer().blacklist(e);
+                List<BlockImpl> bulkBlocks = new ArrayList<>();
+                boolean bulkImport = isDownloading && bulkImportBatchSize > 1;
+                try {
+                    for (int index = nextIndex; index < chainBlockIds.size() && blockchain.getHeight() - startHeight < 720; index++) {
+                        PeerBlock peerBlock = blockMap.get(chainBlockIds.get(index));
+                        if (peerBlock == null) {
+                            break;
+                        }
+                        BlockImpl block = peerBlock.getBlock();
+                        if (blockchain.getLastBlock().getId() == block.getPreviousBlockId()) {
+                            try {
+                                if (bulkImport) {
+                                    bulkPushBlock(block, bulkBlocks, pushedBlocks);
+                                } else {
+                                    pushBlock(block);
+                                }
+                            } catch (BlockNotAcceptedException e) {
+                                peerBlock.getPeer().blacklist(e);
+                            }
+                        } else {
+                            forkBlocks.add(block);
                         }
-                    } else {
-                        forkBlocks.add(block);
                     }
+                } finally {
+                    bulkCommit(bulkBlocks, pushedBlocks);
                 }
                 //
                 // Process a fork
@@ -519,13 +814,83 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                 }
             } finally {
                 blockchain.writeUnlock();
+                notifyBlocksPushed(pushedBlocks);
             }
 
         }
 
+        /**
+         * Select the peer for a segment request
+         *
+         * The connected peer with the fewest outstanding requests is selected, using the
+         * observed throughput to choose between peers with the same number of requests.
+         * Peers without a throughput measurement are tried first.
+         *
+         * @param   segment                 Download segment or null for a new segment
+         * @param   peerRequests            Outstanding requests for each peer
+         * @param   peerThroughput          Observed blocks per second for each peer
+         * @param   startIndex              Index of the first peer to consider
+         * @return                          Selected peer or null if no peer is available
+         */
+        private Peer selectPeer(DownloadSegment segment, Map<Peer, Integer> peerRequests,
+                                Map<Peer, Long> peerThroughput, int startIndex) {
+            Peer selectedPeer = null;
+            int selectedRequests = Integer.MAX_VALUE;
+            long selectedThroughput = -1;
+            int size = connectedPublicPeers.size();
+            for (int i = 0; i < size; i++) {
+                Peer peer = connectedPublicPeers.get((startIndex + i) % size);
+                if (peer.getState() != Peer.State.CONNECTED || (segment != null && segment.peers.contains(peer))) {
+                    continue;
+                }
+                int requests = peerRequests.getOrDefault(peer, 0);
+                long throughput = peerThroughput.getOrDefault(peer, Long.MAX_VALUE);
+                if (requests < selectedRequests || (requests == selectedRequests && throughput > selectedThroughput)) {
+                    selectedPeer = peer;
+                    selectedRequests = requests;
+                    selectedThroughput = throughput;
+                }
+            }
+            return selectedPeer;
+        }
+
+        /**
+         * Submit a request for the remaining blocks in a segment
+         *
+         * @param   segment                 Download segment
+         * @param   peer                    Peer
+         * @param   completionService       Completion service
+         * @param   pending                 Pending requests
+         * @param   peerRequests            Outstanding requests for each peer
+         */
+        private void submitSegment(DownloadSegment segment, Peer peer, CompletionService<List<BlockImpl>> completionService,
+                                   Map<Future<List<BlockImpl>>, DownloadSegment> pending, Map<Peer, Integer> peerRequests) {
+            GetNextBlocks nextBlocks = new GetNextBlocks(chainBlockIds, segment.start, segment.stop);
+            nextBlocks.setPeer(peer);
+            Future<List<BlockImpl>> future = completionService.submit(nextBlocks);
+            nextBlocks.setFuture(future);
+            segment.requests.add(nextBlocks);
+            segment.peers.add(peer);
+            pending.put(future, segment);
+            peerRequests.merge(peer, 1, Integer::sum);
+        }
+
         private void processFork(final Peer peer, final List<BlockImpl> forkBlocks, final Block commonBlock) {
 
             BigInteger curCumulativeDifficulty = blockchain.getLastBlock().getCumulativeDifficulty();
+            //
+            // Evaluate the fork before popping off our blocks.  The stateless block checks
+            // are performed and the fork cumulative difficulty is calculated from the block
+            // base targets, so a weaker or invalid fork doesn't roll back our chain.
+            //
+            BigInteger forkCumulativeDifficulty = evaluateFork(peer, forkBlocks, commonBlock);
+            if (forkCumulativeDifficulty == null) {
+                return;
+            }
+            if (forkCumulativeDifficulty.compareTo(curCumulativeDifficulty) < 0) {
+                Logger.logDebugMessage("Fork from peer " + peer.getHost() + " has lower cumulative difficulty, keeping our chain");
+                return;
+            }
 
             List<BlockImpl> myPoppedOffBlocks = popOffTo(commonBlock);
 
@@ -574,6 +939,48 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
         }
 
+        /**
+         * Evaluate a fork without changing the blockchain
+         *
+         * The fork blocks following the common block are verified as block headers and the
+         * cumulative difficulty at the end of the fork is returned.  Fork blocks that do not
+         * connect to the fork are ignored, the same as when the fork is pushed.
+         *
+         * @param   peer                    Peer providing the fork
+         * @param   forkBlocks              Fork blocks
+         * @param   commonBlock             Common block
+         * @return                          Fork cumulative difficulty or null if the fork is not valid
+         */
+        private BigInteger evaluateFork(final Peer peer, final List<BlockImpl> forkBlocks, final Block commonBlock) {
+            BlockImpl forkCommonBlock = blockchain.getBlock(commonBlock.getId());
+            if (forkCommonBlock == null) {
+                return null;
+            }
+            List<BlockHeader> headers = new ArrayList<>(forkBlocks.size());
+            long prevId = forkCommonBlock.getId();
+            try {
+                for (BlockImpl block : forkBlocks) {
+                    if (block.getPreviousBlockId() == prevId) {
+                        headers.add(BlockHeader.parse(block.bytes()));
+                        prevId = block.getId();
+                    }
+                }
+            } catch (SpaException.NotValidException e) {
+                peer.blacklist(e);
+                return null;
+            }
+            if (headers.isEmpty()) {
+                Logger.logDebugMessage("Fork from peer " + peer.getHost() + " doesn't connect to the common block");
+                return null;
+            }
+            BigInteger cumulativeDifficulty = verifyBlockHeaders(forkCommonBlock, headers);
+            if (cumulativeDifficulty == null) {
+                Logger.logDebugMessage("Fork from peer " + peer.getHost() + " contains invalid blocks, blacklisting");
+                peer.blacklist("Invalid fork");
+            }
+            return cumulativeDifficulty;
+        }
+
     };
 
     /**
@@ -602,6 +1009,9 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         /** Time it took to return getNextBlocks */
         private long responseTime;
 
+        /** Time the request was submitted */
+        private volatile long requestTime = System.currentTimeMillis();
+
         /**
          * Create the callable future
          *
@@ -636,6 +1046,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             request.put("blockIds", idList);
             request.put("blockId", Long.toUnsignedString(blockIds.get(start)));
             long startTime = System.currentTimeMillis();
+            requestTime = startTime;
             JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
             responseTime = System.currentTimeMillis() - startTime;
             if (response == null) {
@@ -750,6 +1161,53 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         public long getResponseTime() {
             return responseTime;
         }
+
+        /**
+         * Return the time the request was sent
+         *
+         * @return                      Request time
+         */
+        public long getRequestTime() {
+            return requestTime;
+        }
+    }
+
+    /**
+     * Block segment being downloaded
+     */
+    private static class DownloadSegment {
+
+        /** Index of the last block received, or the common block if no blocks have been received */
+        private int start;
+
+        /** Stop index */
+        private final int stop;
+
+        /** Outstanding requests */
+        private final List<GetNextBlocks> requests = new ArrayList<>(2);
+
+        /** Peers that have been sent a request */
+        private final Set<Peer> peers = new HashSet<>();
+
+        /** Number of failed requests */
+        private int failures;
+
+        /** A second request has been sent because the first request was slow */
+        private boolean hedged;
+
+        /** All blocks have been received */
+        private boolean complete;
+
+        /**
+         * Create the download segment
+         *
+         * @param   start               Start index within the block identifier list
+         * @param   stop                Stop index within the block identifier list
+         */
+        private DownloadSegment(int start, int stop) {
+            this.start = start;
+            this.stop = stop;
+        }
     }
 
     /**
@@ -918,10 +1376,25 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
         blockListeners.addListener(checksumListener, Event.BLOCK_PUSHED);
 
-        blockListeners.addListener(block -> Db.db.analyzeTables(), Event.RESCAN_END);
+        blockListeners.addListener(block -> blockchain.blockPushed((BlockImpl)block), Event.BLOCK_PUSHED);
+
+        blockListeners.addListener(block -> blockchain.blockPopped(), Event.BLOCK_POPPED);
+
+        blockListeners.addListener(block -> blockchain.invalidateCounts(), Event.RESCAN_BEGIN);
+
+        blockListeners.addListener(block -> ExistenceFilter.checkCapacity(), Event.BLOCK_PUSHED);
+
+        blockListeners.addListener(block -> {
+            if (Spa.isFastStart() && Spa.isStarting()) {
+                networkService.submit(Db.db::analyzeTables);
+            } else {
+                Db.db.analyzeTables();
+            }
+        }, Event.RESCAN_END);
 
         ThreadPool.runBeforeStart(() -> {
             alreadyInitialized = true;
+            ExistenceFilter.rebuild();
             if (addGenesisBlock()) {
                 scan(0, false);
             } else if (Spa.getBooleanProperty("spa.forceScan")) {
@@ -944,6 +1417,10 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     scan(height, validate);
                 }
             }
+            String importChainFile = Spa.getStringProperty("spa.importChainFile");
+            if (importChainFile != null) {
+                importChain(Paths.get(importChainFile));
+            }
         }, false);
 
         if (!Constants.isLightClient && !Constants.isOffline) {
@@ -970,25 +1447,74 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         derivedTables.add(table);
     }
 
+    /**
+     * Trim the derived tables
+     *
+     * Each table is trimmed by a separate task using its own database transaction.
+     * The tables are trimmed in batches and the blockchain read lock is released between
+     * batches so block processing is not held up by a long trim.
+     */
     @Override
     public void trimDerivedTables() {
+        long startTime = System.currentTimeMillis();
+        int trimHeight = Math.max(blockchain.getHeight() - Constants.MAX_ROLLBACK, 0);
+        if (trimHeight <= 0) {
+            return;
+        }
+        lastTrimHeight = trimHeight;
+        List<Future<?>> futures = new ArrayList<>(derivedTables.size());
+        for (DerivedDbTable table : derivedTables) {
+            futures.add(derivedTableService.submit(() -> trimDerivedTable(table, trimHeight)));
+        }
+        RuntimeException exception = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Logger.logMessage(e.getCause().toString(), e);
+                if (exception == null) {
+                    exception = new RuntimeException(e.getCause().toString(), e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Derived table trim interrupted", e);
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        Logger.logDebugMessage("Trimmed %d derived tables to height %d in %d ms",
+                derivedTables.size(), trimHeight, System.currentTimeMillis() - startTime);
+    }
+
+    private void trimDerivedTable(DerivedDbTable table, int height) {
+        long startTime = System.currentTimeMillis();
+        blockchain.readLock();
         try {
             Db.db.beginTransaction();
-            doTrimDerivedTables();
+            table.trim(height);
             Db.db.commitTransaction();
         } catch (Exception e) {
-            Logger.logMessage(e.toString(), e);
             Db.db.rollbackTransaction();
             throw e;
         } finally {
             Db.db.endTransaction();
+            blockchain.readUnlock();
         }
+        Logger.logDebugMessage("Trimmed table %s to height %d in %d ms", table, height, System.currentTimeMillis() - startTime);
     }
 
+    /**
+     * Trim the derived tables while holding the blockchain write lock
+     *
+     * The tables are trimmed in sequence using the current database transaction since
+     * other threads cannot obtain the blockchain lock.
+     */
     private void doTrimDerivedTables() {
         lastTrimHeight = Math.max(blockchain.getHeight() - Constants.MAX_ROLLBACK, 0);
         if (lastTrimHeight > 0) {
             for (DerivedDbTable table : derivedTables) {
+                long startTime = System.currentTimeMillis();
                 blockchain.readLock();
                 try {
                     table.trim(lastTrimHeight);
@@ -996,8 +1522,35 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                 } finally {
                     blockchain.readUnlock();
                 }
+                Logger.logDebugMessage("Trimmed table %s to height %d in %d ms", table, lastTrimHeight, System.currentTimeMillis() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Roll back the derived tables using the current database transaction
+     *
+     * @param   height                  Rollback height or -1 to truncate the tables
+     */
+    private void rollbackDerivedTables(int height) {
+        long startTime = System.currentTimeMillis();
+        for (DerivedDbTable table : derivedTables) {
+            long tableStartTime = System.currentTimeMillis();
+            if (height < 0) {
+                table.truncate();
+            } else {
+                table.rollback(height);
+            }
+            long elapsed = System.currentTimeMillis() - tableStartTime;
+            if (elapsed >= 1000) {
+                Logger.logDebugMessage("%s table %s required %d ms", height < 0 ? "Truncating" : "Rolling back", table, elapsed);
             }
         }
+        long elapsed = System.currentTimeMillis() - startTime;
+        if (elapsed >= 1000) {
+            Logger.logDebugMessage("%s %d derived tables required %d ms", height < 0 ? "Truncating" : "Rolling back",
+                    derivedTables.size(), elapsed);
+        }
     }
 
     List<DerivedDbTable> getDerivedTables() {
@@ -1068,6 +1621,109 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         } // else ignore the block
     }
 
+    /**
+     * Process a compact block received from a peer
+     *
+     * The compact block contains the block header and the short transaction identifiers,
+     * which are salted with the block signature.  The block is rebuilt using transactions
+     * from the unconfirmed transaction pool.  The full block is requested from the peer
+     * if a transaction is missing, a short identifier matches more than one transaction,
+     * or the rebuilt block is not accepted, since a short identifier collision or a stale
+     * unconfirmed transaction is not the fault of the peer.
+     *
+     * @param   request                 Compact block
+     * @param   peer                    Peer that sent the block
+     * @throws  SpaException            Block is not valid
+     */
+    @Override
+    public void processPeerCompactBlock(JSONObject request, Peer peer) throws SpaException {
+        JSONArray shortIds = (JSONArray)request.get("shortTransactionIds");
+        if (shortIds == null || shortIds.size() > Constants.MAX_NUMBER_OF_TRANSACTIONS) {
+            throw new SpaException.NotValidException("Invalid compact block transaction list");
+        }
+        byte[] blockSignature = Convert.parseHexString((String)request.get("blockSignature"));
+        if (blockSignature == null || blockSignature.length != 64) {
+            throw new SpaException.NotValidException("Invalid compact block signature");
+        }
+        byte[] key = Peers.getCompactBlockKey(blockSignature);
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < shortIds.size(); i++) {
+            if (!(shortIds.get(i) instanceof Long)) {
+                throw new SpaException.NotValidException("Invalid compact block short transaction id");
+            }
+            if (indexes.put((Long)shortIds.get(i), i) != null) {
+                indexes = null;
+                break;
+            }
+        }
+        JSONObject[] transactionsData = new JSONObject[shortIds.size()];
+        boolean rebuilt = false;
+        if (indexes != null) {
+            int found = 0;
+            boolean collision = false;
+            try (DbIterator<UnconfirmedTransaction> unconfirmedTransactions =
+                         TransactionProcessorImpl.getInstance().getAllUnconfirmedTransactions()) {
+                for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                    TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+                    Integer index = indexes.get(Peers.getShortTransactionId(key, transaction.fullHash()));
+                    if (index != null) {
+                        if (transactionsData[index] != null) {
+                            collision = true;
+                            break;
+                        }
+                        transactionsData[index] = transaction.getJSONObject();
+                        found++;
+                    }
+                }
+            }
+            rebuilt = !collision && found == transactionsData.length;
+            if (!rebuilt) {
+                Logger.logDebugMessage("Unable to rebuild compact block from " + peer.getHost() + " using " + found
+                        + " of " + transactionsData.length + " transactions" + (collision ? " (short id collision)" : "")
+                        + ", requesting the full block");
+            }
+        }
+        if (rebuilt) {
+            JSONObject blockData = new JSONObject(request);
+            blockData.remove("shortTransactionIds");
+            JSONArray transactions = new JSONArray();
+            transactions.addAll(Arrays.asList(transactionsData));
+            blockData.put("transactions", transactions);
+            try {
+                processPeerBlock(blockData);
+                Logger.logDebugMessage("Rebuilt compact block using " + transactionsData.length
+                        + " transactions from the unconfirmed pool");
+                return;
+            } catch (SpaException | RuntimeException e) {
+                Logger.logDebugMessage("Rebuilt compact block from " + peer.getHost() + " not accepted, requesting the full block: "
+                        + e.toString());
+            }
+        }
+        processFullBlock(request, peer);
+    }
+
+    /**
+     * Request and process the full block for a compact block
+     *
+     * @param   compactBlock            Compact block
+     * @param   peer                    Peer that sent the compact block
+     * @throws  SpaException            Block is not valid
+     */
+    private void processFullBlock(JSONObject compactBlock, Peer peer) throws SpaException {
+        JSONObject request = new JSONObject();
+        request.put("requestType", "getNextBlocks");
+        request.put("blockId", compactBlock.get("previousBlock"));
+        request.put("limit", 1);
+        JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+        List<JSONObject> nextBlocks = response != null ? (List<JSONObject>)response.get("nextBlocks") : null;
+        if (nextBlocks == null || nextBlocks.isEmpty()
+                || !compactBlock.get("blockSignature").equals(nextBlocks.get(0).get("blockSignature"))) {
+            Logger.logDebugMessage("Full block for compact block not available from " + peer.getHost());
+            return;
+        }
+        processPeerBlock(nextBlocks.get(0));
+    }
+
     @Override
     public List<BlockImpl> popOffTo(int height) {
         if (height <= 0) {
@@ -1078,6 +1734,116 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         return Collections.emptyList();
     }
 
+    /**
+     * Pop off the last blocks and push them again, timing each stage of the block push
+     *
+     * The popped blocks are parsed again from their JSON without verifying the block
+     * signature, so that no cached signature verification or block bytes carry over
+     * into the replay.  The signatures are then verified in the SIGNATURES stage.
+     *
+     * If a replayed block is not accepted, the blockchain is left at the last accepted
+     * block, which is below the height at the start of the replay.  The missing blocks
+     * are downloaded again from the network when the node is next run online.
+     *
+     * @param   count                       Number of blocks
+     * @return                              Replay statistics
+     * @throws  BlockNotAcceptedException   Replayed block not accepted
+     */
+    @Override
+    public ReplayStatistics replayBlocks(int count) throws BlockNotAcceptedException {
+        blockchain.writeLock();
+        try {
+            int height = blockchain.getHeight();
+            if (count <= 0 || height - count < getMinRollbackHeight()) {
+                throw new IllegalArgumentException("Unable to replay " + count + " blocks at height " + height
+                        + ", minimum rollback height is " + getMinRollbackHeight());
+            }
+            List<BlockImpl> poppedBlocks = popOffTo(blockchain.getBlockAtHeight(height - count));
+            List<BlockImpl> blocks = new ArrayList<>(poppedBlocks.size());
+            for (int i = poppedBlocks.size() - 1; i >= 0; i--) {
+                try {
+                    blocks.add(BlockImpl.parseBlock(poppedBlocks.get(i).getJSONObject(), false));
+                } catch (SpaException.NotValidException e) {
+                    throw new RuntimeException(e.toString(), e);
+                }
+            }
+            try {
+                return replay(blocks);
+            } catch (BlockNotAcceptedException e) {
+                Logger.logWarningMessage("Replayed block not accepted, blockchain height is now " + blockchain.getHeight()
+                        + " instead of " + height);
+                throw e;
+            }
+        } finally {
+            blockchain.writeUnlock();
+        }
+    }
+
+    /**
+     * Push blocks from a chain archive, timing each stage of the block push
+     *
+     * The archive blocks following the last block are read into memory before they are pushed.
+     * The block signatures are verified in the SIGNATURES stage and not when the archive is read.
+     *
+     * @param   file                        Chain archive file
+     * @param   count                       Maximum number of blocks
+     * @return                              Replay statistics
+     * @throws  IOException                 Unable to read the archive
+     * @throws  BlockNotAcceptedException   Replayed block not accepted
+     */
+    @Override
+    public ReplayStatistics replayArchive(Path file, int count) throws IOException, BlockNotAcceptedException {
+        blockchain.writeLock();
+        try (ChainArchive.Reader reader = new ChainArchive.Reader(file)) {
+            List<BlockImpl> blocks = new ArrayList<>();
+            long previousBlockId = blockchain.getLastBlock().getId();
+            byte[] data;
+            while (blocks.size() < count && (data = reader.next()) != null) {
+                JSONObject blockJSON = (JSONObject)JSONValue.parse(new String(data, StandardCharsets.UTF_8));
+                if (blockJSON == null) {
+                    throw new IOException("Archive block JSON is not valid");
+                }
+                BlockImpl block = BlockImpl.parseBlock(blockJSON, false);
+                if (block.getPreviousBlockId() == previousBlockId) {
+                    blocks.add(block);
+                    previousBlockId = block.getId();
+                } else if (!blocks.isEmpty()) {
+                    throw new IOException("Archive block " + block.getStringId() + " does not follow the previous archive block");
+                }
+            }
+            if (blocks.isEmpty()) {
+                throw new IllegalArgumentException("Archive does not contain blocks following the last block");
+            }
+            return replay(blocks);
+        } catch (SpaException.NotValidException e) {
+            throw new IOException("Archive block is not valid: " + e.getMessage(), e);
+        } finally {
+            blockchain.writeUnlock();
+        }
+    }
+
+    /**
+     * Push blocks while collecting the replay statistics
+     *
+     * The caller must hold the blockchain write lock.
+     *
+     * @param   blocks                      Blocks in height order
+     * @return                              Replay statistics
+     * @throws  BlockNotAcceptedException   Block not accepted
+     */
+    private ReplayStatistics replay(List<BlockImpl> blocks) throws BlockNotAcceptedException {
+        ReplayStatistics statistics = new ReplayStatistics();
+        replayStatistics = statistics;
+        try {
+            for (BlockImpl block : blocks) {
+                pushBlock(block);
+            }
+        } finally {
+            replayStatistics = null;
+        }
+        return statistics;
+    }
+
     @Override
     public void fullReset() {
         blockchain.writeLock();
@@ -1167,6 +1933,9 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     void shutdown() {
         ThreadPool.shutdownExecutor("networkService", networkService, 5);
+        ThreadPool.shutdownExecutor("derivedTableService", derivedTableService, 5);
+        blockVerifyService.shutdownNow();
+        ThreadPool.shutdownExecutor("blockVerifyService", blockVerifyService, 5);
     }
 
     private void addBlock(BlockImpl block) {
@@ -1238,16 +2007,46 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
     }
 
     private void pushBlock(final BlockImpl block) throws BlockNotAcceptedException {
+        FlightRecorder.BlockPushEvent event = new FlightRecorder.BlockPushEvent();
+        event.begin();
+        boolean accepted = false;
+        try {
+            pushBlock(block, event);
+            accepted = true;
+        } finally {
+            event.end();
+            event.commit(block.getHeight(), block.getId(), block.getTransactions().size(), accepted);
+        }
+    }
+
+    private void pushBlock(final BlockImpl block, FlightRecorder.BlockPushEvent event) throws BlockNotAcceptedException {
 
         int curTime = Spa.getEpochTime();
+        ReplayStatistics statistics = null;
+        long startTime = 0;
+        long stageTime = 0;
 
+        long lockStart = System.nanoTime();
         blockchain.writeLock();
+        event.setLockWait(System.nanoTime() - lockStart);
         try {
+            //
+            // The replay statistics are only set while the replaying thread holds the write lock
+            //
+            statistics = replayStatistics;
+            if (statistics != null) {
+                startTime = stageTime = System.nanoTime();
+            }
             BlockImpl previousLastBlock = null;
             try {
                 Db.db.beginTransaction();
                 previousLastBlock = blockchain.getLastBlock();
 
+                if (statistics != null) {
+                    block.verifyBlockSignature();
+                    block.getTransactions().forEach(TransactionImpl::verifySignature);
+                    stageTime = statistics.record(ReplayStatistics.Stage.SIGNATURES, stageTime);
+                }
                 validate(block, previousLastBlock, curTime);
 
                 long nextHitTime = Generator.getNextHitTime(previousLastBlock.getId(), curTime);
@@ -1260,18 +2059,34 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     throw new BlockOutOfOrderException(msg, block);
                 }
 
+                if (statistics != null) {
+                    stageTime = statistics.record(ReplayStatistics.Stage.VALIDATE, stageTime);
+                }
+
                 Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
                 List<TransactionImpl> validPhasedTransactions = new ArrayList<>();
                 List<TransactionImpl> invalidPhasedTransactions = new ArrayList<>();
                 validateTransactions(block, previousLastBlock, curTime, duplicates, previousLastBlock.getHeight() >= Constants.LAST_CHECKSUM_BLOCK);
+                if (statistics != null) {
+                    stageTime = statistics.record(ReplayStatistics.Stage.TRANSACTIONS, stageTime);
+                }
 
                 block.setPrevious(previousLastBlock);
                 blockListeners.notify(block, Event.BEFORE_BLOCK_ACCEPT);
                 TransactionProcessorImpl.getInstance().requeueAllUnconfirmedTransactions();
                 addBlock(block);
+                if (statistics != null) {
+                    stageTime = statistics.record(ReplayStatistics.Stage.STORE, stageTime);
+                }
                 accept(block, validPhasedTransactions, invalidPhasedTransactions, duplicates);
+                if (statistics != null) {
+                    stageTime = statistics.record(ReplayStatistics.Stage.ACCEPT, stageTime);
+                }
 
                 Db.db.commitTransaction();
+                if (statistics != null) {
+                    stageTime = statistics.record(ReplayStatistics.Stage.COMMIT, stageTime);
+                }
             } catch (Exception e) {
                 Db.db.rollbackTransaction();
                 blockchain.setLastBlock(previousLastBlock);
@@ -1290,6 +2105,117 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
         blockListeners.notify(block, Event.BLOCK_PUSHED);
 
+        if (statistics != null) {
+            statistics.record(ReplayStatistics.Stage.LISTENERS, stageTime);
+            statistics.addBlock(block, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Push a downloaded block as part of a bulk import
+     *
+     * The blocks in a bulk import share a single database transaction, which is committed
+     * by bulkCommit() after bulkImportBatchSize blocks.  A savepoint is set for each
+     * block so a block that is not accepted can be rolled back without affecting the
+     * blocks already pushed.  The unconfirmed transactions are requeued once when the
+     * transaction is started and the block listeners are notified after the commit.
+     *
+     * The caller must hold the blockchain write lock and must call bulkCommit() when done.
+     * The committed blocks are added to the pushed block list and the caller must call
+     * notifyBlocksPushed() after releasing the write lock.
+     *
+     * @param   block                       Block
+     * @param   bulkBlocks                  Blocks pushed but not yet committed
+     * @param   pushedBlocks                Blocks committed but not yet announced
+     * @throws  BlockNotAcceptedException   Block not accepted
+     */
+    private void bulkPushBlock(BlockImpl block, List<BlockImpl> bulkBlocks, List<BlockImpl> pushedBlocks)
+                                            throws BlockNotAcceptedException {
+        int curTime = Spa.getEpochTime();
+        if (!Db.db.isInTransaction()) {
+            Db.db.beginTransaction();
+            TransactionProcessorImpl.getInstance().requeueAllUnconfirmedTransactions();
+        }
+        BlockImpl previousLastBlock = blockchain.getLastBlock();
+        Savepoint savepoint = Db.db.setSavepoint();
+        try {
+            validate(block, previousLastBlock, curTime);
+            long nextHitTime = Generator.getNextHitTime(previousLastBlock.getId(), curTime);
+            if (nextHitTime > 0 && block.getTimestamp() > nextHitTime + 1) {
+                String msg = "Rejecting block " + block.getStringId() + " at height " + previousLastBlock.getHeight()
+                        + " block timestamp " + block.getTimestamp() + " next hit time " + nextHitTime
+                        + " current time " + curTime;
+                Logger.logDebugMessage(msg);
+                Generator.setDelay(-Constants.FORGING_SPEEDUP);
+                throw new BlockOutOfOrderException(msg, block);
+            }
+            Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
+            List<TransactionImpl> validPhasedTransactions = new ArrayList<>();
+            List<TransactionImpl> invalidPhasedTransactions = new ArrayList<>();
+            validateTransactions(block, previousLastBlock, curTime, duplicates, previousLastBlock.getHeight() >= Constants.LAST_CHECKSUM_BLOCK);
+            block.setPrevious(previousLastBlock);
+            blockListeners.notify(block, Event.BEFORE_BLOCK_ACCEPT);
+            addBlock(block);
+            accept(block, validPhasedTransactions, invalidPhasedTransactions, duplicates);
+        } catch (BlockNotAcceptedException | RuntimeException e) {
+            Db.db.rollbackToSavepoint(savepoint);
+            blockchain.setLastBlock(previousLastBlock);
+            throw e;
+        }
+        bulkBlocks.add(block);
+        if (bulkBlocks.size() >= bulkImportBatchSize) {
+            bulkCommit(bulkBlocks, pushedBlocks);
+        }
+    }
+
+    /**
+     * Commit the blocks pushed by bulkPushBlock() and notify the block accept listeners
+     *
+     * The committed blocks are moved to the pushed block list.  The last block is reset
+     * to the last committed block if the commit fails.
+     *
+     * @param   bulkBlocks                  Blocks pushed but not yet committed
+     * @param   pushedBlocks                Blocks committed but not yet announced
+     */
+    private void bulkCommit(List<BlockImpl> bulkBlocks, List<BlockImpl> pushedBlocks) {
+        if (!Db.db.isInTransaction()) {
+            return;
+        }
+        try {
+            Db.db.commitTransaction();
+        } catch (RuntimeException e) {
+            Db.db.rollbackTransaction();
+            if (!bulkBlocks.isEmpty()) {
+                blockchain.setLastBlock(BlockDb.findBlock(bulkBlocks.get(0).getPreviousBlockId()));
+                bulkBlocks.clear();
+            }
+            throw e;
+        } finally {
+            Db.db.endTransaction();
+        }
+        for (BlockImpl block : bulkBlocks) {
+            blockListeners.notify(block, Event.AFTER_BLOCK_ACCEPT);
+        }
+        pushedBlocks.addAll(bulkBlocks);
+        bulkBlocks.clear();
+    }
+
+    /**
+     * Send the blocks committed by bulkCommit() to our peers and notify the block pushed listeners
+     *
+     * This must be called after releasing the blockchain write lock, as is done for pushBlock().
+     *
+     * @param   pushedBlocks                Blocks committed but not yet announced
+     */
+    private void notifyBlocksPushed(List<BlockImpl> pushedBlocks) {
+        int curTime = Spa.getEpochTime();
+        for (BlockImpl block : pushedBlocks) {
+            if (block.getTimestamp() >= curTime - 600) {
+                Peers.sendToSomePeers(block);
+            }
+            blockListeners.notify(block, Event.BLOCK_PUSHED);
+        }
+        pushedBlocks.clear();
     }
 
     private void validate(BlockImpl block, BlockImpl previousLastBlock, int curTime) throws BlockNotAcceptedException {
@@ -1333,6 +2259,18 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     private void validateTransactions(BlockImpl block, BlockImpl previousLastBlock, int curTime, Map<TransactionType, Map<String, Integer>> duplicates,
                                       boolean fullValidation) throws BlockNotAcceptedException {
+        FlightRecorder.ValidateTransactionsEvent event = new FlightRecorder.ValidateTransactionsEvent();
+        event.begin();
+        try {
+            doValidateTransactions(block, previousLastBlock, curTime, duplicates, fullValidation);
+        } finally {
+            event.end();
+            event.commit(previousLastBlock.getHeight() + 1, block.getTransactions().size());
+        }
+    }
+
+    private void doValidateTransactions(BlockImpl block, BlockImpl previousLastBlock, int curTime, Map<TransactionType, Map<String, Integer>> duplicates,
+                                        boolean fullValidation) throws BlockNotAcceptedException {
         long payloadLength = 0;
         long calculatedTotalAmount = 0;
         long calculatedTotalFee = 0;
@@ -1408,6 +2346,8 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     private void accept(BlockImpl block, List<TransactionImpl> validPhasedTransactions, List<TransactionImpl> invalidPhasedTransactions,
                         Map<TransactionType, Map<String, Integer>> duplicates) throws TransactionNotAcceptedException {
+        FlightRecorder.BlockAcceptEvent event = new FlightRecorder.BlockAcceptEvent();
+        event.begin();
         try {
             isProcessingBlock = true;
             for (TransactionImpl transaction : block.getTransactions()) {
@@ -1448,6 +2388,8 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         } finally {
             isProcessingBlock = false;
             AccountLedger.clearEntries();
+            event.end();
+            event.commit(block.getHeight(), block.getTransactions().size());
         }
     }
 
@@ -1486,9 +2428,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     poppedOffBlocks.add(block);
                     block = popLastBlock();
                 }
-                for (DerivedDbTable table : derivedTables) {
-                    table.rollback(commonBlock.getHeight());
-                }
+                rollbackDerivedTables(commonBlock.getHeight());
                 Db.db.clearCache();
                 Db.db.commitTransaction();
             } catch (RuntimeException e) {
@@ -1680,6 +2620,249 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                 && hasAllReferencedTransactions(referencedTransaction, timestamp, count + 1);
     }
 
+    /**
+     * Verify that a block and its transactions can be serialized and parsed back to the
+     * same bytes.  These checks do not depend on the blockchain state.
+     *
+     * @param   block                   Block
+     * @throws  SpaException.NotValidException  Block or transaction encoding is not valid
+     */
+    private static void verifyBlockEncoding(BlockImpl block) throws SpaException.NotValidException {
+        byte[] blockBytes = block.bytes();
+        JSONObject blockJSON = (JSONObject) JSONValue.parse(block.getJSONObject().toJSONString());
+        if (!Arrays.equals(blockBytes, BlockImpl.parseBlock(blockJSON).bytes())) {
+            throw new SpaException.NotValidException("Block JSON cannot be parsed back to the same block");
+        }
+        for (TransactionImpl transaction : block.getTransactions()) {
+            byte[] transactionBytes = transaction.bytes();
+            if (block.getHeight() > Constants.APL_BLOCK
+                    && !Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionBytes).build().bytes())) {
+                throw new SpaException.NotValidException("Transaction bytes cannot be parsed back to the same transaction: "
+                        + transaction.getJSONObject().toJSONString());
+            }
+            JSONObject transactionJSON = (JSONObject) JSONValue.parse(transaction.getJSONObject().toJSONString());
+            if (!Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionJSON).build().bytes())) {
+                throw new SpaException.NotValidException("Transaction JSON cannot be parsed back to the same transaction: "
+                        + transaction.getJSONObject().toJSONString());
+            }
+        }
+    }
+
+    /**
+     * Block read during a rescan
+     */
+    private static class ScanBlock {
+
+        /** Database identifier */
+        private final long dbId;
+
+        /** Block or null if the block could not be loaded */
+        private BlockImpl block;
+
+        /** Load exception */
+        private RuntimeException exception;
+
+        /** Verification task or null if the block is not verified in advance */
+        private Future<Boolean> future;
+
+        /**
+         * Create the scan block
+         *
+         * @param   dbId                Database identifier
+         */
+        private ScanBlock(long dbId) {
+            this.dbId = dbId;
+        }
+
+        /**
+         * Wait for the verification task
+         *
+         * @return                      TRUE if the block encoding has been verified
+         * @throws  SpaException.NotValidException  Block is not valid
+         */
+        private boolean isVerified() throws SpaException.NotValidException {
+            if (future == null) {
+                return false;
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Block verification interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SpaException.NotValidException) {
+                    throw (SpaException.NotValidException)cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                throw new RuntimeException(cause.toString(), cause);
+            }
+        }
+    }
+
+    /**
+     * Verify a block ahead of applying it during a rescan
+     *
+     * The block and transaction signatures are checked and the results are remembered,
+     * so they are not computed again when the block is validated.  The block is skipped
+     * if a public key is not yet known, in which case all of the checks are done when
+     * the block is applied.  The block transactions must be loaded by the scan thread
+     * before the task is submitted, so both threads use the same transaction objects.
+     */
+    private static class VerifyBlockTask implements Callable<Boolean> {
+
+        /** Block */
+        private final BlockImpl block;
+
+        /**
+         * Create the verification task
+         *
+         * @param   block               Block
+         */
+        private VerifyBlockTask(BlockImpl block) {
+            this.block = block;
+        }
+
+        /**
+         * Verify the block
+         *
+         * @return                      TRUE if the block encoding has been verified
+         * @throws  SpaException.NotValidException  Block is not valid
+         */
+        @Override
+        public Boolean call() throws SpaException.NotValidException {
+            if (block.getGeneratorPublicKey() == null) {
+                return false;
+            }
+            for (TransactionImpl transaction : block.getTransactions()) {
+                if (transaction.getSenderPublicKey() == null) {
+                    return false;
+                }
+            }
+            block.checkSignature();
+            for (TransactionImpl transaction : block.getTransactions()) {
+                transaction.checkSignature();
+            }
+            verifyBlockEncoding(block);
+            return true;
+        }
+    }
+
+    /**
+     * Import blocks from a chain archive
+     *
+     * The block JSON is parsed and the block and transaction signatures are verified by the
+     * verification threads ahead of the blocks being pushed.  The blocks are then pushed in
+     * order with the normal block validation and are committed in groups.  Blocks that are
+     * already in the blockchain are skipped.
+     *
+     * @param   file                    Chain archive file
+     */
+    private void importChain(Path file) {
+        Logger.logMessage("Importing blocks from " + file);
+        long startTime = System.currentTimeMillis();
+        int imported = 0;
+        Deque<Future<BlockImpl>> pending = new ArrayDeque<>();
+        List<BlockImpl> bulkBlocks = new ArrayList<>();
+        List<BlockImpl> pushedBlocks = new ArrayList<>();
+        blockchain.writeLock();
+        try (ChainArchive.Reader reader = new ChainArchive.Reader(file)) {
+            boolean endOfArchive = false;
+            try {
+                while (true) {
+                    while (!endOfArchive && pending.size() < scanThreads * 4) {
+                        byte[] data = reader.next();
+                        if (data == null) {
+                            endOfArchive = true;
+                        } else {
+                            pending.add(blockVerifyService.submit(new ImportBlockTask(data)));
+                        }
+                    }
+                    Future<BlockImpl> future = pending.poll();
+                    if (future == null) {
+                        break;
+                    }
+                    BlockImpl block = future.get();
+                    if (block.getPreviousBlockId() != blockchain.getLastBlock().getId()) {
+                        if (BlockDb.hasBlock(block.getId())) {
+                            continue;
+                        }
+                        Logger.logErrorMessage("Archive block " + block.getStringId() + " does not connect to the blockchain");
+                        break;
+                    }
+                    bulkPushBlock(block, bulkBlocks, pushedBlocks);
+                    if (!pushedBlocks.isEmpty()) {
+                        blockchain.writeUnlock();
+                        try {
+                            notifyBlocksPushed(pushedBlocks);
+                        } finally {
+                            blockchain.writeLock();
+                        }
+                    }
+                    imported++;
+                    if (imported % 5000 == 0) {
+                        Logger.logMessage("Imported " + imported + " blocks, height " + blockchain.getHeight());
+                    }
+                }
+            } finally {
+                bulkCommit(bulkBlocks, pushedBlocks);
+            }
+        } catch (ExecutionException e) {
+            Logger.logErrorMessage("Chain import stopped, invalid archive block: " + e.getCause().toString());
+        } catch (IOException | BlockNotAcceptedException | RuntimeException e) {
+            Logger.logErrorMessage("Chain import stopped: " + e.toString(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+            blockchain.writeUnlock();
+            notifyBlocksPushed(pushedBlocks);
+        }
+        Logger.logMessage("Imported " + imported + " blocks in " + (System.currentTimeMillis() - startTime) / 1000
+                + " s, height " + blockchain.getHeight());
+    }
+
+    /**
+     * Parse and verify a block read from a chain archive
+     */
+    private static class ImportBlockTask implements Callable<BlockImpl> {
+
+        /** UTF-8 block JSON */
+        private final byte[] data;
+
+        /**
+         * Create the import task
+         *
+         * @param   data                UTF-8 block JSON
+         */
+        private ImportBlockTask(byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Parse the block and verify the block and transaction signatures
+         *
+         * @return                      Block
+         * @throws  SpaException.NotValidException  Block is not valid
+         */
+        @Override
+        public BlockImpl call() throws SpaException.NotValidException {
+            JSONObject blockJSON = (JSONObject) JSONValue.parse(new String(data, StandardCharsets.UTF_8));
+            if (blockJSON == null) {
+                throw new SpaException.NotValidException("Block JSON is not valid");
+            }
+            BlockImpl block = BlockImpl.parseBlock(blockJSON);
+            for (TransactionImpl transaction : block.getTransactions()) {
+                if (!transaction.checkSignature()) {
+                    throw new SpaException.NotValidException("Transaction " + transaction.getStringId() + " signature is not valid");
+                }
+            }
+            return block;
+        }
+    }
+
     void scheduleScan(int height, boolean validate) {
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("UPDATE scan SET rescan = TRUE, height = ?, validate = ?")) {
@@ -1734,6 +2917,8 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             if (validate) {
                 Logger.logDebugMessage("Also verifying signatures and validating transactions...");
             }
+            ExecutorService verifyService = validate ? blockVerifyService : null;
+            int scanLookahead = validate ? scanThreads * 4 : 1;
             try (Connection con = Db.db.getConnection();
                  PreparedStatement pstmtSelect = con.prepareStatement("SELECT * FROM block WHERE " + (height > 0 ? "height >= ? AND " : "")
                          + " db_id >= ? ORDER BY db_id ASC LIMIT 50000");
@@ -1746,13 +2931,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     Db.db.commitTransaction();
                     return;
                 }
-                for (DerivedDbTable table : derivedTables) {
-                    if (height == 0) {
-                        table.truncate();
-                    } else {
-                        table.rollback(height - 1);
-                    }
-                }
+                rollbackDerivedTables(height == 0 ? -1 : height - 1);
                 Db.db.clearCache();
                 Db.db.commitTransaction();
                 Logger.logDebugMessage("Rolled back derived tables");
@@ -1781,11 +2960,38 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     hasMore = false;
                     pstmtSelect.setLong(pstmtSelectIndex, dbId);
                     try (ResultSet rs = pstmtSelect.executeQuery()) {
-                        while (rs.next()) {
+                        //
+                        // Blocks are read ahead of the block being applied so the verification
+                        // tasks can run in parallel.  Only the block application is done in order.
+                        //
+                        Deque<ScanBlock> scanBlocks = new ArrayDeque<>();
+                        boolean hasRows = true;
+                        while (true) {
+                            while (hasRows && scanBlocks.size() < scanLookahead && (hasRows = rs.next())) {
+                                ScanBlock scanBlock = new ScanBlock(rs.getLong("db_id"));
+                                scanBlocks.add(scanBlock);
+                                try {
+                                    scanBlock.block = BlockDb.loadBlock(con, rs, true);
+                                    scanBlock.block.loadTransactions();
+                                } catch (RuntimeException e) {
+                                    scanBlock.exception = e;
+                                    hasRows = false;
+                                    break;
+                                }
+                                if (verifyService != null && scanBlock.block.getId() != Genesis.GENESIS_BLOCK_ID) {
+                                    scanBlock.future = verifyService.submit(new VerifyBlockTask(scanBlock.block));
+                                }
+                            }
+                            ScanBlock scanBlock = scanBlocks.poll();
+                            if (scanBlock == null) {
+                                break;
+                            }
                             try {
-                                dbId = rs.getLong("db_id");
-                                currentBlock = BlockDb.loadBlock(con, rs, true);
-                                currentBlock.loadTransactions();
+                                dbId = scanBlock.dbId;
+                                if (scanBlock.exception != null) {
+                                    throw scanBlock.exception;
+                                }
+                                currentBlock = scanBlock.block;
                                 if (currentBlock.getId() != currentBlockId || currentBlock.getHeight() > blockchain.getHeight() + 1) {
                                     throw new SpaException.NotValidException("Database blocks in the wrong order!");
                                 }
@@ -1793,27 +2999,17 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                                 List<TransactionImpl> validPhasedTransactions = new ArrayList<>();
                                 List<TransactionImpl> invalidPhasedTransactions = new ArrayList<>();
                                 if (validate && currentBlockId != Genesis.GENESIS_BLOCK_ID) {
+                                    //
+                                    // Wait for the verification task so the signature checks are not
+                                    // repeated by validate()
+                                    //
+                                    boolean verified = scanBlock.isVerified();
                                     int curTime = Spa.getEpochTime();
                                     validate(currentBlock, blockchain.getLastBlock(), curTime);
-                                    byte[] blockBytes = currentBlock.bytes();
-                                    JSONObject blockJSON = (JSONObject) JSONValue.parse(currentBlock.getJSONObject().toJSONString());
-                                    if (!Arrays.equals(blockBytes, BlockImpl.parseBlock(blockJSON).bytes())) {
-                                        throw new SpaException.NotValidException("Block JSON cannot be parsed back to the same block");
+                                    if (!verified) {
+                                        verifyBlockEncoding(currentBlock);
                                     }
                                     validateTransactions(currentBlock, blockchain.getLastBlock(), curTime, duplicates, true);
-                                    for (TransactionImpl transaction : currentBlock.getTransactions()) {
-                                        byte[] transactionBytes = transaction.bytes();
-                                        if (currentBlock.getHeight() > Constants.APL_BLOCK
-                                                && !Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionBytes).build().bytes())) {
-                                            throw new SpaException.NotValidException("Transaction bytes cannot be parsed back to the same transaction: "
-                                                    + transaction.getJSONObject().toJSONString());
-                                        }
-                                        JSONObject transactionJSON = (JSONObject) JSONValue.parse(transaction.getJSONObject().toJSONString());
-                                        if (!Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionJSON).build().bytes())) {
-                                            throw new SpaException.NotValidException("Transaction JSON cannot be parsed back to the same transaction: "
-                                                    + transaction.getJSONObject().toJSONString());
-                                        }
-                                    }
                                 }
                                 blockListeners.notify(currentBlock, Event.BEFORE_BLOCK_ACCEPT);
                                 blockchain.setLastBlock(currentBlock);
@@ -1823,6 +3019,11 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                                 Db.db.commitTransaction();
                                 blockListeners.notify(currentBlock, Event.AFTER_BLOCK_ACCEPT);
                             } catch (SpaException | RuntimeException e) {
+                                scanBlocks.forEach(pendingBlock -> {
+                                    if (pendingBlock.future != null) {
+                                        pendingBlock.future.cancel(false);
+                                    }
+                                });
                                 Db.db.rollbackTransaction();
                                 Logger.logDebugMessage(e.toString(), e);
                                 Logger.logDebugMessage("Applying block " + Long.toUnsignedString(currentBlockId) + " at height "
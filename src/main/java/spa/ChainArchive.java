@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa;
+
+import spa.crypto.Crypto;
+import spa.util.JSON;
+import spa.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chain archive
+ *
+ * A chain archive is a compressed file containing the blocks following the genesis block
+ * in height order.  The archive starts with the archive magic and version, followed by a
+ * record for each block consisting of the JSON length, the UTF-8 block JSON and the JSON CRC32.
+ * A zero length marks the end of the blocks and is followed by the number of blocks and the
+ * SHA-256 digest of the block JSON.
+ *
+ * An archive is created by the exportChain API and is imported at startup when
+ * spa.importChainFile is set.
+ */
+public final class ChainArchive {
+
+    /** Archive magic */
+    private static final int MAGIC = 0x53504143;
+
+    /** Archive version */
+    private static final int VERSION = 1;
+
+    /** Maximum record length */
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Export the blockchain
+     *
+     * The blockchain lock is not held during the export, so the blocks are checked to form a
+     * single chain ending at the last block when the export started.  The export fails and
+     * the archive is deleted if the blockchain changes while it is being exported.
+     *
+     * @param   file                    Archive file, which must not exist
+     * @return                          Number of blocks exported
+     * @throws  IOException             I/O error occurred or the blockchain changed
+     */
+    public static int exportChain(Path file) throws IOException {
+        Block lastBlock = BlockchainImpl.getInstance().getLastBlock();
+        int height = lastBlock.getHeight();
+        long previousBlockId = Genesis.GENESIS_BLOCK_ID;
+        int count = 0;
+        boolean success = false;
+        MessageDigest digest = Crypto.sha256();
+        CRC32 crc = new CRC32();
+        OutputStream fileOut = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(fileOut), 65536));
+                Connection con = Db.db.getConnection();
+                PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE height > 0 AND height <= ? ORDER BY height ASC")) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            pstmt.setInt(1, height);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    BlockImpl block = BlockDb.loadBlock(con, rs, !BlockStore.isEnabled());
+                    if (block.getPreviousBlockId() != previousBlockId) {
+                        throw new IOException("Blockchain changed at height " + block.getHeight() + " during the export");
+                    }
+                    previousBlockId = block.getId();
+                    byte[] data = JSON.toString(block.getJSONStream()).getBytes(StandardCharsets.UTF_8);
+                    crc.reset();
+                    crc.update(data);
+                    digest.update(data);
+                    out.writeInt(data.length);
+                    out.write(data);
+                    out.writeInt((int)crc.getValue());
+                    count++;
+                }
+            }
+            if (previousBlockId != lastBlock.getId()) {
+                throw new IOException("Blockchain changed at height " + height + " during the export");
+            }
+            out.writeInt(0);
+            out.writeInt(count);
+            out.write(digest.digest());
+            success = true;
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            if (!success) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Logger.logMessage("Exported " + count + " blocks to " + file);
+        return count;
+    }
+
+    /**
+     * Chain archive reader
+     */
+    static final class Reader implements Closeable {
+
+        /** Archive input stream */
+        private final DataInputStream in;
+
+        /** Block JSON digest */
+        private final MessageDigest digest = Crypto.sha256();
+
+        /** Record checksum */
+        private final CRC32 crc = new CRC32();
+
+        /** Number of blocks read */
+        private int count;
+
+        /**
+         * Open the archive
+         *
+         * @param   file                Archive file
+         * @throws  IOException         I/O error occurred
+         */
+        Reader(Path file) throws IOException {
+            in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)), 65536));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException(file + " is not a chain archive");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Chain archive version " + version + " is not supported");
+            }
+        }
+
+        /**
+         * Read the next block
+         *
+         * The archive trailer is verified when the end of the blocks is reached.
+         *
+         * @return                      UTF-8 block JSON or null if there are no more blocks
+         * @throws  IOException         I/O error occurred or the archive is damaged
+         */
+        byte[] next() throws IOException {
+            int length = in.readInt();
+            if (length == 0) {
+                int archiveCount = in.readInt();
+                byte[] archiveDigest = new byte[32];
+                in.readFully(archiveDigest);
+                if (archiveCount != count || !Arrays.equals(archiveDigest, digest.digest())) {
+                    throw new IOException("Chain archive checksum verification failed");
+                }
+                return null;
+            }
+            if (length < 0 || length > MAX_RECORD_LENGTH) {
+                throw new IOException("Chain archive record length " + length + " is not valid");
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            crc.reset();
+            crc.update(data);
+            if (in.readInt() != (int)crc.getValue()) {
+                throw new IOException("Chain archive record " + (count + 1) + " is damaged");
+            }
+            digest.update(data);
+            count++;
+            return data;
+        }
+
+        /**
+         * Close the archive
+         *
+         * @throws  IOException         I/O error occurred
+         */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private ChainArchive() {}
+}
@@ -33,6 +33,8 @@ public final class Db {
                                       .loginTimeout(Spa.getIntProperty("spa.dbLoginTimeout"))
                                       .defaultLockTimeout(Spa.getIntProperty("spa.dbDefaultLockTimeout") * 1000)
                                       .maxMemoryRows(Spa.getIntProperty("spa.dbMaxMemoryRows"))
+                                      .queryCacheSize(Spa.getIntProperty("spa.dbQueryCacheSize"))
+                                      .statementCacheSize(Spa.getIntProperty("spa.dbStatementCacheSize"))
     );
 
     static void init() {
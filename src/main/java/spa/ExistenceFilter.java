@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa;
+
+import spa.util.BloomFilter;
+import spa.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Block and transaction existence filters
+ *
+ * Every block and transaction identifier is added to a Bloom filter before the block or
+ * transaction is saved in the database, so a negative filter result means the identifier
+ * is definitely not in the database and the database lookup can be skipped.  Identifiers are
+ * not removed when blocks are popped off, which only results in a false positive that is resolved
+ * by the database lookup.
+ *
+ * The filters are built from the database at startup and are rebuilt with a larger capacity
+ * when the number of identifiers exceeds the filter capacity.  All lookups go to the database
+ * until the filters have been built.
+ */
+final class ExistenceFilter {
+
+    /** False positive rate */
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /** Minimum filter capacity */
+    private static final long MIN_CAPACITY = 1000000;
+
+    /** Existence filters enabled */
+    private static final boolean enabled = Spa.getBooleanProperty("spa.enableExistenceFilter");
+
+    /** Block filter */
+    private static volatile BloomFilter blockFilter;
+
+    /** Transaction filter */
+    private static volatile BloomFilter transactionFilter;
+
+    /** Block filter being built */
+    private static volatile BloomFilter pendingBlockFilter;
+
+    /** Transaction filter being built */
+    private static volatile BloomFilter pendingTransactionFilter;
+
+    /**
+     * Build the filters from the database
+     *
+     * The blockchain read lock is held while the filters are built so no blocks are
+     * saved until the new filters are in use.
+     */
+    static void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        BlockchainImpl blockchain = BlockchainImpl.getInstance();
+        blockchain.readLock();
+        try {
+            long startTime = System.currentTimeMillis();
+            BloomFilter newBlockFilter = new BloomFilter(Math.max(blockchain.getHeight() + 1, MIN_CAPACITY) * 2, FALSE_POSITIVE_RATE);
+            BloomFilter newTransactionFilter = new BloomFilter(Math.max(blockchain.getTransactionCount(), MIN_CAPACITY) * 2, FALSE_POSITIVE_RATE);
+            pendingBlockFilter = newBlockFilter;
+            pendingTransactionFilter = newTransactionFilter;
+            try (Connection con = Db.db.getConnection()) {
+                loadIds(con, "SELECT id FROM block", newBlockFilter);
+                loadIds(con, "SELECT id FROM transaction", newTransactionFilter);
+            } catch (SQLException e) {
+                throw new RuntimeException(e.toString(), e);
+            } finally {
+                pendingBlockFilter = null;
+                pendingTransactionFilter = null;
+            }
+            blockFilter = newBlockFilter;
+            transactionFilter = newTransactionFilter;
+            Logger.logMessage("Existence filters built with " + newBlockFilter.getCount() + " blocks and "
+                    + newTransactionFilter.getCount() + " transactions in " + (System.currentTimeMillis() - startTime) + " ms");
+        } finally {
+            blockchain.readUnlock();
+        }
+    }
+
+    /**
+     * Rebuild the filters if they contain more identifiers than their capacity
+     */
+    static void checkCapacity() {
+        BloomFilter blocks = blockFilter;
+        BloomFilter transactions = transactionFilter;
+        if ((blocks != null && blocks.getCount() > blocks.getCapacity())
+                || (transactions != null && transactions.getCount() > transactions.getCapacity())) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Add a block identifier
+     *
+     * @param   blockId                 Block identifier
+     */
+    static void addBlock(long blockId) {
+        add(blockId, blockFilter, pendingBlockFilter);
+    }
+
+    /**
+     * Add a transaction identifier
+     *
+     * @param   transactionId           Transaction identifier
+     */
+    static void addTransaction(long transactionId) {
+        add(transactionId, transactionFilter, pendingTransactionFilter);
+    }
+
+    /**
+     * Check if a block might be in the database
+     *
+     * @param   blockId                 Block identifier
+     * @return                          FALSE if the block is definitely not in the database
+     */
+    static boolean mightContainBlock(long blockId) {
+        BloomFilter filter = blockFilter;
+        return filter == null || filter.mightContain(blockId);
+    }
+
+    /**
+     * Check if a transaction might be in the database
+     *
+     * @param   transactionId           Transaction identifier
+     * @return                          FALSE if the transaction is definitely not in the database
+     */
+    static boolean mightContainTransaction(long transactionId) {
+        BloomFilter filter = transactionFilter;
+        return filter == null || filter.mightContain(transactionId);
+    }
+
+    /**
+     * Add an identifier to the current and pending filters
+     *
+     * @param   id                      Identifier
+     * @param   filter                  Current filter or null
+     * @param   pendingFilter           Pending filter or null
+     */
+    private static void add(long id, BloomFilter filter, BloomFilter pendingFilter) {
+        if (filter != null) {
+            filter.put(id);
+        }
+        if (pendingFilter != null) {
+            pendingFilter.put(id);
+        }
+    }
+
+    /**
+     * Load identifiers from the database
+     *
+     * @param   con                     Database connection
+     * @param   sql                     Identifier query
+     * @param   filter                  Filter
+     * @throws  SQLException            Database error occurred
+     */
+    private static void loadIds(Connection con, String sql, BloomFilter filter) throws SQLException {
+        try (PreparedStatement pstmt = con.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                filter.put(rs.getLong(1));
+            }
+        }
+    }
+
+    private ExistenceFilter() {}
+}
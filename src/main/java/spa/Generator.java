@@ -17,7 +17,10 @@
 package spa;
 
 import spa.crypto.Crypto;
+import spa.crypto.KeyRing;
+import spa.crypto.SigningKey;
 import spa.util.Convert;
+import spa.util.FlightRecorder;
 import spa.util.Listener;
 import spa.util.Listeners;
 import spa.util.Logger;
@@ -151,9 +154,16 @@ public final class Generator implements Comparable<Generator> {
         if (generators.size() >= MAX_FORGERS) {
             throw new RuntimeException("Cannot forge with more than " + MAX_FORGERS + " accounts on the same node");
         }
-        Generator generator = new Generator(secretPhrase);
+        SigningKey key = null;
+        try {
+            key = KeyRing.add(secretPhrase, KeyRing.Owner.FORGER);
+        } catch (IllegalStateException e) {
+            Logger.logDebugMessage("Forging signing key not added: " + e.getMessage());
+        }
+        Generator generator = new Generator(secretPhrase, key);
         Generator old = generators.putIfAbsent(secretPhrase, generator);
         if (old != null) {
+            generator.removeKey();
             Logger.logDebugMessage(old + " is already forging");
             return old;
         }
@@ -165,6 +175,7 @@ public final class Generator implements Comparable<Generator> {
     public static Generator stopForging(String secretPhrase) {
         Generator generator = generators.remove(secretPhrase);
         if (generator != null) {
+            generator.removeKey();
             Spa.getBlockchain().updateLock();
             try {
                 sortedForgers = null;
@@ -183,6 +194,7 @@ public final class Generator implements Comparable<Generator> {
         while (iter.hasNext()) {
             Generator generator = iter.next();
             iter.remove();
+            generator.removeKey();
             Logger.logDebugMessage(generator + " stopped");
             listeners.notify(generator, Event.STOP_FORGING);
         }
@@ -279,10 +291,12 @@ public final class Generator implements Comparable<Generator> {
     private volatile BigInteger hit;
     private volatile BigInteger effectiveBalance;
     private volatile long deadline;
+    private volatile boolean keyAdded;
 
-    private Generator(String secretPhrase) {
+    private Generator(String secretPhrase, SigningKey key) {
         this.secretPhrase = secretPhrase;
-        this.publicKey = Crypto.getPublicKey(secretPhrase);
+        this.publicKey = key != null ? key.getPublicKey() : Crypto.getPublicKey(secretPhrase);
+        this.keyAdded = key != null;
         this.accountId = Account.getId(publicKey);
         Spa.getBlockchain().updateLock();
         try {
@@ -311,6 +325,13 @@ public final class Generator implements Comparable<Generator> {
         return hitTime;
     }
 
+    private void removeKey() {
+        if (keyAdded) {
+            keyAdded = false;
+            KeyRing.remove(secretPhrase, KeyRing.Owner.FORGER);
+        }
+    }
+
     @Override
     public int compareTo(Generator g) {
         int i = this.hit.multiply(g.effectiveBalance).compareTo(g.hit.multiply(this.effectiveBalance));
@@ -345,6 +366,19 @@ public final class Generator implements Comparable<Generator> {
     }
 
     private boolean forge(Block lastBlock, int generationLimit) throws BlockchainProcessor.BlockNotAcceptedException {
+        FlightRecorder.ForgeEvent event = new FlightRecorder.ForgeEvent();
+        event.begin();
+        boolean generated = false;
+        try {
+            generated = doForge(lastBlock, generationLimit);
+            return generated;
+        } finally {
+            event.end();
+            event.commit(lastBlock.getHeight() + 1, accountId, generated);
+        }
+    }
+
+    private boolean doForge(Block lastBlock, int generationLimit) throws BlockchainProcessor.BlockNotAcceptedException {
         int timestamp = getTimestamp(generationLimit);
         if (!verifyHit(hit, effectiveBalance, lastBlock, timestamp)) {
             Logger.logDebugMessage(this.toString() + " failed to forge at " + timestamp + " height " + lastBlock.getHeight() + " last timestamp " + lastBlock.getTimestamp());
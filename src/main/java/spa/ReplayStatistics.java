@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa;
+
+/**
+ * Block replay statistics
+ *
+ * The statistics are collected by BlockchainProcessor.replayBlocks() and replayArchive() and
+ * contain the time spent in each stage of pushing the replayed blocks.  Signatures are verified
+ * in a separate stage ahead of the block validation, so the validation stages do not include
+ * the signature checks.
+ */
+public final class ReplayStatistics {
+
+    /**
+     * Block push stage
+     */
+    public enum Stage {
+        /** Block and transaction signature verification */
+        SIGNATURES,
+        /** Block validation */
+        VALIDATE,
+        /** Transaction validation */
+        TRANSACTIONS,
+        /** Block and transaction table writes */
+        STORE,
+        /** Transaction application and derived table writes */
+        ACCEPT,
+        /** Database commit */
+        COMMIT,
+        /** Block listeners */
+        LISTENERS
+    }
+
+    /** Stage times in nanoseconds */
+    private final long[] stageTimes = new long[Stage.values().length];
+
+    /** Number of blocks */
+    private int blockCount;
+
+    /** Number of transactions */
+    private int transactionCount;
+
+    /** Elapsed time in nanoseconds */
+    private long elapsedTime;
+
+    /**
+     * Record the completion of a stage
+     *
+     * @param   stage                   Stage
+     * @param   startTime               Stage start time
+     * @return                          Current time
+     */
+    long record(Stage stage, long startTime) {
+        long now = System.nanoTime();
+        stageTimes[stage.ordinal()] += now - startTime;
+        return now;
+    }
+
+    /**
+     * Record a replayed block
+     *
+     * @param   block                   Block
+     * @param   elapsed                 Block push time in nanoseconds
+     */
+    void addBlock(Block block, long elapsed) {
+        blockCount++;
+        transactionCount += block.getTransactions().size();
+        elapsedTime += elapsed;
+    }
+
+    /**
+     * Return the time spent in a stage
+     *
+     * @param   stage                   Stage
+     * @return                          Stage time in nanoseconds
+     */
+    public long getStageTime(Stage stage) {
+        return stageTimes[stage.ordinal()];
+    }
+
+    /**
+     * Return the number of replayed blocks
+     *
+     * @return                          Number of blocks
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Return the number of replayed transactions
+     *
+     * @return                          Number of transactions
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Return the total block push time
+     *
+     * @return                          Elapsed time in nanoseconds
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+}
@@ -112,6 +112,9 @@ public final class Spa {
         loadProperties(properties, SPA_PROPERTIES, false);
     }
 
+    private static volatile boolean fastStart;
+    private static volatile boolean isStarting = true;
+
     public static Properties loadProperties(Properties properties, String propertiesFile, boolean isDefault) {
 
         try {
@@ -257,6 +260,28 @@ public final class Spa {
         return false;
     }
 
+    /**
+     * Check if the server is starting
+     *
+     * When fast start is enabled, the API and peer servers are started before the
+     * blockchain has been loaded and requests needing the blockchain are rejected
+     * until the startup tasks have completed.
+     *
+     * @return                      TRUE if the server is starting
+     */
+    public static boolean isStarting() {
+        return isStarting;
+    }
+
+    /**
+     * Check if fast start is enabled
+     *
+     * @return                      TRUE if fast start is enabled
+     */
+    public static boolean isFastStart() {
+        return fastStart;
+    }
+
     public static Blockchain getBlockchain() {
         return BlockchainImpl.getInstance();
     }
@@ -319,6 +344,7 @@ public final class Spa {
         BlockchainProcessorImpl.getInstance().shutdown();
         Peers.shutdown();
         Db.shutdown();
+        BlockStore.shutdown();
         Logger.logShutdownMessage("SPARTA server " + VERSION + " stopped.");
         Logger.shutdown();
         runtimeMode.shutdown();
@@ -336,9 +362,16 @@ public final class Spa {
                 logSystemProperties();
                 runtimeMode.init();
                 Thread secureRandomInitThread = initSecureRandom();
+                fastStart = Spa.getBooleanProperty("spa.fastStart");
+                if (fastStart) {
+                    Logger.logMessage("Fast start enabled, API and peer servers will start before the blockchain is loaded");
+                }
+                long phaseTime = System.currentTimeMillis();
                 setServerStatus(ServerStatus.BEFORE_DATABASE, null);
                 Db.init();
+                BlockStore.init();
                 setServerStatus(ServerStatus.AFTER_DATABASE, null);
+                phaseTime = logPhaseTime("Database", phaseTime);
                 TransactionProcessorImpl.getInstance();
                 BlockchainProcessorImpl.getInstance();
                 Account.init();
@@ -349,16 +382,39 @@ public final class Spa {
                 Generator.init();
                 API.init();
                 DebugTrace.init();
+                phaseTime = logPhaseTime("Class initialization", phaseTime);
                 int timeMultiplier = (Constants.isTestnet && Constants.isOffline) ? Math.max(Spa.getIntProperty("spa.timeMultiplier"), 1) : 1;
-                ThreadPool.start(timeMultiplier);
+                if (fastStart) {
+                    //
+                    // The SecureRandom test is still fatal, but it is run once the blockchain
+                    // has been loaded so a slow SecureRandom does not delay the servers
+                    //
+                    ThreadPool.runAfterStart(() -> {
+                        try {
+                            secureRandomInitThread.join(10000);
+                            testSecureRandom();
+                        } catch (RuntimeException e) {
+                            Logger.logErrorMessage(e.getMessage(), e);
+                            runtimeMode.alert(e.getMessage() + "\n" +
+                                    "See additional information in " + dirProvider.getLogFileDir() + System.getProperty("file.separator") + "spa.log");
+                            System.exit(1);
+                        } catch (InterruptedException ignore) {}
+                    });
+                }
+                ThreadPool.start(timeMultiplier, fastStart);
+                isStarting = false;
+                phaseTime = logPhaseTime("Startup tasks", phaseTime);
                 if (timeMultiplier > 1) {
                     setTime(new Time.FasterTime(Math.max(getEpochTime(), Spa.getBlockchain().getLastBlock().getTimestamp()), timeMultiplier));
                     Logger.logMessage("TIME WILL FLOW " + timeMultiplier + " TIMES FASTER!");
                 }
-                try {
-                    secureRandomInitThread.join(10000);
-                } catch (InterruptedException ignore) {}
-                testSecureRandom();
+                if (!fastStart) {
+                    try {
+                        secureRandomInitThread.join(10000);
+                    } catch (InterruptedException ignore) {}
+                    testSecureRandom();
+                    logPhaseTime("SecureRandom", phaseTime);
+                }
                 long currentTime = System.currentTimeMillis();
                 Logger.logMessage("Initialization took " + (currentTime - startTime) / 1000 + " seconds");
                 Logger.logMessage("SPARTA server " + VERSION + " started successfully.");
@@ -382,6 +438,12 @@ public final class Spa {
             }
         }
 
+        private static long logPhaseTime(String phase, long phaseStartTime) {
+            long currentTime = System.currentTimeMillis();
+            Logger.logDebugMessage("%s took %d ms", phase, currentTime - phaseStartTime);
+            return currentTime;
+        }
+
         private static void init() {
             if (initialized) {
                 throw new RuntimeException("Spa.init has already been called");
@@ -1167,6 +1167,18 @@ class SpaDbVersion extends DbVersion {
             case 536:
                 apply("DROP TABLE IF EXISTS VOTE");
             case 537:
+                apply("ALTER TABLE block ADD COLUMN IF NOT EXISTS store_position BIGINT");
+            case 538:
+                apply("CREATE INDEX IF NOT EXISTS transaction_sender_timestamp_idx ON transaction "
+                        + "(sender_id, block_timestamp DESC, transaction_index DESC)");
+            case 539:
+                apply("CREATE INDEX IF NOT EXISTS transaction_recipient_timestamp_idx ON transaction "
+                        + "(recipient_id, block_timestamp DESC, transaction_index DESC)");
+            case 540:
+                apply("DROP INDEX IF EXISTS transaction_sender_id_idx");
+            case 541:
+                apply("DROP INDEX IF EXISTS transaction_recipient_id_idx");
+            case 542:
                 return;
             default:
                 throw new RuntimeException("Blockchain database inconsistent with code, at update " + nextUpdate
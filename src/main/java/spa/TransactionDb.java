@@ -105,6 +105,10 @@ final class TransactionDb {
                 return (transaction.getHeight() <= height);
             }
         }
+        // Check the existence filter
+        if (!ExistenceFilter.mightContainTransaction(transactionId)) {
+            return false;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT height FROM transaction WHERE id = ?")) {
@@ -118,7 +122,8 @@ final class TransactionDb {
     }
 
     static boolean hasTransactionByFullHash(byte[] fullHash) {
-        return Arrays.equals(fullHash, getFullHash(Convert.fullHashToId(fullHash)));
+        long transactionId = Convert.fullHashToId(fullHash);
+        return ExistenceFilter.mightContainTransaction(transactionId) && Arrays.equals(fullHash, getFullHash(transactionId));
     }
 
     static boolean hasTransactionByFullHash(byte[] fullHash, int height) {
@@ -131,6 +136,10 @@ final class TransactionDb {
                         Arrays.equals(transaction.fullHash(), fullHash));
             }
         }
+        // Check the existence filter
+        if (!ExistenceFilter.mightContainTransaction(transactionId)) {
+            return false;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT full_hash, height FROM transaction WHERE id = ?")) {
@@ -264,9 +273,13 @@ final class TransactionDb {
             pstmt.setFetchSize(50);
             try (ResultSet rs = pstmt.executeQuery()) {
                 List<TransactionImpl> list = new ArrayList<>();
+                List<Long> senderIds = new ArrayList<>();
                 while (rs.next()) {
-                    list.add(loadTransaction(con, rs));
+                    TransactionImpl transaction = loadTransaction(con, rs);
+                    list.add(transaction);
+                    senderIds.add(transaction.getSenderId());
                 }
+                Account.prefetchPublicKeys(senderIds);
                 return list;
             }
         } catch (SQLException e) {
@@ -278,69 +291,84 @@ final class TransactionDb {
     }
 
     static void saveTransactions(Connection con, List<TransactionImpl> transactions) {
-        try {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO transaction (id, deadline, "
+                + "recipient_id, amount, fee, referenced_transaction_full_hash, height, "
+                + "block_id, signature, timestamp, type, subtype, sender_id, attachment_bytes, "
+                + "block_timestamp, full_hash, version, has_message, has_encrypted_message, has_public_key_announcement, "
+                + "has_encrypttoself_message, phased, has_prunable_message, has_prunable_encrypted_message, "
+                + "has_prunable_attachment, ec_block_height, ec_block_id, transaction_index) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement pstmtReferenced = con.prepareStatement("INSERT INTO referenced_transaction "
+                + "(transaction_id, referenced_transaction_id) VALUES (?, ?)")) {
+            //
+            // The attachment buffer is reused for all of the transactions in the block
+            //
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            boolean hasReferences = false;
             short index = 0;
             for (TransactionImpl transaction : transactions) {
-                try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO transaction (id, deadline, "
-                        + "recipient_id, amount, fee, referenced_transaction_full_hash, height, "
-                        + "block_id, signature, timestamp, type, subtype, sender_id, attachment_bytes, "
-                        + "block_timestamp, full_hash, version, has_message, has_encrypted_message, has_public_key_announcement, "
-                        + "has_encrypttoself_message, phased, has_prunable_message, has_prunable_encrypted_message, "
-                        + "has_prunable_attachment, ec_block_height, ec_block_id, transaction_index) "
-                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                    int i = 0;
-                    pstmt.setLong(++i, transaction.getId());
-                    pstmt.setShort(++i, transaction.getDeadline());
-                    DbUtils.setLongZeroToNull(pstmt, ++i, transaction.getRecipientId());
-                    pstmt.setLong(++i, transaction.getAmountAPL());
-                    pstmt.setLong(++i, transaction.getFeeAPL());
-                    DbUtils.setBytes(pstmt, ++i, transaction.referencedTransactionFullHash());
-                    pstmt.setInt(++i, transaction.getHeight());
-                    pstmt.setLong(++i, transaction.getBlockId());
-                    pstmt.setBytes(++i, transaction.getSignature());
-                    pstmt.setInt(++i, transaction.getTimestamp());
-                    pstmt.setByte(++i, transaction.getType().getType());
-                    pstmt.setByte(++i, transaction.getType().getSubtype());
-                    pstmt.setLong(++i, transaction.getSenderId());
-                    int bytesLength = 0;
-                    for (Appendix appendage : transaction.getAppendages()) {
-                        bytesLength += appendage.getSize();
+                ExistenceFilter.addTransaction(transaction.getId());
+                int i = 0;
+                pstmt.setLong(++i, transaction.getId());
+                pstmt.setShort(++i, transaction.getDeadline());
+                DbUtils.setLongZeroToNull(pstmt, ++i, transaction.getRecipientId());
+                pstmt.setLong(++i, transaction.getAmountAPL());
+                pstmt.setLong(++i, transaction.getFeeAPL());
+                DbUtils.setBytes(pstmt, ++i, transaction.referencedTransactionFullHash());
+                pstmt.setInt(++i, transaction.getHeight());
+                pstmt.setLong(++i, transaction.getBlockId());
+                pstmt.setBytes(++i, transaction.getSignature());
+                pstmt.setInt(++i, transaction.getTimestamp());
+                pstmt.setByte(++i, transaction.getType().getType());
+                pstmt.setByte(++i, transaction.getType().getSubtype());
+                pstmt.setLong(++i, transaction.getSenderId());
+                buffer.clear();
+                for (Appendix appendage : transaction.getAppendages()) {
+                    int size = appendage.getSize();
+                    if (size > buffer.remaining()) {
+                        ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+                        newBuffer.order(ByteOrder.LITTLE_ENDIAN);
+                        buffer.flip();
+                        newBuffer.put(buffer);
+                        buffer = newBuffer;
                     }
-                    if (bytesLength == 0) {
-                        pstmt.setNull(++i, Types.VARBINARY);
-                    } else {
-                        ByteBuffer buffer = ByteBuffer.allocate(bytesLength);
-                        buffer.order(ByteOrder.LITTLE_ENDIAN);
-                        for (Appendix appendage : transaction.getAppendages()) {
-                            appendage.putBytes(buffer);
-                        }
-                        pstmt.setBytes(++i, buffer.array());
-                    }
-                    pstmt.setInt(++i, transaction.getBlockTimestamp());
-                    pstmt.setBytes(++i, transaction.fullHash());
-                    pstmt.setByte(++i, transaction.getVersion());
-                    pstmt.setBoolean(++i, transaction.getMessage() != null);
-                    pstmt.setBoolean(++i, false);
-                    pstmt.setBoolean(++i, transaction.getPublicKeyAnnouncement() != null);
-                    pstmt.setBoolean(++i, false);
-                    pstmt.setBoolean(++i, false);
-                    pstmt.setBoolean(++i, false);
-                    pstmt.setBoolean(++i, false);
-                    pstmt.setBoolean(++i, transaction.getAttachment() instanceof Appendix.Prunable);
-                    pstmt.setInt(++i, transaction.getECBlockHeight());
-                    DbUtils.setLongZeroToNull(pstmt, ++i, transaction.getECBlockId());
-                    pstmt.setShort(++i, index++);
-                    pstmt.executeUpdate();
+                    appendage.putBytes(buffer);
+                }
+                if (buffer.position() == 0) {
+                    pstmt.setNull(++i, Types.VARBINARY);
+                } else {
+                    pstmt.setBytes(++i, Arrays.copyOf(buffer.array(), buffer.position()));
                 }
+                pstmt.setInt(++i, transaction.getBlockTimestamp());
+                pstmt.setBytes(++i, transaction.fullHash());
+                pstmt.setByte(++i, transaction.getVersion());
+                pstmt.setBoolean(++i, transaction.getMessage() != null);
+                pstmt.setBoolean(++i, false);
+                pstmt.setBoolean(++i, transaction.getPublicKeyAnnouncement() != null);
+                pstmt.setBoolean(++i, false);
+                pstmt.setBoolean(++i, false);
+                pstmt.setBoolean(++i, false);
+                pstmt.setBoolean(++i, false);
+                pstmt.setBoolean(++i, transaction.getAttachment() instanceof Appendix.Prunable);
+                pstmt.setInt(++i, transaction.getECBlockHeight());
+                DbUtils.setLongZeroToNull(pstmt, ++i, transaction.getECBlockId());
+                pstmt.setShort(++i, index++);
+                pstmt.addBatch();
                 if (transaction.referencedTransactionFullHash() != null) {
-                    try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO referenced_transaction "
-                         + "(transaction_id, referenced_transaction_id) VALUES (?, ?)")) {
-                        pstmt.setLong(1, transaction.getId());
-                        pstmt.setLong(2, Convert.fullHashToId(transaction.referencedTransactionFullHash()));
-                        pstmt.executeUpdate();
-                    }
+                    pstmtReferenced.setLong(1, transaction.getId());
+                    pstmtReferenced.setLong(2, Convert.fullHashToId(transaction.referencedTransactionFullHash()));
+                    pstmtReferenced.addBatch();
+                    hasReferences = true;
                 }
             }
+            pstmt.executeBatch();
+            if (hasReferences) {
+                pstmtReferenced.executeBatch();
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
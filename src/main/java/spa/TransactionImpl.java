@@ -213,6 +213,12 @@ final class TransactionImpl implements Transaction {
     private volatile DbKey dbKey;
     private volatile byte[] bytes = null;
 
+    /** Zero signature used for the unsigned transaction bytes */
+    private static final byte[] ZERO_SIGNATURE = new byte[64];
+
+    /** Zero referenced transaction hash */
+    private static final byte[] ZERO_HASH = new byte[32];
+
 
     private TransactionImpl(BuilderImpl builder, String secretPhrase) throws SpaException.NotValidException {
 
@@ -436,10 +442,9 @@ final class TransactionImpl implements Transaction {
                 throw new IllegalStateException("Transaction is not signed yet");
             }
             if (useAPL()) {
-                byte[] data = zeroSignature(getBytes());
                 byte[] signatureHash = Crypto.sha256().digest(signature);
                 MessageDigest digest = Crypto.sha256();
-                digest.update(data);
+                updateUnsignedBytes(digest);
                 fullHash = digest.digest(signatureHash);
             } else {
                 fullHash = Crypto.sha256().digest(bytes());
@@ -523,7 +528,7 @@ final class TransactionImpl implements Transaction {
                     if (referencedTransactionFullHash != null) {
                         buffer.put(referencedTransactionFullHash);
                     } else {
-                        buffer.put(new byte[32]);
+                        buffer.put(ZERO_HASH);
                     }
                 } else {
                     buffer.putInt((int) (amountAPL / Constants.ONE_SPA));
@@ -534,7 +539,7 @@ final class TransactionImpl implements Transaction {
                         buffer.putLong(0L);
                     }
                 }
-                buffer.put(signature != null ? signature : new byte[64]);
+                buffer.put(signature != null ? signature : ZERO_SIGNATURE);
                 if (version > 0) {
                     buffer.putInt(getFlags());
                     buffer.putInt(ecBlockHeight);
@@ -753,9 +758,13 @@ final class TransactionImpl implements Transaction {
 
     private volatile boolean hasValidSignature = false;
 
-    private boolean checkSignature() {
+    boolean checkSignature() {
         if (!hasValidSignature) {
-            hasValidSignature = signature != null && Crypto.verify(signature, zeroSignature(getBytes()), getSenderPublicKey(), useAPL());
+            if (signature != null) {
+                MessageDigest digest = Crypto.sha256();
+                updateUnsignedBytes(digest);
+                hasValidSignature = Crypto.verifyHash(signature, digest.digest(), getSenderPublicKey(), useAPL());
+            }
         }
         return hasValidSignature;
     }
@@ -781,6 +790,23 @@ final class TransactionImpl implements Transaction {
         return true;
     }
 
+    /**
+     * Add the unsigned transaction bytes to a message digest
+     *
+     * The bytes preceding and following the signature are added directly from the
+     * transaction bytes, with zero bytes in place of the signature, so the unsigned
+     * bytes do not need to be copied.
+     *
+     * @param   digest                  Message digest
+     */
+    private void updateUnsignedBytes(MessageDigest digest) {
+        byte[] data = bytes();
+        int start = signatureOffset();
+        digest.update(data, 0, start);
+        digest.update(ZERO_SIGNATURE);
+        digest.update(data, start + 64, data.length - start - 64);
+    }
+
     private byte[] zeroSignature(byte[] data) {
         int start = signatureOffset();
         for (int i = start; i < start + 64; i++) {
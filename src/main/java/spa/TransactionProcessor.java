@@ -45,6 +45,8 @@ public interface TransactionProcessor extends Observable<List<? extends Transact
 
     Transaction getUnconfirmedTransaction(long transactionId);
 
+    int getUnconfirmedTransactionCount();
+
     Transaction[] getAllWaitingTransactions();
 
     Transaction[] getAllBroadcastedTransactions();
@@ -317,6 +317,11 @@ final class TransactionProcessorImpl implements TransactionProcessor {
         return unconfirmedTransactionTable.getAll(0, -1);
     }
 
+    @Override
+    public int getUnconfirmedTransactionCount() {
+        return unconfirmedTransactionTable.getCount();
+    }
+
     @Override
     public DbIterator<UnconfirmedTransaction> getAllUnconfirmedTransactions(int from, int to) {
         return unconfirmedTransactionTable.getAll(from, to);
@@ -544,6 +549,7 @@ final class TransactionProcessorImpl implements TransactionProcessor {
             pstmt.setLong(1, transaction.getId());
             int deleted = pstmt.executeUpdate();
             if (deleted > 0) {
+                unconfirmedTransactionTable.tableChanged();
                 transaction.undoUnconfirmed();
                 transactionCache.remove(transaction.getDbKey());
                 transactionListeners.notify(Collections.singletonList(transaction), Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
@@ -655,6 +661,21 @@ final class TransactionProcessorImpl implements TransactionProcessor {
     }
 
     private void processTransaction(UnconfirmedTransaction unconfirmedTransaction) throws SpaException.ValidationException {
+        FlightRecorder.ProcessTransactionEvent event = new FlightRecorder.ProcessTransactionEvent();
+        event.begin();
+        boolean accepted = false;
+        try {
+            processTransaction(unconfirmedTransaction, event);
+            accepted = true;
+        } finally {
+            event.end();
+            TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+            event.commit(transaction.getId(), transaction.getType().getType(), transaction.getType().getSubtype(), accepted);
+        }
+    }
+
+    private void processTransaction(UnconfirmedTransaction unconfirmedTransaction, FlightRecorder.ProcessTransactionEvent event)
+                                            throws SpaException.ValidationException {
         TransactionImpl transaction = unconfirmedTransaction.getTransaction();
         int curTime = Spa.getEpochTime();
         if (transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT || transaction.getExpiration() < curTime) {
@@ -667,7 +688,9 @@ final class TransactionProcessorImpl implements TransactionProcessor {
             throw new SpaException.NotValidException("Invalid transaction id 0");
         }
 
+        long lockStart = System.nanoTime();
         BlockchainImpl.getInstance().writeLock();
+        event.setLockWait(System.nanoTime() - lockStart);
         try {
             try {
                 Db.db.beginTransaction();
@@ -22,6 +22,7 @@ import spa.util.Logger;
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.InvalidCipherTextException;
 import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.macs.SipHash;
 import org.bouncycastle.crypto.modes.CBCBlockCipher;
 import org.bouncycastle.crypto.modes.GCMBlockCipher;
 import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
@@ -80,6 +81,13 @@ public final class Crypto {
         return new Keccak.Digest256();
     }
 
+    public static long sipHash(byte[] key, byte[] input) {
+        SipHash sipHash = new SipHash(2, 4);
+        sipHash.init(new KeyParameter(key));
+        sipHash.update(input, 0, input.length);
+        return sipHash.doFinal();
+    }
+
     public static byte[] getKeySeed(String secretPhrase, byte[]... nonces) {
         MessageDigest digest = Crypto.sha256();
         digest.update(Convert.toBytes(secretPhrase));
@@ -96,8 +104,13 @@ public final class Crypto {
     }
 
     public static byte[] getPublicKey(String secretPhrase) {
+        byte[] keySeed = Crypto.sha256().digest(Convert.toBytes(secretPhrase));
+        SigningKey key = KeyRing.find(keySeed);
+        if (key != null) {
+            return key.getPublicKey();
+        }
         byte[] publicKey = new byte[32];
-        Curve25519.keygen(publicKey, null, Crypto.sha256().digest(Convert.toBytes(secretPhrase)));
+        Curve25519.keygen(publicKey, null, keySeed);
         return publicKey;
     }
 
@@ -118,11 +131,22 @@ public final class Crypto {
     }
 
     public static byte[] sign(byte[] message, String secretPhrase) {
+        byte[] keySeed = Crypto.sha256().digest(Convert.toBytes(secretPhrase));
+        SigningKey key = KeyRing.find(keySeed);
+        if (key != null) {
+            byte[] signature = key.trySign(message);
+            if (signature != null) {
+                return signature;
+            }
+        }
         byte[] P = new byte[32];
         byte[] s = new byte[32];
-        MessageDigest digest = Crypto.sha256();
-        Curve25519.keygen(P, s, digest.digest(Convert.toBytes(secretPhrase)));
+        Curve25519.keygen(P, s, keySeed);
+        return sign(message, s);
+    }
 
+    static byte[] sign(byte[] message, byte[] s) {
+        MessageDigest digest = Crypto.sha256();
         byte[] m = digest.digest(message);
 
         digest.update(m);
@@ -144,6 +168,25 @@ public final class Crypto {
     }
 
     public static boolean verify(byte[] signature, byte[] message, byte[] publicKey, boolean enforceCanonical) {
+        return verify(signature, message, null, publicKey, enforceCanonical);
+    }
+
+    /**
+     * Verify a signature using the SHA-256 hash of the signed message
+     *
+     * This allows the caller to hash the message without first copying it into a single array.
+     *
+     * @param   signature               Signature
+     * @param   messageHash             SHA-256 hash of the message
+     * @param   publicKey               Public key
+     * @param   enforceCanonical        TRUE to reject non-canonical signatures and public keys
+     * @return                          TRUE if the signature is valid
+     */
+    public static boolean verifyHash(byte[] signature, byte[] messageHash, byte[] publicKey, boolean enforceCanonical) {
+        return verify(signature, null, messageHash, publicKey, enforceCanonical);
+    }
+
+    private static boolean verify(byte[] signature, byte[] message, byte[] messageHash, byte[] publicKey, boolean enforceCanonical) {
         try {
             if (signature.length != 64) {
                 return false;
@@ -166,7 +209,7 @@ public final class Crypto {
             Curve25519.verify(Y, v, h, publicKey);
 
             MessageDigest digest = Crypto.sha256();
-            byte[] m = digest.digest(message);
+            byte[] m = (messageHash != null ? messageHash : digest.digest(message));
             digest.update(m);
             byte[] h2 = digest.digest(Y);
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.crypto;
+
+import spa.Spa;
+import spa.util.Convert;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key ring
+ *
+ * The key ring holds the signing keys for secret phrases which are used repeatedly, such as
+ * forging accounts and server-side signing accounts.  A key is located by a fingerprint of the
+ * secret phrase key seed, so the secret phrase itself is not retained.
+ * Crypto.sign() and Crypto.getPublicKey() use the key ring when the secret phrase has been added.
+ *
+ * Keys are reference counted separately for each owner, so one owner cannot release a reference
+ * held by another.  A key is destroyed and its private key zeroed when every owner has removed it
+ * as many times as it was added.
+ */
+public final class KeyRing {
+
+    /**
+     * Key ring owner
+     */
+    public enum Owner {
+        /** Forging account */
+        FORGER,
+        /** Server-side signing account added through the API */
+        API
+    }
+
+    /** Maximum number of keys */
+    private static final int MAX_KEYS = Spa.getIntProperty("spa.maxKeyRingSize", 100);
+
+    /** Keys indexed by key seed fingerprint */
+    private static final Map<Long, Entry> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Add a secret phrase to the key ring
+     *
+     * @param   secretPhrase            Secret phrase
+     * @param   owner                   Key owner
+     * @return                          Signing key
+     * @throws  IllegalStateException   Key ring is full
+     */
+    public static synchronized SigningKey add(String secretPhrase, Owner owner) {
+        byte[] keySeed = Crypto.sha256().digest(Convert.toBytes(secretPhrase));
+        byte[] seedHash = Crypto.sha256().digest(keySeed);
+        Long fingerprint = Convert.fullHashToId(seedHash);
+        Entry entry = keys.get(fingerprint);
+        if (entry != null && entry.key.matches(seedHash)) {
+            Arrays.fill(keySeed, (byte)0);
+            entry.refCounts[owner.ordinal()]++;
+            return entry.key;
+        }
+        if (entry != null || keys.size() >= MAX_KEYS) {
+            Arrays.fill(keySeed, (byte)0);
+            throw new IllegalStateException("Key ring is full");
+        }
+        SigningKey key = new SigningKey(keySeed, seedHash);
+        Arrays.fill(keySeed, (byte)0);
+        Entry newEntry = new Entry(key);
+        newEntry.refCounts[owner.ordinal()] = 1;
+        keys.put(fingerprint, newEntry);
+        return key;
+    }
+
+    /**
+     * Remove a secret phrase from the key ring
+     *
+     * @param   secretPhrase            Secret phrase
+     * @param   owner                   Key owner
+     * @return                          TRUE if the owner held a reference to the secret phrase
+     */
+    public static synchronized boolean remove(String secretPhrase, Owner owner) {
+        byte[] keySeed = Crypto.sha256().digest(Convert.toBytes(secretPhrase));
+        byte[] seedHash = Crypto.sha256().digest(keySeed);
+        Arrays.fill(keySeed, (byte)0);
+        Long fingerprint = Convert.fullHashToId(seedHash);
+        Entry entry = keys.get(fingerprint);
+        if (entry == null || !entry.key.matches(seedHash) || entry.refCounts[owner.ordinal()] == 0) {
+            return false;
+        }
+        entry.refCounts[owner.ordinal()]--;
+        if (entry.isUnused()) {
+            keys.remove(fingerprint);
+            entry.key.destroy();
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of keys in the key ring
+     *
+     * @return                          Number of keys
+     */
+    public static int size() {
+        return keys.size();
+    }
+
+    /**
+     * Find the signing key for a key seed
+     *
+     * @param   keySeed                 Key seed (SHA-256 hash of the secret phrase)
+     * @return                          Signing key or null if the key seed is not in the key ring
+     */
+    static SigningKey find(byte[] keySeed) {
+        if (keys.isEmpty()) {
+            return null;
+        }
+        byte[] seedHash = Crypto.sha256().digest(keySeed);
+        Entry entry = keys.get(Convert.fullHashToId(seedHash));
+        return entry != null && entry.key.matches(seedHash) ? entry.key : null;
+    }
+
+    /**
+     * Key ring entry
+     */
+    private static final class Entry {
+
+        /** Signing key */
+        private final SigningKey key;
+
+        /** Reference counts indexed by owner */
+        private final int[] refCounts = new int[Owner.values().length];
+
+        /**
+         * Create a key ring entry
+         *
+         * @param   key                 Signing key
+         */
+        private Entry(SigningKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Check if no owner holds a reference
+         *
+         * @return                      TRUE if the entry is unused
+         */
+        private boolean isUnused() {
+            for (int refCount : refCounts) {
+                if (refCount != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private KeyRing() {}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.crypto;
+
+import spa.util.Convert;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Signing key held in the key ring
+ *
+ * The signing key contains the public key and the private signing scalar derived from
+ * the secret phrase, so signing a message requires a single scalar multiplication instead
+ * of deriving the key pair for each signature.  The private scalar is zeroed when the key
+ * is destroyed and the key can no longer be used after that.
+ */
+public final class SigningKey {
+
+    /** Public key */
+    private final byte[] publicKey = new byte[32];
+
+    /** Private signing scalar */
+    private final byte[] privateKey = new byte[32];
+
+    /** SHA-256 hash of the key seed */
+    private final byte[] seedHash;
+
+    /** Account identifier */
+    private final long accountId;
+
+    /** Lock protecting the private key */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Key has been destroyed */
+    private boolean destroyed;
+
+    /**
+     * Create the signing key
+     *
+     * @param   keySeed                 Key seed (SHA-256 hash of the secret phrase)
+     * @param   seedHash                SHA-256 hash of the key seed
+     */
+    SigningKey(byte[] keySeed, byte[] seedHash) {
+        byte[] k = Arrays.copyOf(keySeed, keySeed.length);
+        Curve25519.keygen(publicKey, privateKey, k);
+        Arrays.fill(k, (byte)0);
+        this.seedHash = seedHash;
+        this.accountId = Convert.fullHashToId(Crypto.sha256().digest(publicKey));
+    }
+
+    /**
+     * Return the public key
+     *
+     * @return                          Public key
+     */
+    public byte[] getPublicKey() {
+        return Arrays.copyOf(publicKey, publicKey.length);
+    }
+
+    /**
+     * Return the account identifier
+     *
+     * @return                          Account identifier
+     */
+    public long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Sign a message if the key has not been destroyed
+     *
+     * @param   message                 Message
+     * @return                          Signature or null if the key has been destroyed
+     */
+    byte[] trySign(byte[] message) {
+        lock.readLock().lock();
+        try {
+            return destroyed ? null : Crypto.sign(message, privateKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check if the key seed matches this key
+     *
+     * @param   seedHash                SHA-256 hash of the key seed
+     * @return                          TRUE if the seed hash matches
+     */
+    boolean matches(byte[] seedHash) {
+        return Arrays.equals(this.seedHash, seedHash);
+    }
+
+    /**
+     * Zero the private key
+     */
+    void destroy() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(privateKey, (byte)0);
+            destroyed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
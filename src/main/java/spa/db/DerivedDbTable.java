@@ -28,10 +28,15 @@ public abstract class DerivedDbTable {
 
     protected static final TransactionalDb db = Db.db;
 
+    /** Maximum number of rows deleted by a trim between two commits */
+    protected static final int TRIM_BATCH_SIZE = Math.max(Spa.getIntProperty("spa.trimBatchSize", 5000), 1);
+
     protected final String table;
+    private final String rollbackSQL;
 
     protected DerivedDbTable(String table) {
         this.table = table;
+        this.rollbackSQL = "DELETE FROM " + table + " WHERE height > ?";
         Spa.getBlockchainProcessor().registerDerivedTable(this);
     }
 
@@ -40,7 +45,7 @@ public abstract class DerivedDbTable {
             throw new IllegalStateException("Not in transaction");
         }
         try (Connection con = db.getConnection();
-             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + " WHERE height > ?")) {
+             PreparedStatement pstmtDelete = con.prepareStatement(rollbackSQL)) {
             pstmtDelete.setInt(1, height);
             pstmtDelete.executeUpdate();
         } catch (SQLException e) {
@@ -60,10 +65,28 @@ public abstract class DerivedDbTable {
         }
     }
 
+    /**
+     * Remove data which is no longer needed for a rollback to the trim height
+     *
+     * The caller must hold the blockchain read lock.  Long trims are done in batches
+     * of at most TRIM_BATCH_SIZE rows with a call to trimCheckpoint() after each batch.
+     *
+     * @param   height                  Trim height
+     */
     public void trim(int height) {
         //nothing to trim
     }
 
+    /**
+     * Commit the rows trimmed so far and briefly release the blockchain read lock
+     * so that block processing waiting for the write lock can proceed
+     */
+    protected static void trimCheckpoint() {
+        db.commitTransaction();
+        Spa.getBlockchain().readUnlock();
+        Spa.getBlockchain().readLock();
+    }
+
     public void createSearchIndex(Connection con) throws SQLException {
         //implemented in EntityDbTable only
     }
@@ -24,6 +24,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class EntityDbTable<T> extends DerivedDbTable {
 
@@ -31,6 +32,38 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     protected final DbKey.Factory<T> dbKeyFactory;
     private final String defaultSort;
     private final String fullTextSearchColumns;
+    private final String getSQL;
+    private final String getAtHeightSQL;
+    private final String updateLatestSQL;
+    private final String countSQL;
+    private final String rowCountSQL;
+
+    /** Table modification count used to validate the cached counts */
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    /** Cached count of the latest rows */
+    private volatile CachedCount cachedCount;
+
+    /** Cached count of all rows */
+    private volatile CachedCount cachedRowCount;
+
+    /** Invalidate the cached counts when a transaction changing the table ends */
+    private final TransactionalDb.TransactionCallback countCallback = new TransactionalDb.TransactionCallback() {
+        @Override
+        public void commit() {
+            modificationCount.incrementAndGet();
+        }
+
+        @Override
+        public void rollback() {
+            modificationCount.incrementAndGet();
+        }
+
+        @Override
+        public void rollbackToSavepoint() {
+            modificationCount.incrementAndGet();
+        }
+    };
 
     protected EntityDbTable(String table, DbKey.Factory<T> dbKeyFactory) {
         this(table, dbKeyFactory, false, null);
@@ -42,6 +75,15 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         this.multiversion = multiversion;
         this.defaultSort = " ORDER BY " + (multiversion ? dbKeyFactory.getPKColumns() : " height DESC, db_id DESC ");
         this.fullTextSearchColumns = fullTextSearchColumns;
+        this.getSQL = "SELECT * FROM " + table + dbKeyFactory.getPKClause()
+                + (multiversion ? " AND latest = TRUE LIMIT 1" : "");
+        this.getAtHeightSQL = "SELECT * FROM " + table + dbKeyFactory.getPKClause()
+                + " AND height <= ?" + (multiversion ? " AND (latest = TRUE OR EXISTS ("
+                + "SELECT 1 FROM " + table + dbKeyFactory.getPKClause() + " AND height > ?)) ORDER BY height DESC LIMIT 1" : "");
+        this.updateLatestSQL = "UPDATE " + table
+                + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1";
+        this.countSQL = "SELECT COUNT(*) FROM " + table + (multiversion ? " WHERE latest = TRUE" : "");
+        this.rowCountSQL = "SELECT COUNT(*) FROM " + table;
     }
 
     protected abstract T load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException;
@@ -97,8 +139,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
             }
         }
         try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
-             + (multiversion ? " AND latest = TRUE LIMIT 1" : ""))) {
+             PreparedStatement pstmt = con.prepareStatement(getSQL)) {
             dbKey.setPK(pstmt);
             return get(con, pstmt, cache);
         } catch (SQLException e) {
@@ -112,9 +153,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
         checkAvailable(height);
         try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
-                     + " AND height <= ?" + (multiversion ? " AND (latest = TRUE OR EXISTS ("
-                     + "SELECT 1 FROM " + table + dbKeyFactory.getPKClause() + " AND height > ?)) ORDER BY height DESC LIMIT 1" : ""))) {
+             PreparedStatement pstmt = con.prepareStatement(getAtHeightSQL)) {
             int i = dbKey.setPK(pstmt);
             pstmt.setInt(i, height);
             if (multiversion) {
@@ -336,10 +375,18 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final int getCount() {
+        CachedCount cached = cachedCount;
+        if (cached != null && cached.modificationCount == modificationCount.get() && !db.isInTransaction()) {
+            return cached.count;
+        }
+        long currentModificationCount = modificationCount.get();
         try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM " + table
-                     + (multiversion ? " WHERE latest = TRUE" : ""))) {
-            return getCount(pstmt);
+             PreparedStatement pstmt = con.prepareStatement(countSQL)) {
+            int count = getCount(pstmt);
+            if (!db.isInTransaction()) {
+                cachedCount = new CachedCount(currentModificationCount, count);
+            }
+            return count;
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
@@ -385,14 +432,36 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final int getRowCount() {
+        CachedCount cached = cachedRowCount;
+        if (cached != null && cached.modificationCount == modificationCount.get() && !db.isInTransaction()) {
+            return cached.count;
+        }
+        long currentModificationCount = modificationCount.get();
         try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM " + table)) {
-            return getCount(pstmt);
+             PreparedStatement pstmt = con.prepareStatement(rowCountSQL)) {
+            int count = getCount(pstmt);
+            if (!db.isInTransaction()) {
+                cachedRowCount = new CachedCount(currentModificationCount, count);
+            }
+            return count;
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
     }
 
+    /**
+     * Invalidate the cached counts after a table change
+     *
+     * The counts are invalidated again when the current database transaction ends,
+     * so a count read by another thread before the commit is not kept.
+     */
+    public final void tableChanged() {
+        modificationCount.incrementAndGet();
+        if (db.isInTransaction()) {
+            db.registerCallback(countCallback);
+        }
+    }
+
     private int getCount(PreparedStatement pstmt) throws SQLException {
         try (ResultSet rs = pstmt.executeQuery()) {
             rs.next();
@@ -418,8 +487,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
         try (Connection con = db.getConnection()) {
             if (multiversion) {
-                try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
-                        + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
+                try (PreparedStatement pstmt = con.prepareStatement(updateLatestSQL)) {
                     dbKey.setPK(pstmt);
                     pstmt.executeUpdate();
                 }
@@ -428,6 +496,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
+        tableChanged();
     }
 
     @Override
@@ -437,6 +506,13 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         } else {
             super.rollback(height);
         }
+        tableChanged();
+    }
+
+    @Override
+    public void truncate() {
+        super.truncate();
+        tableChanged();
     }
 
     @Override
@@ -446,6 +522,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         } else {
             super.trim(height);
         }
+        tableChanged();
     }
 
     @Override
@@ -459,4 +536,21 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         return Spa.getBlockchain().getHeight() <= height && ! (isPersistent() && Spa.getBlockchainProcessor().isScanning());
     }
 
+    /**
+     * Table count and the table modification count when it was read
+     */
+    private static final class CachedCount {
+
+        /** Table modification count */
+        private final long modificationCount;
+
+        /** Row count */
+        private final int count;
+
+        private CachedCount(long modificationCount, int count) {
+            this.modificationCount = modificationCount;
+            this.count = count;
+        }
+    }
+
 }
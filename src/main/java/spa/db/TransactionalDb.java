@@ -23,9 +23,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -45,6 +48,7 @@ public class TransactionalDb extends BasicDb {
     private final ThreadLocal<DbConnection> localConnection = new ThreadLocal<>();
     private final ThreadLocal<Map<String,Map<DbKey,Object>>> transactionCaches = new ThreadLocal<>();
     private final ThreadLocal<Set<TransactionCallback>> transactionCallback = new ThreadLocal<>();
+    private final ThreadLocal<Set<TransactionCallback>> savepointCallback = new ThreadLocal<>();
     private volatile long txTimes = 0;
     private volatile long txCount = 0;
     private volatile long statsTime = 0;
@@ -95,6 +99,7 @@ public class TransactionalDb extends BasicDb {
                 callbacks.forEach(TransactionCallback::commit);
                 transactionCallback.set(null);
             }
+            savepointCallback.set(null);
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
@@ -116,6 +121,70 @@ public class TransactionalDb extends BasicDb {
                 callbacks.forEach(TransactionCallback::rollback);
                 transactionCallback.set(null);
             }
+            savepointCallback.set(null);
+        }
+    }
+
+    /**
+     * Set a savepoint in the current transaction
+     *
+     * The registered transaction callbacks are notified so they can discard the
+     * changes made after the savepoint if the transaction is rolled back to it.
+     * Only the most recent savepoint can be rolled back.
+     *
+     * @return                      Savepoint
+     */
+    public Savepoint setSavepoint() {
+        DbConnection con = localConnection.get();
+        if (con == null) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        try {
+            Savepoint savepoint = con.setSavepoint();
+            Set<TransactionCallback> callbacks = transactionCallback.get();
+            Set<TransactionCallback> savedCallbacks = callbacks != null ? new HashSet<>(callbacks) : new HashSet<>();
+            savedCallbacks.forEach(TransactionCallback::setSavepoint);
+            savepointCallback.set(savedCallbacks);
+            return savepoint;
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Roll back the current transaction to the most recent savepoint
+     *
+     * The transaction caches are cleared.  Callbacks registered before the savepoint
+     * are notified of the partial rollback, while callbacks registered after the
+     * savepoint are rolled back and removed from the transaction.
+     *
+     * @param   savepoint           Savepoint returned by setSavepoint()
+     */
+    public void rollbackToSavepoint(Savepoint savepoint) {
+        DbConnection con = localConnection.get();
+        if (con == null) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        try {
+            con.rollback(savepoint);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            clearCache();
+            Set<TransactionCallback> callbacks = transactionCallback.get();
+            Set<TransactionCallback> savedCallbacks = savepointCallback.get();
+            if (callbacks != null) {
+                Iterator<TransactionCallback> it = callbacks.iterator();
+                while (it.hasNext()) {
+                    TransactionCallback callback = it.next();
+                    if (savedCallbacks != null && savedCallbacks.contains(callback)) {
+                        callback.rollbackToSavepoint();
+                    } else {
+                        callback.rollback();
+                        it.remove();
+                    }
+                }
+            }
         }
     }
 
@@ -205,10 +274,59 @@ public class TransactionalDb extends BasicDb {
 
         long txStart = 0;
 
+        /** Idle prepared statements available for reuse, in least-recently-used order */
+        private Map<String, PreparedStatement> statementCache;
+
         private DbConnection(Connection con) {
             super(con, factory);
         }
 
+        @Override
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            int cacheSize = getStatementCacheSize();
+            if (cacheSize <= 0) {
+                return super.prepareStatement(sql);
+            }
+            if (statementCache == null) {
+                statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > cacheSize) {
+                            DbUtils.close(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+            }
+            PreparedStatement stmt = statementCache.remove(sql);
+            if (stmt == null) {
+                stmt = super.prepareStatement(sql);
+            }
+            return new CachedPreparedStatement(this, stmt, sql);
+        }
+
+        private void releaseStatement(PreparedStatement stmt, String sql) {
+            try {
+                stmt.clearParameters();
+                stmt.clearBatch();
+            } catch (SQLException e) {
+                DbUtils.close(stmt);
+                return;
+            }
+            PreparedStatement previous = statementCache.put(sql, stmt);
+            if (previous != null && previous != stmt) {
+                DbUtils.close(previous);
+            }
+        }
+
+        private void closeStatements() {
+            if (statementCache != null) {
+                statementCache.values().forEach(DbUtils::close);
+                statementCache.clear();
+            }
+        }
+
         @Override
         public void setAutoCommit(boolean autoCommit) throws SQLException {
             throw new UnsupportedOperationException("Use Db.beginTransaction() to start a new transaction");
@@ -247,6 +365,7 @@ public class TransactionalDb extends BasicDb {
         @Override
         public void close() throws SQLException {
             if (localConnection.get() == null) {
+                closeStatements();
                 super.close();
             } else if (this != localConnection.get()) {
                 throw new IllegalStateException("Previous connection not committed");
@@ -333,6 +452,40 @@ public class TransactionalDb extends BasicDb {
         }
     }
 
+    /**
+     * Prepared statement handle returned by the connection statement cache
+     *
+     * Closing the handle returns the underlying statement to the cache of the owning
+     * connection instead of closing it.  Each call to prepareStatement() returns a new
+     * handle, so closing a handle more than once has no effect on later users of the
+     * same statement.
+     */
+    private static final class CachedPreparedStatement extends FilteredPreparedStatement {
+
+        private final DbConnection con;
+        private final PreparedStatement stmt;
+        private boolean closed;
+
+        private CachedPreparedStatement(DbConnection con, PreparedStatement stmt, String sql) {
+            super(stmt, sql);
+            this.con = con;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!closed) {
+                closed = true;
+                con.releaseStatement(stmt, getSQL());
+            }
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+            return closed || super.isClosed();
+        }
+    }
+
     private static final class DbFactory implements FilteredFactory {
 
         @Override
@@ -360,5 +513,17 @@ public class TransactionalDb extends BasicDb {
          * Transaction has been rolled back
          */
         void rollback();
+
+        /**
+         * Savepoint has been set in the transaction
+         */
+        default void setSavepoint() {
+        }
+
+        /**
+         * Transaction has been rolled back to the most recent savepoint
+         */
+        default void rollbackToSavepoint() {
+        }
     }
 }
@@ -27,6 +27,8 @@ public abstract class ValuesDbTable<T,V> extends DerivedDbTable {
 
     private final boolean multiversion;
     protected final DbKey.Factory<T> dbKeyFactory;
+    private final String getSQL;
+    private final String updateLatestSQL;
 
     protected ValuesDbTable(String table, DbKey.Factory<T> dbKeyFactory) {
         this(table, dbKeyFactory, false);
@@ -36,6 +38,10 @@ public abstract class ValuesDbTable<T,V> extends DerivedDbTable {
         super(table);
         this.dbKeyFactory = dbKeyFactory;
         this.multiversion = multiversion;
+        this.getSQL = "SELECT * FROM " + table + dbKeyFactory.getPKClause()
+                + (multiversion ? " AND latest = TRUE" : "") + " ORDER BY db_id";
+        this.updateLatestSQL = "UPDATE " + table
+                + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE";
     }
 
     protected abstract V load(Connection con, ResultSet rs) throws SQLException;
@@ -55,8 +61,7 @@ public abstract class ValuesDbTable<T,V> extends DerivedDbTable {
             }
         }
         try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
-                     + (multiversion ? " AND latest = TRUE" : "") + " ORDER BY db_id")) {
+             PreparedStatement pstmt = con.prepareStatement(getSQL)) {
             dbKey.setPK(pstmt);
             values = get(con, pstmt);
             if (db.isInTransaction()) {
@@ -93,8 +98,7 @@ public abstract class ValuesDbTable<T,V> extends DerivedDbTable {
         db.getCache(table).put(dbKey, values);
         try (Connection con = db.getConnection()) {
             if (multiversion) {
-                try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
-                        + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE")) {
+                try (PreparedStatement pstmt = con.prepareStatement(updateLatestSQL)) {
                     dbKey.setPK(pstmt);
                     pstmt.executeUpdate();
                 }
@@ -28,12 +28,19 @@ import java.util.List;
 
 public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
 
+    private final String existsBeforeSQL;
+    private final String updateLatestSQL;
+    private final String deleteSQL;
+
     protected VersionedEntityDbTable(String table, DbKey.Factory<T> dbKeyFactory) {
-        super(table, dbKeyFactory, true, null);
+        this(table, dbKeyFactory, null);
     }
 
     protected VersionedEntityDbTable(String table, DbKey.Factory<T> dbKeyFactory, String fullTextSearchColumns) {
         super(table, dbKeyFactory, true, fullTextSearchColumns);
+        this.existsBeforeSQL = "SELECT 1 FROM " + table + dbKeyFactory.getPKClause() + " AND height < ? LIMIT 1";
+        this.updateLatestSQL = "UPDATE " + table + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1";
+        this.deleteSQL = "DELETE FROM " + table + dbKeyFactory.getPKClause();
     }
 
     public final boolean delete(T t) {
@@ -49,14 +56,12 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         }
         DbKey dbKey = dbKeyFactory.newKey(t);
         try (Connection con = db.getConnection();
-             PreparedStatement pstmtCount = con.prepareStatement("SELECT 1 FROM " + table
-                     + dbKeyFactory.getPKClause() + " AND height < ? LIMIT 1")) {
+             PreparedStatement pstmtCount = con.prepareStatement(existsBeforeSQL)) {
             int i = dbKey.setPK(pstmtCount);
             pstmtCount.setInt(i, Spa.getBlockchain().getHeight());
             try (ResultSet rs = pstmtCount.executeQuery()) {
                 if (rs.next()) {
-                    try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
-                            + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
+                    try (PreparedStatement pstmt = con.prepareStatement(updateLatestSQL)) {
                         dbKey.setPK(pstmt);
                         pstmt.executeUpdate();
                         save(con, t);
@@ -64,7 +69,7 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
                     }
                     return true;
                 } else {
-                    try (PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + dbKeyFactory.getPKClause())) {
+                    try (PreparedStatement pstmtDelete = con.prepareStatement(deleteSQL)) {
                         dbKey.setPK(pstmtDelete);
                         return pstmtDelete.executeUpdate() > 0;
                     }
@@ -76,6 +81,7 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
             if (!keepInCache) {
                 db.getCache(table).remove(dbKey);
             }
+            tableChanged();
         }
     }
 
@@ -126,27 +132,58 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
+        String pkColumns = dbKeyFactory.getPKColumns();
+        String pkParameters = pkColumns.replaceAll("[^,]+", "?");
         try (Connection con = db.getConnection();
-             PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns() + ", MAX(height) AS max_height"
-                     + " FROM " + table + " WHERE height < ? GROUP BY " + dbKeyFactory.getPKColumns() + " HAVING COUNT(DISTINCT height) > 1");
+             PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + pkColumns + ", MAX(height) AS max_height"
+                     + " FROM " + table + " WHERE height < ? GROUP BY " + pkColumns + " HAVING COUNT(DISTINCT height) > 1"
+                     + " ORDER BY " + pkColumns);
+             PreparedStatement pstmtSelectNext = con.prepareStatement("SELECT " + pkColumns + ", MAX(height) AS max_height"
+                     + " FROM " + table + " WHERE height < ? AND (" + pkColumns + ") > (" + pkParameters + ")"
+                     + " GROUP BY " + pkColumns + " HAVING COUNT(DISTINCT height) > 1 ORDER BY " + pkColumns);
              PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + dbKeyFactory.getPKClause()
                      + " AND height < ? AND height >= 0");
             PreparedStatement pstmtDeleteDeleted = con.prepareStatement("DELETE FROM " + table + " WHERE height < ? AND height >= 0 AND latest = FALSE "
-                    + " AND (" + dbKeyFactory.getPKColumns() + ") NOT IN (SELECT (" + dbKeyFactory.getPKColumns() + ") FROM "
-                    + table + " WHERE height >= ?)")) {
-            pstmtSelect.setInt(1, height);
-            try (ResultSet rs = pstmtSelect.executeQuery()) {
-                while (rs.next()) {
-                    DbKey dbKey = dbKeyFactory.newKey(rs);
-                    int maxHeight = rs.getInt("max_height");
-                    int i = 1;
-                    i = dbKey.setPK(pstmtDelete, i);
-                    pstmtDelete.setInt(i, maxHeight);
-                    pstmtDelete.executeUpdate();
+                    + " AND (" + pkColumns + ") NOT IN (SELECT (" + pkColumns + ") FROM "
+                    + table + " WHERE height >= ?) LIMIT ?")) {
+            //
+            // The blockchain lock is released at each checkpoint, so the rows are selected again
+            // following the last key processed instead of continuing with a stale result set
+            //
+            DbKey lastKey = null;
+            boolean checkpoint;
+            do {
+                checkpoint = false;
+                PreparedStatement pstmt = lastKey == null ? pstmtSelect : pstmtSelectNext;
+                pstmt.setInt(1, height);
+                if (lastKey != null) {
+                    lastKey.setPK(pstmt, 2);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    int deleted = 0;
+                    while (rs.next()) {
+                        DbKey dbKey = dbKeyFactory.newKey(rs);
+                        int maxHeight = rs.getInt("max_height");
+                        int i = 1;
+                        i = dbKey.setPK(pstmtDelete, i);
+                        pstmtDelete.setInt(i, maxHeight);
+                        deleted += pstmtDelete.executeUpdate();
+                        if (deleted >= TRIM_BATCH_SIZE) {
+                            lastKey = dbKey;
+                            checkpoint = true;
+                            break;
+                        }
+                    }
+                }
+                if (checkpoint) {
+                    trimCheckpoint();
                 }
-                pstmtDeleteDeleted.setInt(1, height);
-                pstmtDeleteDeleted.setInt(2, height);
-                pstmtDeleteDeleted.executeUpdate();
+            } while (checkpoint);
+            pstmtDeleteDeleted.setInt(1, height);
+            pstmtDeleteDeleted.setInt(2, height);
+            pstmtDeleteDeleted.setInt(3, TRIM_BATCH_SIZE);
+            while (pstmtDeleteDeleted.executeUpdate() >= TRIM_BATCH_SIZE) {
+                trimCheckpoint();
             }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
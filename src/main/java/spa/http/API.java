@@ -42,6 +42,7 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
 import org.eclipse.jetty.util.security.Constraint;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -94,6 +95,7 @@ public final class API {
     public static final boolean apiServerCORS = Spa.getBooleanProperty("spa.apiServerCORS");
 
     private static final Server apiServer;
+    private static final QueuedThreadPool apiThreadPool;
     private static URI welcomePageUri;
     private static URI serverRootUri;
 
@@ -136,7 +138,9 @@ public final class API {
             final String host = Spa.getStringProperty("spa.apiServerHost");
             disableAdminPassword = Spa.getBooleanProperty("spa.disableAdminPassword") || ("127.0.0.1".equals(host) && adminPassword.isEmpty());
 
-            apiServer = new Server();
+            apiThreadPool = new QueuedThreadPool(Spa.getIntProperty("spa.apiServerThreads", 200));
+            apiThreadPool.setName("apiServer");
+            apiServer = new Server(apiThreadPool);
             ServerConnector connector;
             boolean enableSSL = Spa.getBooleanProperty("spa.apiSSL");
             //
@@ -278,6 +282,7 @@ public final class API {
 
         } else {
             apiServer = null;
+            apiThreadPool = null;
             disableAdminPassword = false;
             openAPIPort = 0;
             openAPISSLPort = 0;
@@ -288,6 +293,10 @@ public final class API {
 
     public static void init() {}
 
+    static QueuedThreadPool getThreadPool() {
+        return apiThreadPool;
+    }
+
     public static void shutdown() {
         if (apiServer != null) {
             try {
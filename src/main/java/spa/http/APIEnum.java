@@ -90,7 +90,15 @@ public enum APIEnum {
     SET_API_PROXY_PEER("setAPIProxyPeer", SetAPIProxyPeer.instance),
     SEND_TRANSACTION("sendTransaction", SendTransaction.instance),
     BLACKLIST_API_PROXY_PEER("blacklistAPIProxyPeer", BlacklistAPIProxyPeer.instance),
-    GET_NEXT_BLOCK_GENERATORS("getNextBlockGenerators", GetNextBlockGeneratorsTemp.instance);
+    GET_NEXT_BLOCK_GENERATORS("getNextBlockGenerators", GetNextBlockGeneratorsTemp.instance),
+    EXPORT_CHAIN("exportChain", ExportChain.instance),
+    GET_LOCK_STATISTICS("getLockStatistics", GetLockStatistics.instance),
+    RESET_LOCK_STATISTICS("resetLockStatistics", ResetLockStatistics.instance),
+    ADD_SIGNING_KEY("addSigningKey", AddSigningKey.instance),
+    REMOVE_SIGNING_KEY("removeSigningKey", RemoveSigningKey.instance),
+    GET_PROFILE("getProfile", GetProfile.instance),
+    START_FLIGHT_RECORDING("startFlightRecording", StartFlightRecording.instance),
+    STOP_FLIGHT_RECORDING("stopFlightRecording", StopFlightRecording.instance);
 
     private static final Map<String, APIEnum> apiByName = new HashMap<>();
 
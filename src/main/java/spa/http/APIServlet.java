@@ -48,6 +48,7 @@ import static spa.http.JSONResponses.LIGHT_CLIENT_DISABLED_API;
 import static spa.http.JSONResponses.POST_REQUIRED;
 import static spa.http.JSONResponses.REQUIRED_BLOCK_NOT_FOUND;
 import static spa.http.JSONResponses.REQUIRED_LAST_BLOCK_NOT_FOUND;
+import static spa.http.JSONResponses.SERVER_STARTING;
 
 public final class APIServlet extends HttpServlet {
 
@@ -118,6 +119,10 @@ public final class APIServlet extends HttpServlet {
             return false;
         }
 
+        protected boolean allowDuringStartup() {
+            return !requireBlockchain();
+        }
+
     }
 
     private static final boolean enforcePost = Spa.getBooleanProperty("spa.apiServerEnforcePOST");
@@ -218,6 +223,11 @@ public final class APIServlet extends HttpServlet {
                 return;
             }
 
+            if (Spa.isStarting() && !apiRequestHandler.allowDuringStartup()) {
+                response = SERVER_STARTING;
+                return;
+            }
+
             if (enforcePost && apiRequestHandler.requirePost() && !"POST".equals(req.getMethod())) {
                 response = POST_REQUIRED;
                 return;
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.http;
+
+import spa.crypto.KeyRing;
+import spa.crypto.SigningKey;
+import spa.util.Convert;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Add a secret phrase to the server key ring
+ *
+ * Transactions signed on the server with a secret phrase in the key ring do not need
+ * to derive the account key pair for each signature.  The key is kept until it has been
+ * removed by removeSigningKey as many times as it was added.
+ */
+public final class AddSigningKey extends APIServlet.APIRequestHandler {
+
+    static final AddSigningKey instance = new AddSigningKey();
+
+    private AddSigningKey() {
+        super(new APITag[] {APITag.TRANSACTIONS}, "secretPhrase");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        String secretPhrase = ParameterParser.getSecretPhrase(req, true);
+        JSONObject response = new JSONObject();
+        try {
+            SigningKey key = KeyRing.add(secretPhrase, KeyRing.Owner.API);
+            JSONData.putAccount(response, "account", key.getAccountId());
+            response.put("publicKey", Convert.toHexString(key.getPublicKey()));
+            response.put("keyCount", KeyRing.size());
+        } catch (IllegalStateException e) {
+            JSONData.putException(response, e);
+        }
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
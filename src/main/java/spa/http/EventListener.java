@@ -30,6 +30,7 @@ import spa.peer.Peers;
 import spa.util.Convert;
 import spa.util.Listener;
 import spa.util.Logger;
+import spa.util.ThreadPool;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
@@ -48,7 +49,6 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -96,7 +96,7 @@ class EventListener implements Runnable, AsyncListener, TransactionalDb.Transact
     }
 
     /** Thread pool for asynchronous completions */
-    private static final ExecutorService threadPool = Executors.newCachedThreadPool();
+    private static final ExecutorService threadPool = ThreadPool.newExecutor("apiEvents", 2, 16);
 
     /** Peer events - update API comments for EventRegister and EventWait if changed */
     static final List<Peers.Event> peerEvents = new ArrayList<>();
@@ -518,6 +518,48 @@ class EventListener implements Runnable, AsyncListener, TransactionalDb.Transact
         }
     }
 
+    /**
+     * Savepoint has been set
+     *
+     * Keep the pending events for this database transaction if the transaction
+     * is rolled back to the savepoint
+     */
+    @Override
+    public void setSavepoint() {
+        Thread thread = Thread.currentThread();
+        lock.lock();
+        try {
+            dbEvents.forEach(pendingEvent -> {
+                if (pendingEvent.getThread() == thread) {
+                    pendingEvent.setSaved(true);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Transaction has been rolled back to the savepoint
+     *
+     * Discard the pending events for this database transaction created after the savepoint
+     */
+    @Override
+    public void rollbackToSavepoint() {
+        Thread thread = Thread.currentThread();
+        lock.lock();
+        try {
+            Iterator<PendingEvent> it = dbEvents.iterator();
+            while (it.hasNext()) {
+                PendingEvent pendingEvent = it.next();
+                if (pendingEvent.getThread() == thread && !pendingEvent.isSaved())
+                    it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Pending event
      */
@@ -535,6 +577,9 @@ class EventListener implements Runnable, AsyncListener, TransactionalDb.Transact
         /** Database thread */
         private Thread thread;
 
+        /** Event was created before the current savepoint */
+        private boolean saved;
+
         /**
          * Create a pending event
          *
@@ -612,6 +657,24 @@ class EventListener implements Runnable, AsyncListener, TransactionalDb.Transact
         public void setThread(Thread thread) {
             this.thread = thread;
         }
+
+        /**
+         * Check if the event was created before the current savepoint
+         *
+         * @return                  TRUE if the event was created before the savepoint
+         */
+        public boolean isSaved() {
+            return saved;
+        }
+
+        /**
+         * Set the savepoint status
+         *
+         * @param   saved           TRUE if the event was created before the savepoint
+         */
+        public void setSaved(boolean saved) {
+            this.saved = saved;
+        }
     }
 
     /**
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.http;
+
+import spa.ChainArchive;
+import spa.util.Convert;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static spa.http.JSONResponses.incorrect;
+import static spa.http.JSONResponses.missing;
+
+/**
+ * Export the blockchain to a chain archive
+ *
+ * The archive can be used to bootstrap a new node by setting spa.importChainFile.
+ * The archive file must not already exist.
+ */
+public final class ExportChain extends APIServlet.APIRequestHandler {
+
+    static final ExportChain instance = new ExportChain();
+
+    private ExportChain() {
+        super(new APITag[] {APITag.DEBUG}, "file");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        String fileName = Convert.emptyToNull(req.getParameter("file"));
+        if (fileName == null) {
+            return missing("file");
+        }
+        Path file;
+        try {
+            file = Paths.get(fileName);
+        } catch (InvalidPathException e) {
+            return incorrect("file", e.getMessage());
+        }
+        if (Files.exists(file)) {
+            return incorrect("file", "already exists");
+        }
+        JSONObject response = new JSONObject();
+        try {
+            long startTime = System.currentTimeMillis();
+            response.put("numberOfBlocks", ChainArchive.exportChain(file));
+            response.put("time", System.currentTimeMillis() - startTime);
+        } catch (IOException | RuntimeException e) {
+            JSONData.putException(response, e);
+        }
+        return response;
+    }
+
+    @Override
+    protected final boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
@@ -39,9 +39,13 @@ public final class GetBlockchainStatus extends APIServlet.APIRequestHandler {
         response.put("version", Spa.VERSION);
         response.put("time", Spa.getEpochTime());
         Block lastBlock = Spa.getBlockchain().getLastBlock();
-        response.put("lastBlock", lastBlock.getStringId());
-        response.put("cumulativeDifficulty", lastBlock.getCumulativeDifficulty().toString());
-        response.put("numberOfBlocks", lastBlock.getHeight() + 1);
+        if (lastBlock != null) {
+            response.put("lastBlock", lastBlock.getStringId());
+            response.put("cumulativeDifficulty", lastBlock.getCumulativeDifficulty().toString());
+            response.put("numberOfBlocks", lastBlock.getHeight() + 1);
+        }
+        response.put("numberOfUnconfirmedTransactions", Spa.getTransactionProcessor().getUnconfirmedTransactionCount());
+        response.put("isStarting", Spa.isStarting());
         BlockchainProcessor blockchainProcessor = Spa.getBlockchainProcessor();
         Peer lastBlockchainFeeder = blockchainProcessor.getLastBlockchainFeeder();
         response.put("lastBlockchainFeeder", lastBlockchainFeeder == null ? null : lastBlockchainFeeder.getAnnouncedAddress());
@@ -74,4 +78,9 @@ public final class GetBlockchainStatus extends APIServlet.APIRequestHandler {
         return false;
     }
 
+    @Override
+    protected boolean allowDuringStartup() {
+        return true;
+    }
+
 }
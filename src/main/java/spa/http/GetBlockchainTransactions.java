@@ -16,15 +16,19 @@
 
 package spa.http;
 
+import spa.Account;
 import spa.Spa;
 import spa.SpaException;
 import spa.Transaction;
 import spa.db.DbIterator;
+import spa.util.Convert;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class GetBlockchainTransactions extends APIServlet.APIRequestHandler {
 
@@ -33,7 +37,7 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
     private GetBlockchainTransactions() {
         super(new APITag[] {APITag.ACCOUNTS, APITag.TRANSACTIONS}, "account", "timestamp", "type", "subtype",
                 "firstIndex", "lastIndex", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
-                "includeExpiredPrunable", "includePhasingResult", "executedOnly");
+                "includeExpiredPrunable", "includePhasingResult", "executedOnly", "cursor");
     }
 
     @Override
@@ -63,19 +67,49 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        //
+        // A cursor returned by a previous request selects the transactions following that page,
+        // with firstIndex and lastIndex then only determining the page size
+        //
+        int cursorTimestamp = -1;
+        short cursorIndex = 0;
+        String cursor = Convert.emptyToNull(req.getParameter("cursor"));
+        if (cursor != null) {
+            int pos = cursor.indexOf(':');
+            try {
+                cursorTimestamp = Integer.parseInt(cursor.substring(0, Math.max(pos, 0)));
+                cursorIndex = Short.parseShort(cursor.substring(pos + 1));
+            } catch (NumberFormatException e) {
+                return JSONResponses.incorrect("cursor");
+            }
+            if (cursorTimestamp < 0) {
+                return JSONResponses.incorrect("cursor");
+            }
+            lastIndex -= firstIndex;
+            firstIndex = 0;
+        }
 
-        JSONArray transactions = new JSONArray();
+        List<Transaction> transactionList = new ArrayList<>();
+        List<Long> senderIds = new ArrayList<>();
         try (DbIterator<? extends Transaction> iterator = Spa.getBlockchain().getTransactions(accountId, numberOfConfirmations,
                 type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, firstIndex, lastIndex,
-                includeExpiredPrunable, executedOnly)) {
+                includeExpiredPrunable, executedOnly, cursorTimestamp, cursorIndex)) {
             while (iterator.hasNext()) {
                 Transaction transaction = iterator.next();
-                transactions.add(JSONData.transaction(transaction));
+                transactionList.add(transaction);
+                senderIds.add(transaction.getSenderId());
             }
         }
+        Account.prefetchPublicKeys(senderIds);
+        JSONArray transactions = new JSONArray();
+        transactionList.forEach(transaction -> transactions.add(JSONData.transaction(transaction)));
 
         JSONObject response = new JSONObject();
         response.put("transactions", transactions);
+        if (!transactionList.isEmpty() && lastIndex < Integer.MAX_VALUE && transactionList.size() == lastIndex - firstIndex + 1) {
+            Transaction lastTransaction = transactionList.get(transactionList.size() - 1);
+            response.put("nextCursor", lastTransaction.getBlockTimestamp() + ":" + lastTransaction.getIndex());
+        }
         return response;
 
     }
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.http;
+
+import spa.Blockchain;
+import spa.Spa;
+import spa.util.ReadWriteUpdateLock;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>The GetLockStatistics API returns the blockchain lock contention statistics
+ * recorded when spa.enableLockMetrics is set.</p>
+ *
+ * <p>The call site statistics are reset by the ResetLockStatistics API.</p>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>metricsEnabled - TRUE if lock metrics are enabled</li>
+ * <li>queueLength    - Number of threads waiting for the lock</li>
+ * <li>holders        - An array of holder objects for the threads holding the lock</li>
+ * <li>sites          - An array of site objects for each call site obtaining the lock</li>
+ * </ul>
+ *
+ * <p>Holder object:</p>
+ * <ul>
+ * <li>type     - Lock type (read, update or write)</li>
+ * <li>site     - Call site</li>
+ * <li>thread   - Thread name</li>
+ * <li>holdTime - Time the lock has been held (microseconds)</li>
+ * </ul>
+ *
+ * <p>Site object:</p>
+ * <ul>
+ * <li>type                - Lock type (read, update or write)</li>
+ * <li>site                - Call site</li>
+ * <li>count               - Number of times the lock was obtained</li>
+ * <li>waitTime            - Total wait time (microseconds)</li>
+ * <li>maxWaitTime         - Maximum wait time (microseconds)</li>
+ * <li>holdTime            - Total hold time (microseconds)</li>
+ * <li>maxHoldTime         - Maximum hold time (microseconds)</li>
+ * <li>averageQueueLength  - Average queue length when the lock was requested</li>
+ * <li>maxQueueLength      - Maximum queue length when the lock was requested</li>
+ * </ul>
+ */
+public final class GetLockStatistics extends APIServlet.APIRequestHandler {
+
+    static final GetLockStatistics instance = new GetLockStatistics();
+
+    private GetLockStatistics() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        Blockchain blockchain = Spa.getBlockchain();
+        JSONObject response = new JSONObject();
+        response.put("metricsEnabled", blockchain.isLockMetricsEnabled());
+        response.put("queueLength", blockchain.getLockQueueLength());
+        JSONArray holdersJSON = new JSONArray();
+        for (ReadWriteUpdateLock.Holder holder : blockchain.getLockHolders()) {
+            JSONObject holderJSON = new JSONObject();
+            holderJSON.put("type", holder.getType());
+            holderJSON.put("site", holder.getSite());
+            holderJSON.put("thread", holder.getThreadName());
+            holderJSON.put("holdTime", holder.getHoldTime());
+            holdersJSON.add(holderJSON);
+        }
+        response.put("holders", holdersJSON);
+        JSONArray sitesJSON = new JSONArray();
+        for (ReadWriteUpdateLock.SiteStatistics stats : blockchain.getLockStatistics()) {
+            JSONObject siteJSON = new JSONObject();
+            siteJSON.put("type", stats.getType());
+            siteJSON.put("site", stats.getSite());
+            siteJSON.put("count", stats.getCount());
+            siteJSON.put("waitTime", stats.getWaitTime());
+            siteJSON.put("maxWaitTime", stats.getMaxWaitTime());
+            siteJSON.put("holdTime", stats.getHoldTime());
+            siteJSON.put("maxHoldTime", stats.getMaxHoldTime());
+            siteJSON.put("averageQueueLength", stats.getAverageQueueLength());
+            siteJSON.put("maxQueueLength", stats.getMaxQueueLength());
+            sitesJSON.add(siteJSON);
+        }
+        response.put("sites", sitesJSON);
+        return response;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
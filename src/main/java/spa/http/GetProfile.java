@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.http;
+
+import spa.util.Convert;
+import spa.util.SamplingProfiler;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>The GetProfile API samples the thread stacks for the requested duration and returns
+ * the aggregated samples.  The request does not complete until the profile has been taken
+ * and only one profile can be taken at a time.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ * <li>duration       - Profile duration in seconds (1 - 120, defaults to 10)</li>
+ * <li>interval       - Sample interval in milliseconds (1 - 1000, defaults to 20)</li>
+ * <li>depth          - Maximum stack depth (1 - 1024, defaults to 128)</li>
+ * <li>thread         - Only sample threads whose name starts with this prefix</li>
+ * <li>includeWaiting - Sample threads that are not runnable (defaults to false)</li>
+ * </ul>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>duration  - Profile duration (milliseconds)</li>
+ * <li>samples   - Number of sampling passes</li>
+ * <li>threads   - An array of thread group objects ordered by CPU time</li>
+ * <li>collapsed - Collapsed stacks for flame graph tools, one stack per line</li>
+ * </ul>
+ *
+ * <p>Thread group object:</p>
+ * <ul>
+ * <li>name    - Thread name without the trailing sequence number</li>
+ * <li>threads - Number of threads in the group</li>
+ * <li>samples - Number of stack samples</li>
+ * <li>cpuTime - CPU time used during the profile (milliseconds) if supported by the JVM</li>
+ * </ul>
+ */
+public final class GetProfile extends APIServlet.APIRequestHandler {
+
+    static final GetProfile instance = new GetProfile();
+
+    private GetProfile() {
+        super(new APITag[] {APITag.DEBUG}, "duration", "interval", "depth", "thread", "includeWaiting");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        int duration = ParameterParser.getInt(req, "duration", 1, 120, false);
+        int interval = ParameterParser.getInt(req, "interval", 1, 1000, false);
+        int depth = ParameterParser.getInt(req, "depth", 1, 1024, false);
+        String threadPrefix = Convert.emptyToNull(req.getParameter("thread"));
+        boolean includeWaiting = "true".equalsIgnoreCase(req.getParameter("includeWaiting"));
+        SamplingProfiler.Profile profile;
+        try {
+            profile = SamplingProfiler.profile((duration != 0 ? duration : 10) * 1000, interval != 0 ? interval : 20,
+                    depth != 0 ? depth : 128, threadPrefix, includeWaiting);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return JSONResponses.error("Profile interrupted");
+        }
+        if (profile == null) {
+            return JSONResponses.error("Another profile is in progress");
+        }
+        JSONObject response = new JSONObject();
+        response.put("duration", profile.getDuration());
+        response.put("samples", profile.getSampleCount());
+        JSONArray threadsJSON = new JSONArray();
+        for (SamplingProfiler.ThreadStatistics stats : profile.getThreads()) {
+            JSONObject threadJSON = new JSONObject();
+            threadJSON.put("name", stats.getName());
+            threadJSON.put("threads", stats.getThreadCount());
+            threadJSON.put("samples", stats.getSamples());
+            if (profile.isCpuTimeSupported()) {
+                threadJSON.put("cpuTime", stats.getCpuTime());
+            }
+            threadsJSON.add(threadJSON);
+        }
+        response.put("threads", threadsJSON);
+        response.put("collapsed", profile.getCollapsedStacks());
+        return response;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
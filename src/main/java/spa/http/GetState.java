@@ -21,7 +21,10 @@ import spa.Constants;
 import spa.Generator;
 import spa.Spa;
 import spa.peer.Peers;
+import spa.util.ThreadPool;
 import spa.util.UPnP;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
@@ -45,6 +48,30 @@ public final class GetState extends APIServlet.APIRequestHandler {
             response.put("numberOfTransactions", Spa.getBlockchain().getTransactionCount());
             response.put("numberOfTransactionsLastDay", Spa.getBlockchain().getTransactionCountLastDay());
             response.put("numberOfAccounts", Account.getCount());
+            JSONArray executors = new JSONArray();
+            ThreadPool.getExecutors().forEach(executor -> {
+                JSONObject json = new JSONObject();
+                json.put("name", executor.getName());
+                json.put("activeThreads", executor.getActiveCount());
+                json.put("threads", executor.getPoolSize());
+                json.put("maxThreads", executor.getMaximumPoolSize());
+                json.put("queueSize", executor.getQueueSize());
+                json.put("averageWaitTime", executor.getAverageWaitTime());
+                json.put("maxWaitTime", executor.getMaxWaitTime());
+                json.put("completedTasks", executor.getCompletedTaskCount());
+                executors.add(json);
+            });
+            QueuedThreadPool apiThreadPool = API.getThreadPool();
+            if (apiThreadPool != null) {
+                JSONObject json = new JSONObject();
+                json.put("name", apiThreadPool.getName());
+                json.put("activeThreads", apiThreadPool.getBusyThreads());
+                json.put("threads", apiThreadPool.getThreads());
+                json.put("maxThreads", apiThreadPool.getMaxThreads());
+                json.put("queueSize", apiThreadPool.getQueueSize());
+                executors.add(json);
+            }
+            response.put("executors", executors);
         }
         response.put("numberOfPeers", Peers.getAllPeers().size());
         response.put("numberOfActivePeers", Peers.getActivePeers().size());
@@ -257,6 +257,14 @@ public final class JSONResponses {
         LIGHT_CLIENT_DISABLED_API = JSON.prepare(response);
     }
 
+    public static final JSONStreamAware SERVER_STARTING;
+    static {
+        JSONObject response = new JSONObject();
+        response.put("errorCode", 21);
+        response.put("errorDescription", "This API is not available until the server has started");
+        SERVER_STARTING = JSON.prepare(response);
+    }
+
     public static final JSONStreamAware PEER_NOT_CONNECTED;
     static {
         JSONObject response = new JSONObject();
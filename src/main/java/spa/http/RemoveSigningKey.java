@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.http;
+
+import spa.crypto.KeyRing;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Remove a secret phrase from the server key ring
+ *
+ * Only references added by AddSigningKey are removed, so a key used by a forging account is kept.
+ * The private key is zeroed when the secret phrase has been removed as many times as it was added.
+ */
+public final class RemoveSigningKey extends APIServlet.APIRequestHandler {
+
+    static final RemoveSigningKey instance = new RemoveSigningKey();
+
+    private RemoveSigningKey() {
+        super(new APITag[] {APITag.TRANSACTIONS}, "secretPhrase");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        String secretPhrase = ParameterParser.getSecretPhrase(req, true);
+        JSONObject response = new JSONObject();
+        response.put("removed", KeyRing.remove(secretPhrase, KeyRing.Owner.API));
+        response.put("keyCount", KeyRing.size());
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
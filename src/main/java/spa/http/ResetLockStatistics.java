@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.http;
+
+import spa.Spa;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>The ResetLockStatistics API resets the blockchain lock call site statistics
+ * returned by the GetLockStatistics API.</p>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>done - TRUE if the statistics were reset</li>
+ * </ul>
+ */
+public final class ResetLockStatistics extends APIServlet.APIRequestHandler {
+
+    static final ResetLockStatistics instance = new ResetLockStatistics();
+
+    private ResetLockStatistics() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        Spa.getBlockchain().resetLockStatistics();
+        JSONObject response = new JSONObject();
+        response.put("done", true);
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.http;
+
+import spa.util.Convert;
+import spa.util.FlightRecorder;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * <p>The StartFlightRecording API starts a Java Flight Recorder recording.  The recording
+ * includes the node events for block processing, transaction processing, peer requests
+ * and block generation in addition to the JVM events selected by the configuration.
+ * The recording file is written to the spa.flightRecordingDir directory when the
+ * recording is stopped or the recording duration expires.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ * <li>name          - Recording file name (defaults to spa-<i>timestamp</i>.jfr)</li>
+ * <li>configuration - JFR configuration name (defaults to 'default')</li>
+ * <li>duration      - Recording duration in seconds (0 - 86400, defaults to 0 to record until stopped)</li>
+ * </ul>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>file - Recording file</li>
+ * </ul>
+ */
+public final class StartFlightRecording extends APIServlet.APIRequestHandler {
+
+    static final StartFlightRecording instance = new StartFlightRecording();
+
+    private StartFlightRecording() {
+        super(new APITag[] {APITag.DEBUG}, "name", "configuration", "duration");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        String name = Convert.emptyToNull(req.getParameter("name"));
+        if (name == null) {
+            name = "spa-" + System.currentTimeMillis() + ".jfr";
+        }
+        String configuration = Convert.emptyToNull(req.getParameter("configuration"));
+        int duration = ParameterParser.getInt(req, "duration", 0, 86400, false);
+        Path file;
+        try {
+            file = FlightRecorder.startRecording(name, configuration != null ? configuration : "default", duration);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            return JSONResponses.error(e.getMessage());
+        } catch (ParseException e) {
+            return JSONResponses.incorrect("configuration", e.getMessage());
+        } catch (IOException e) {
+            return JSONResponses.error("Unable to start recording: " + e.getMessage());
+        }
+        JSONObject response = new JSONObject();
+        response.put("file", file.toString());
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.http;
+
+import spa.util.FlightRecorder;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>The StopFlightRecording API stops the current Java Flight Recorder recording
+ * and writes the recording file.</p>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>file - Recording file</li>
+ * <li>size - Recording file size (bytes)</li>
+ * </ul>
+ */
+public final class StopFlightRecording extends APIServlet.APIRequestHandler {
+
+    static final StopFlightRecording instance = new StopFlightRecording();
+
+    private StopFlightRecording() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        JSONObject response = new JSONObject();
+        try {
+            Path file = FlightRecorder.stopRecording();
+            if (file == null) {
+                return JSONResponses.error("No recording is available");
+            }
+            response.put("file", file.toString());
+            response.put("size", Files.exists(file) ? Files.size(file) : 0);
+        } catch (IOException e) {
+            return JSONResponses.error("Unable to stop recording: " + e.getMessage());
+        }
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
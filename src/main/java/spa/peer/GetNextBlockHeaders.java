@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.peer;
+
+import spa.Spa;
+import spa.util.Convert;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import java.util.List;
+
+/**
+ * Return the signed block headers following the specified block
+ *
+ * The headers are returned without the block transactions so that a downloading
+ * node can link and verify the chain before requesting the block bodies.
+ */
+final class GetNextBlockHeaders extends PeerServlet.PeerRequestHandler {
+
+    static final GetNextBlockHeaders instance = new GetNextBlockHeaders();
+
+    /** Maximum number of headers returned by a single request */
+    static final int MAX_BLOCK_HEADERS = 720;
+
+    private GetNextBlockHeaders() {}
+
+
+    @Override
+    JSONStreamAware processRequest(JSONObject request, Peer peer) {
+
+        JSONObject response = new JSONObject();
+
+        JSONArray blockHeaders = new JSONArray();
+        long blockId = Convert.parseUnsignedLong((String) request.get("blockId"));
+        int limit = (int)Convert.parseLong(request.get("limit"));
+        if (limit > MAX_BLOCK_HEADERS) {
+            return GetNextBlocks.TOO_MANY_BLOCKS_REQUESTED;
+        }
+        List<byte[]> headers = Spa.getBlockchain().getBlockHeadersAfter(blockId, limit > 0 ? limit : MAX_BLOCK_HEADERS);
+        headers.forEach(bytes -> blockHeaders.add(Convert.toHexString(bytes)));
+        response.put("blockHeaders", blockHeaders);
+
+        return response;
+    }
+
+    @Override
+    boolean rejectWhileDownloading() {
+        return true;
+    }
+
+}
@@ -63,7 +63,7 @@ final class GetNextBlocks extends PeerServlet.PeerRequestHandler {
             }
             blocks = Spa.getBlockchain().getBlocksAfter(blockId, limit > 0 ? (int)limit : 36);
         }
-        blocks.forEach(block -> nextBlocksArray.add(block.getJSONObject()));
+        blocks.forEach(block -> nextBlocksArray.add(block.getJSONStream()));
         response.put("nextBlocks", nextBlocksArray);
 
         return response;
@@ -33,7 +33,9 @@ public interface Peer extends Comparable<Peer> {
         PRUNABLE(2),                    // Stores expired prunable messages
         API(4),                         // Provides open API access over http
         API_SSL(8),                     // Provides open API access over https
-        CORS(16);                       // API CORS enabled
+        CORS(16),                       // API CORS enabled
+        BLOCK_HEADERS(32),              // Provides block headers for headers-first sync
+        COMPACT_BLOCKS(64);             // Accepts compact blocks
 
         private final long code;        // Service code - must be a power of 2
 
@@ -27,6 +27,7 @@ import spa.util.Convert;
 import spa.util.CountingInputReader;
 import spa.util.CountingInputStream;
 import spa.util.CountingOutputWriter;
+import spa.util.FlightRecorder;
 import spa.util.JSON;
 import spa.util.Logger;
 import org.json.simple.JSONObject;
@@ -458,6 +459,19 @@ final class PeerImpl implements Peer {
 
     @Override
     public JSONObject send(final JSONStreamAware request, int maxResponseSize) {
+        FlightRecorder.PeerSendEvent event = new FlightRecorder.PeerSendEvent();
+        event.begin();
+        JSONObject response = null;
+        try {
+            response = send(request, maxResponseSize, event);
+            return response;
+        } finally {
+            event.end();
+            event.commit(host, response != null);
+        }
+    }
+
+    private JSONObject send(final JSONStreamAware request, int maxResponseSize, FlightRecorder.PeerSendEvent event) {
         JSONObject response = null;
         String log = null;
         boolean showLog = false;
@@ -473,6 +487,7 @@ final class PeerImpl implements Peer {
             //
             // Send the request and process the response
             //
+            event.setWebSocket(useWebSocket);
             if (useWebSocket) {
                 //
                 // Send the request using the WebSocket session
@@ -484,6 +499,7 @@ final class PeerImpl implements Peer {
                     log = "WebSocket " + host + ": " + wsRequest;
                 String wsResponse = webSocket.doPost(wsRequest);
                 updateUploadedVolume(wsRequest.length());
+                event.setBytesOut(wsRequest.length());
                 if (maxResponseSize > 0) {
                     if ((communicationLoggingMask & Peers.LOGGING_MASK_200_RESPONSES) != 0) {
                         log += " >>> " + wsResponse;
@@ -493,6 +509,7 @@ final class PeerImpl implements Peer {
                         throw new SpaException.SpaIOException("Maximum size exceeded: " + wsResponse.length());
                     response = (JSONObject)JSONValue.parseWithException(wsResponse);
                     updateDownloadedVolume(wsResponse.length());
+                    event.setBytesIn(wsResponse.length());
                 }
             } else {
                 //
@@ -512,6 +529,7 @@ final class PeerImpl implements Peer {
                     CountingOutputWriter cow = new CountingOutputWriter(writer);
                     request.writeJSONString(cow);
                     updateUploadedVolume(cow.getCount());
+                    event.setBytesOut(cow.getCount());
                 }
                 if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
                     if (maxResponseSize > 0) {
@@ -535,6 +553,7 @@ final class PeerImpl implements Peer {
                             showLog = true;
                             response = (JSONObject) JSONValue.parseWithException(responseValue);
                             updateDownloadedVolume(responseValue.length());
+                            event.setBytesIn(responseValue.length());
                         } else {
                             InputStream responseStream = connection.getInputStream();
                             if ("gzip".equals(connection.getHeaderField("Content-Encoding")))
@@ -543,6 +562,7 @@ final class PeerImpl implements Peer {
                                 CountingInputReader cir = new CountingInputReader(reader, maxResponseSize);
                                 response = (JSONObject)JSONValue.parseWithException(cir);
                                 updateDownloadedVolume(cir.getCount());
+                                event.setBytesIn(cir.getCount());
                             }
                         }
                     }
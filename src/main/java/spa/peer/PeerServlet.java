@@ -60,12 +60,14 @@ public final class PeerServlet extends WebSocketServlet {
         map.put("getCumulativeDifficulty", GetCumulativeDifficulty.instance);
         map.put("getInfo", GetInfo.instance);
         map.put("getMilestoneBlockIds", GetMilestoneBlockIds.instance);
+        map.put("getNextBlockHeaders", GetNextBlockHeaders.instance);
         map.put("getNextBlockIds", GetNextBlockIds.instance);
         map.put("getNextBlocks", GetNextBlocks.instance);
         map.put("getPeers", GetPeers.instance);
         map.put("getTransactions", GetTransactions.instance);
         map.put("getUnconfirmedTransactions", GetUnconfirmedTransactions.instance);
         map.put("processBlock", ProcessBlock.instance);
+        map.put("processCompactBlock", ProcessCompactBlock.instance);
         map.put("processTransactions", ProcessTransactions.instance);
         peerRequestHandlers = Collections.unmodifiableMap(map);
     }
@@ -280,7 +282,7 @@ public final class PeerServlet extends WebSocketServlet {
             }
             peer.setLastInboundRequest(Spa.getEpochTime());
             if (peerRequestHandler.rejectWhileDownloading()) {
-                if (blockchainProcessor.isDownloading()) {
+                if (blockchainProcessor.isDownloading() || Spa.isStarting()) {
                     return DOWNLOADING;
                 }
                 if (Constants.isLightClient) {
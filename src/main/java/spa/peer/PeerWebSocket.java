@@ -17,7 +17,7 @@
 package spa.peer;
 
 import spa.util.Logger;
-import spa.util.QueuedThreadPool;
+import spa.util.ThreadPool;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.UpgradeException;
 import org.eclipse.jetty.websocket.api.WebSocketException;
@@ -82,7 +82,7 @@ public class PeerWebSocket {
     private int version = VERSION;
 
     /** Thread pool for server request processing */
-    private static final ExecutorService threadPool = new QueuedThreadPool(
+    private static final ExecutorService threadPool = ThreadPool.newBlockingExecutor("peerWebSocket",
                 Runtime.getRuntime().availableProcessors(),
                 Runtime.getRuntime().availableProcessors() * 4);
 
@@ -19,6 +19,7 @@ package spa.peer;
 import spa.*;
 import spa.Spa;
 import spa.http.API;
+import spa.crypto.Crypto;
 import spa.http.APIEnum;
 import spa.util.Convert;
 import spa.util.Filter;
@@ -26,7 +27,6 @@ import spa.util.JSON;
 import spa.util.Listener;
 import spa.util.Listeners;
 import spa.util.Logger;
-import spa.util.QueuedThreadPool;
 import spa.util.ThreadPool;
 import spa.util.UPnP;
 import org.eclipse.jetty.server.Connector;
@@ -37,6 +37,7 @@ import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlets.DoSFilter;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
@@ -50,6 +51,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -64,7 +66,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -121,11 +122,13 @@ public final class Peers {
     private static final boolean savePeers;
     static final boolean ignorePeerAnnouncedAddress;
     static final boolean cjdnsOnly;
+    static final boolean allowLoopbackPeers;
     static final int MAX_VERSION_LENGTH = 10;
     static final int MAX_APPLICATION_LENGTH = 20;
     static final int MAX_PLATFORM_LENGTH = 30;
     static final int MAX_ANNOUNCED_ADDRESS_LENGTH = 100;
     static final boolean hideErrorDetails = Spa.getBooleanProperty("spa.hideErrorDetails");
+    static final boolean compactBlockRelay = Spa.getBooleanProperty("spa.compactBlockRelay");
 
     private static final JSONObject myPeerInfo;
     private static final List<Peer.Service> myServices;
@@ -140,8 +143,8 @@ public final class Peers {
 
     static final Collection<PeerImpl> allPeers = Collections.unmodifiableCollection(peers.values());
 
-    static final ExecutorService peersService = new QueuedThreadPool(2, 15);
-    private static final ExecutorService sendingService = Executors.newFixedThreadPool(10);
+    static final ExecutorService peersService = ThreadPool.newBlockingExecutor("peers", 2, 15);
+    private static final ExecutorService sendingService = ThreadPool.newBlockingExecutor("peerSending", 10, 10);
 
     static {
 
@@ -252,6 +255,12 @@ public final class Peers {
             json.put("hallmark", Peers.myHallmark);
             servicesList.add(Peer.Service.HALLMARK);
         }
+        if (!Constants.isLightClient) {
+            servicesList.add(Peer.Service.BLOCK_HEADERS);
+            if (Peers.compactBlockRelay) {
+                servicesList.add(Peer.Service.COMPACT_BLOCKS);
+            }
+        }
         json.put("application", Spa.APPLICATION);
         json.put("version", Spa.VERSION);
         json.put("platform", Peers.myPlatform);
@@ -331,6 +340,7 @@ public final class Peers {
         savePeers = usePeersDb && Spa.getBooleanProperty("spa.savePeers");
         getMorePeers = Spa.getBooleanProperty("spa.getMorePeers");
         cjdnsOnly = Spa.getBooleanProperty("spa.cjdnsOnly");
+        allowLoopbackPeers = Constants.isTestnet && Spa.getBooleanProperty("spa.allowLoopbackPeers");
         ignorePeerAnnouncedAddress = Spa.getBooleanProperty("spa.ignorePeerAnnouncedAddress");
         if (useWebSockets && useProxy) {
             Logger.logMessage("Using a proxy, will not create outbound websockets.");
@@ -338,47 +348,45 @@ public final class Peers {
 
         final List<Future<String>> unresolvedPeers = Collections.synchronizedList(new ArrayList<>());
 
-        if (!Constants.isOffline) {
-            ThreadPool.runBeforeStart(new Runnable() {
-
-                private final Set<PeerDb.Entry> entries = new HashSet<>();
-
-                @Override
-                public void run() {
-                    final int now = Spa.getEpochTime();
-                    wellKnownPeers.forEach(address -> entries.add(new PeerDb.Entry(address, 0, now)));
-                    if (usePeersDb) {
-                        Logger.logDebugMessage("Loading known peers from the database...");
-                        defaultPeers.forEach(address -> entries.add(new PeerDb.Entry(address, 0, now)));
-                        if (savePeers) {
-                            List<PeerDb.Entry> dbPeers = PeerDb.loadPeers();
-                            dbPeers.forEach(entry -> {
-                                if (!entries.add(entry)) {
-                                    // Database entries override entries from spa.properties
-                                    entries.remove(entry);
-                                    entries.add(entry);
-                                }
-                            });
-                        }
-                    }
-                    entries.forEach(entry -> {
-                        Future<String> unresolvedAddress = peersService.submit(() -> {
-                            PeerImpl peer = Peers.findOrCreatePeer(entry.getAddress(), true);
-                            if (peer != null) {
-                                peer.setLastUpdated(entry.getLastUpdated());
-                                peer.setServices(entry.getServices());
-                                Peers.addPeer(peer);
-                                return null;
+        Runnable loadPeers = new Runnable() {
+
+            private final Set<PeerDb.Entry> entries = new HashSet<>();
+
+            @Override
+            public void run() {
+                final int now = Spa.getEpochTime();
+                wellKnownPeers.forEach(address -> entries.add(new PeerDb.Entry(address, 0, now)));
+                if (usePeersDb) {
+                    Logger.logDebugMessage("Loading known peers from the database...");
+                    defaultPeers.forEach(address -> entries.add(new PeerDb.Entry(address, 0, now)));
+                    if (savePeers) {
+                        List<PeerDb.Entry> dbPeers = PeerDb.loadPeers();
+                        dbPeers.forEach(entry -> {
+                            if (!entries.add(entry)) {
+                                // Database entries override entries from spa.properties
+                                entries.remove(entry);
+                                entries.add(entry);
                             }
-                            return entry.getAddress();
                         });
-                        unresolvedPeers.add(unresolvedAddress);
-                    });
+                    }
                 }
-            }, false);
-        }
+                entries.forEach(entry -> {
+                    Future<String> unresolvedAddress = peersService.submit(() -> {
+                        PeerImpl peer = Peers.findOrCreatePeer(entry.getAddress(), true);
+                        if (peer != null) {
+                            peer.setLastUpdated(entry.getLastUpdated());
+                            peer.setServices(entry.getServices());
+                            Peers.addPeer(peer);
+                            return null;
+                        }
+                        return entry.getAddress();
+                    });
+                    unresolvedPeers.add(unresolvedAddress);
+                });
+            }
+        };
 
-        ThreadPool.runAfterStart(() -> {
+        Runnable checkPeers = () -> {
             for (Future<String> unresolvedPeer : unresolvedPeers) {
                 try {
                     String badAddress = unresolvedPeer.get(5, TimeUnit.SECONDS);
@@ -393,7 +401,24 @@ public final class Peers {
                 }
             }
             Logger.logDebugMessage("Known peers: " + peers.size());
-        });
+        };
+
+        //
+        // Known peers are loaded in the background when fast start is enabled
+        //
+        if (!Constants.isOffline) {
+            if (Spa.isFastStart()) {
+                ThreadPool.runAfterStart(() -> {
+                    loadPeers.run();
+                    checkPeers.run();
+                });
+            } else {
+                ThreadPool.runBeforeStart(loadPeers, false);
+                ThreadPool.runAfterStart(checkPeers);
+            }
+        } else {
+            ThreadPool.runAfterStart(checkPeers);
+        }
 
     }
 
@@ -403,7 +428,9 @@ public final class Peers {
 
         static {
             if (Peers.shareMyAddress) {
-                peerServer = new Server();
+                QueuedThreadPool peerThreadPool = new QueuedThreadPool(Spa.getIntProperty("spa.peerServerThreads", 200));
+                peerThreadPool.setName("peerServer");
+                peerServer = new Server(peerThreadPool);
                 ServerConnector connector = new ServerConnector(peerServer);
                 final int port = Constants.isTestnet ? TESTNET_PEER_PORT : Peers.myPeerServerPort;
                 connector.setPort(port);
@@ -903,7 +930,7 @@ public final class Peers {
 
     static PeerImpl findOrCreatePeer(final InetAddress inetAddress, final String announcedAddress, final boolean create) {
 
-        if (inetAddress.isAnyLocalAddress() || inetAddress.isLoopbackAddress() || inetAddress.isLinkLocalAddress()) {
+        if (inetAddress.isAnyLocalAddress() || (inetAddress.isLoopbackAddress() && !allowLoopbackPeers) || inetAddress.isLinkLocalAddress()) {
             return null;
         }
 
@@ -993,7 +1020,42 @@ public final class Peers {
     public static void sendToSomePeers(Block block) {
         JSONObject request = block.getJSONObject();
         request.put("requestType", "processBlock");
-        sendToSomePeers(request);
+        JSONObject compactRequest = null;
+        if (compactBlockRelay) {
+            compactRequest = new JSONObject(request);
+            compactRequest.remove("transactions");
+            byte[] key = getCompactBlockKey(block.getBlockSignature());
+            JSONArray shortIds = new JSONArray();
+            block.getTransactions().forEach(transaction ->
+                    shortIds.add(getShortTransactionId(key, Convert.parseHexString(transaction.getFullHash()))));
+            compactRequest.put("shortTransactionIds", shortIds);
+            compactRequest.put("requestType", "processCompactBlock");
+        }
+        sendToSomePeers(request, compactRequest);
+    }
+
+    /**
+     * Return the short transaction identifier key for a compact block
+     *
+     * The key is derived from the block signature, so the short identifiers for a block
+     * cannot be predicted before the block is generated.
+     *
+     * @param   blockSignature          Block signature
+     * @return                          SipHash key
+     */
+    public static byte[] getCompactBlockKey(byte[] blockSignature) {
+        return Arrays.copyOf(Crypto.sha256().digest(blockSignature), 16);
+    }
+
+    /**
+     * Return the short transaction identifier used in a compact block
+     *
+     * @param   key                     Compact block key
+     * @param   fullHash                Transaction full hash
+     * @return                          48-bit short identifier
+     */
+    public static long getShortTransactionId(byte[] key, byte[] fullHash) {
+        return Crypto.sipHash(key, fullHash) & 0xFFFFFFFFFFFFL;
     }
 
     private static final int sendTransactionsBatchSize = 10;
@@ -1014,8 +1076,19 @@ public final class Peers {
     }
 
     private static void sendToSomePeers(final JSONObject request) {
+        sendToSomePeers(request, null);
+    }
+
+    /**
+     * Send a request to some peers
+     *
+     * @param   request                 Request
+     * @param   compactRequest          Request sent to peers accepting compact blocks or null
+     */
+    private static void sendToSomePeers(final JSONObject request, final JSONObject compactRequest) {
         sendingService.submit(() -> {
             final JSONStreamAware jsonRequest = JSON.prepareRequest(request);
+            final JSONStreamAware jsonCompactRequest = compactRequest != null ? JSON.prepareRequest(compactRequest) : null;
 
             int successful = 0;
             List<Future<JSONObject>> expectedResponses = new ArrayList<>();
@@ -1027,7 +1100,9 @@ public final class Peers {
 
                 if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED && peer.getAnnouncedAddress() != null
                         && peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT) {
-                    Future<JSONObject> futureResponse = peersService.submit(() -> peer.send(jsonRequest));
+                    final JSONStreamAware peerRequest = jsonCompactRequest != null && peer.providesService(Peer.Service.COMPACT_BLOCKS)
+                            ? jsonCompactRequest : jsonRequest;
+                    Future<JSONObject> futureResponse = peersService.submit(() -> peer.send(peerRequest));
                     expectedResponses.add(futureResponse);
                 }
                 if (expectedResponses.size() >= Peers.sendToPeersLimit - successful) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.peer;
+
+import spa.Block;
+import spa.Spa;
+import spa.SpaException;
+import spa.util.Convert;
+import spa.util.JSON;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * Process a compact block containing the block header and the short transaction identifiers
+ *
+ * The peer is only blacklisted if the compact block is malformed or the full block
+ * requested when the compact block cannot be rebuilt is not valid.
+ */
+final class ProcessCompactBlock extends PeerServlet.PeerRequestHandler {
+
+    static final ProcessCompactBlock instance = new ProcessCompactBlock();
+
+    private ProcessCompactBlock() {}
+
+    @Override
+    JSONStreamAware processRequest(final JSONObject request, final Peer peer) {
+        String previousBlockId = (String)request.get("previousBlock");
+        Block lastBlock = Spa.getBlockchain().getLastBlock();
+        if (peer != null && (lastBlock.getStringId().equals(previousBlockId) ||
+                (Convert.parseUnsignedLong(previousBlockId) == lastBlock.getPreviousBlockId()
+                        && lastBlock.getTimestamp() > Convert.parseLong(request.get("timestamp"))))) {
+            Peers.peersService.submit(() -> {
+                try {
+                    Spa.getBlockchainProcessor().processPeerCompactBlock(request, peer);
+                } catch (SpaException | RuntimeException e) {
+                    peer.blacklist(e);
+                }
+            });
+        }
+        return JSON.emptyJSON;
+    }
+
+    @Override
+    boolean rejectWhileDownloading() {
+        return true;
+    }
+
+}
@@ -0,0 +1,773 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.tools;
+
+import spa.Attachment;
+import spa.Block;
+import spa.Constants;
+import spa.Generator;
+import spa.Spa;
+import spa.SpaException;
+import spa.Transaction;
+import spa.crypto.Crypto;
+import spa.util.Convert;
+import spa.util.Logger;
+import org.json.simple.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Synthetic transaction load generator
+ *
+ * The load generator funds a set of test accounts from the account of the supplied secret
+ * phrase, pre-signs ordinary payments between the test accounts and then submits them as
+ * fast as possible (or at a fixed rate) either to the broadcastTransaction API of a running
+ * node or directly to the transaction processor of an in-process offline testnet node.
+ * It reports the accepted transaction rate, the unconfirmed pool size, the block fill ratio
+ * and the latency from submission to confirmation.
+ *
+ * The test account secret phrases are derived from the funding secret phrase, so repeated runs
+ * use the same test accounts.  The funding secret phrase is read from the console.
+ *
+ * Only testnet nodes are accepted, since the funding account is spent from.
+ *
+ * To benchmark a running testnet node:
+ *
+ *   java -cp "classes:lib/*:conf" spa.tools.LoadGenerator --url=http://localhost:7876
+ *
+ * To benchmark an in-process offline testnet node forging with the funding account:
+ *
+ *   java -cp "classes:lib/*:conf" spa.tools.LoadGenerator --local --timeMultiplier=10
+ *
+ * The in-process node uses its own database in the load generator directory.  A database
+ * which was not created by the load generator is never opened.
+ *
+ * Options:
+ *
+ *   --url=url                  Node base URL
+ *   --local                    Run an in-process offline testnet node
+ *   --timeMultiplier=n         Time multiplier for the in-process node (default 10)
+ *   --dir=path                 Directory for the in-process node database (default loadgen)
+ *   --accounts=n               Number of test accounts (default 100)
+ *   --transactions=n           Number of payments to submit (default 10000)
+ *   --rate=n                   Submission rate in transactions per second (default 0, unlimited)
+ *   --threads=n                Number of submission threads (default 4)
+ *   --wait=n                   Seconds to wait for confirmations (default 600)
+ */
+public final class LoadGenerator {
+
+    /** Transaction deadline in minutes */
+    private static final short DEADLINE = 1440;
+
+    /** Transaction fee */
+    private static final long FEE = Constants.ONE_SPA;
+
+    /** Monitor poll interval in milliseconds */
+    private static final int POLL_INTERVAL = 250;
+
+    /** Marker file identifying a load generator directory */
+    private static final String MARKER_FILE = "loadgen.marker";
+
+    /**
+     * Run the load generator
+     *
+     * @param   args                    Command line arguments
+     */
+    public static void main(String[] args) {
+        int exitCode = 0;
+        try {
+            Options options = new Options(args);
+            if (!options.local) {
+                Logger.setLevel(Logger.Level.ERROR);
+            }
+            String secretPhrase;
+            Console console = System.console();
+            if (console == null) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+                    secretPhrase = reader.readLine();
+                }
+            } else {
+                secretPhrase = new String(console.readPassword("Funding secret phrase: "));
+            }
+            if (secretPhrase == null || secretPhrase.isEmpty()) {
+                throw new IllegalArgumentException("Funding secret phrase not specified");
+            }
+            Target target = options.local ? new LocalTarget(secretPhrase, options.timeMultiplier, options.dir) : new ApiTarget(options.url);
+            new LoadGenerator(options, target, secretPhrase).run();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: LoadGenerator --url=<node url> | --local [--timeMultiplier=n] [--dir=path] " +
+                    "[--accounts=n] [--transactions=n] [--rate=n] [--threads=n] [--wait=n]");
+            exitCode = 1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    /** Options */
+    private final Options options;
+
+    /** Load target */
+    private final Target target;
+
+    /** Funding secret phrase */
+    private final String secretPhrase;
+
+    /** Block monitor */
+    private final Monitor monitor;
+
+    /**
+     * Create the load generator
+     *
+     * @param   options                 Options
+     * @param   target                  Load target
+     * @param   secretPhrase            Funding secret phrase
+     */
+    private LoadGenerator(Options options, Target target, String secretPhrase) {
+        this.options = options;
+        this.target = target;
+        this.secretPhrase = secretPhrase;
+        this.monitor = new Monitor(target);
+    }
+
+    /**
+     * Fund the test accounts, submit the payments and report the results
+     *
+     * @throws  Exception               Load generation failed
+     */
+    private void run() throws Exception {
+        int accountCount = options.accounts;
+        int rounds = (options.transactions + accountCount - 1) / accountCount;
+        String[] phrases = new String[accountCount];
+        byte[][] publicKeys = new byte[accountCount][];
+        long[] accountIds = new long[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            phrases[i] = secretPhrase + "-load-" + i;
+            publicKeys[i] = Crypto.getPublicKey(phrases[i]);
+            accountIds[i] = Convert.fullHashToId(Crypto.sha256().digest(publicKeys[i]));
+        }
+        Thread monitorThread = new Thread(monitor, "LoadGenerator monitor");
+        monitorThread.setDaemon(true);
+        monitorThread.start();
+        //
+        // Fund the test accounts.  Each round sends one payment from each test account and
+        // the payment amount includes the round number so that the transactions are unique.
+        //
+        long fundingAmount = (rounds * (Constants.ONE_SPA + rounds + FEE) / Constants.ONE_SPA + 1) * Constants.ONE_SPA;
+        byte[] fundingPublicKey = Crypto.getPublicKey(secretPhrase);
+        System.out.printf("Funding %d test accounts with %d SPA each%n", accountCount, fundingAmount / Constants.ONE_SPA);
+        List<Transaction> fundingTransactions = new ArrayList<>(accountCount);
+        int timestamp = target.getTime();
+        for (int i = 0; i < accountCount; i++) {
+            fundingTransactions.add(newPayment(fundingPublicKey, secretPhrase, accountIds[i], fundingAmount, timestamp));
+        }
+        monitor.reset();
+        for (Transaction transaction : fundingTransactions) {
+            monitor.submitted(transaction.getId());
+            target.submit(transaction);
+        }
+        if (!monitor.awaitConfirmations(options.wait)) {
+            throw new IllegalStateException("Funding transactions were not confirmed");
+        }
+        //
+        // Pre-sign the payments
+        //
+        System.out.printf("Signing %d payments%n", options.transactions);
+        long signStart = System.nanoTime();
+        int signTimestamp = target.getTime();
+        Transaction[] transactions = new Transaction[options.transactions];
+        IntStream.range(0, options.transactions).parallel().forEach(i -> {
+            int sender = i % accountCount;
+            int recipient = (i + 1) % accountCount;
+            transactions[i] = newPayment(publicKeys[sender], phrases[sender], accountIds[recipient],
+                    Constants.ONE_SPA + i / accountCount, signTimestamp);
+        });
+        long signTime = System.nanoTime() - signStart;
+        System.out.printf("Signed %d payments in %d ms (%.1f per second)%n", transactions.length,
+                TimeUnit.NANOSECONDS.toMillis(signTime), transactions.length * 1e9 / signTime);
+        //
+        // Submit the payments
+        //
+        System.out.printf("Submitting %d payments using %d threads%n", transactions.length, options.threads);
+        monitor.reset();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long submitStart = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+        for (int t = 0; t < options.threads; t++) {
+            executor.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < transactions.length) {
+                    if (options.rate > 0) {
+                        long delay = submitStart + i * 1000000000L / options.rate - System.nanoTime();
+                        if (delay > 0) {
+                            try {
+                                TimeUnit.NANOSECONDS.sleep(delay);
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                    }
+                    Transaction transaction = transactions[i];
+                    monitor.submitted(transaction.getId());
+                    try {
+                        target.submit(transaction);
+                    } catch (Exception e) {
+                        monitor.rejected(transaction.getId());
+                        if (rejected.incrementAndGet() <= 10) {
+                            System.out.println("Transaction " + transaction.getStringId() + " rejected: " + e.getMessage());
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        long submitTime = System.nanoTime() - submitStart;
+        int accepted = transactions.length - rejected.get();
+        System.out.printf("Submitted %d payments in %d ms, %d accepted, %d rejected%n", transactions.length,
+                TimeUnit.NANOSECONDS.toMillis(submitTime), accepted, rejected.get());
+        boolean confirmed = monitor.awaitConfirmations(options.wait);
+        monitor.stop();
+        monitorThread.join(5000);
+        //
+        // Report the results
+        //
+        List<Long> latencies = monitor.getLatencies();
+        Collections.sort(latencies);
+        long confirmTime = monitor.getLastConfirmationTime() - submitStart;
+        System.out.println();
+        System.out.printf("Accepted TPS:          %.1f%n", accepted * 1e9 / submitTime);
+        System.out.printf("Confirmed TPS:         %.1f%n", latencies.isEmpty() ? 0.0 : latencies.size() * 1e9 / confirmTime);
+        System.out.printf("Confirmed:             %d of %d%s%n", latencies.size(), accepted, confirmed ? "" : " (timed out)");
+        System.out.printf("Maximum pool size:     %d%n", monitor.getMaxPoolSize());
+        System.out.printf("Blocks:                %d%n", monitor.getBlockCount());
+        System.out.printf("Block fill ratio:      %.1f%% average, %.1f%% maximum%n",
+                monitor.getBlockCount() == 0 ? 0.0 : 100.0 * monitor.getBlockTransactionCount() / monitor.getBlockCount() / Constants.MAX_NUMBER_OF_TRANSACTIONS,
+                100.0 * monitor.getMaxBlockTransactionCount() / Constants.MAX_NUMBER_OF_TRANSACTIONS);
+        System.out.printf("Confirmation latency:  p50 %d ms, p90 %d ms, p99 %d ms, max %d ms%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 100));
+        target.shutdown();
+    }
+
+    /**
+     * Create a signed ordinary payment
+     *
+     * @param   senderPublicKey         Sender public key
+     * @param   senderPhrase            Sender secret phrase
+     * @param   recipientId             Recipient identifier
+     * @param   amount                  Payment amount
+     * @param   timestamp               Transaction timestamp
+     * @return                          Signed transaction
+     */
+    private Transaction newPayment(byte[] senderPublicKey, String senderPhrase, long recipientId, long amount, int timestamp) {
+        try {
+            Transaction.Builder builder = Spa.newTransactionBuilder(senderPublicKey, amount, FEE, DEADLINE, Attachment.ORDINARY_PAYMENT)
+                    .recipientId(recipientId)
+                    .timestamp(timestamp);
+            target.setECBlock(builder, timestamp);
+            return builder.build(senderPhrase);
+        } catch (SpaException.NotValidException | IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Return a percentile of the sorted latencies
+     *
+     * @param   latencies               Sorted latencies in milliseconds
+     * @param   percentile              Percentile
+     * @return                          Latency in milliseconds
+     */
+    private static long percentile(List<Long> latencies, int percentile) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        int index = (int)Math.ceil(percentile / 100.0 * latencies.size()) - 1;
+        return latencies.get(Math.max(0, Math.min(index, latencies.size() - 1)));
+    }
+
+    /**
+     * Command line options
+     */
+    private static final class Options {
+
+        /** Node URL */
+        private String url;
+
+        /** Run an in-process node */
+        private boolean local;
+
+        /** In-process node time multiplier */
+        private int timeMultiplier = 10;
+
+        /** In-process node directory */
+        private Path dir = Paths.get("loadgen");
+
+        /** Number of test accounts */
+        private int accounts = 100;
+
+        /** Number of transactions */
+        private int transactions = 10000;
+
+        /** Submission rate */
+        private int rate;
+
+        /** Number of submission threads */
+        private int threads = 4;
+
+        /** Confirmation wait in seconds */
+        private int wait = 600;
+
+        /**
+         * Parse the command line options
+         *
+         * @param   args                Command line arguments
+         * @throws  IllegalArgumentException  Options are not valid
+         */
+        private Options(String[] args) {
+            for (String arg : args) {
+                int pos = arg.indexOf('=');
+                String name = pos < 0 ? arg : arg.substring(0, pos);
+                String value = pos < 0 ? null : arg.substring(pos + 1);
+                try {
+                    switch (name) {
+                        case "--url":
+                            url = value;
+                            break;
+                        case "--local":
+                            local = true;
+                            break;
+                        case "--timeMultiplier":
+                            timeMultiplier = Integer.parseInt(value);
+                            break;
+                        case "--dir":
+                            dir = Paths.get(value);
+                            break;
+                        case "--accounts":
+                            accounts = Integer.parseInt(value);
+                            break;
+                        case "--transactions":
+                            transactions = Integer.parseInt(value);
+                            break;
+                        case "--rate":
+                            rate = Integer.parseInt(value);
+                            break;
+                        case "--threads":
+                            threads = Integer.parseInt(value);
+                            break;
+                        case "--wait":
+                            wait = Integer.parseInt(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unrecognized option " + arg);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Option " + name + " value is not valid");
+                }
+            }
+            if (local == (url != null)) {
+                throw new IllegalArgumentException("Either --url or --local must be specified");
+            }
+            if (accounts < 2 || transactions < 1 || rate < 0 || threads < 1 || wait < 0 ||
+                    timeMultiplier < 1 || timeMultiplier > 1000) {
+                throw new IllegalArgumentException("Option value is out of range");
+            }
+        }
+    }
+
+    /**
+     * Monitor new blocks and record the confirmation latency of the submitted transactions
+     */
+    private static final class Monitor implements Runnable {
+
+        /** Load target */
+        private final Target target;
+
+        /** Submission time of each unconfirmed transaction */
+        private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+        /** Confirmation latencies in milliseconds */
+        private final List<Long> latencies = new ArrayList<>();
+
+        /** Last height processed */
+        private int height = -1;
+
+        /** Number of blocks since the last reset */
+        private int blockCount;
+
+        /** Number of block transactions since the last reset */
+        private long blockTransactionCount;
+
+        /** Maximum number of transactions in a block */
+        private int maxBlockTransactionCount;
+
+        /** Maximum unconfirmed pool size */
+        private int maxPoolSize;
+
+        /** Time of the last confirmation */
+        private long lastConfirmationTime;
+
+        /** Monitor stopped */
+        private volatile boolean stopped;
+
+        /**
+         * Create the monitor
+         *
+         * @param   target              Load target
+         */
+        private Monitor(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * Poll the target for new blocks
+         */
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    Target.Status status = target.getStatus();
+                    synchronized (this) {
+                        maxPoolSize = Math.max(maxPoolSize, status.poolSize);
+                        if (height < 0) {
+                            height = status.height;
+                        }
+                    }
+                    while (height < status.height) {
+                        List<Long> ids = target.getBlockTransactionIds(height + 1);
+                        long now = System.nanoTime();
+                        synchronized (this) {
+                            height++;
+                            blockCount++;
+                            blockTransactionCount += ids.size();
+                            maxBlockTransactionCount = Math.max(maxBlockTransactionCount, ids.size());
+                            for (Long id : ids) {
+                                Long submitTime = pending.remove(id);
+                                if (submitTime != null) {
+                                    latencies.add(TimeUnit.NANOSECONDS.toMillis(now - submitTime));
+                                    lastConfirmationTime = now;
+                                }
+                            }
+                            notifyAll();
+                        }
+                    }
+                    Thread.sleep(POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Exception e) {
+                    System.out.println("Unable to poll the node: " + e.getMessage());
+                    try {
+                        Thread.sleep(POLL_INTERVAL * 4);
+                    } catch (InterruptedException exc) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reset the statistics
+         */
+        private synchronized void reset() {
+            pending.clear();
+            latencies.clear();
+            blockCount = 0;
+            blockTransactionCount = 0;
+            maxBlockTransactionCount = 0;
+            maxPoolSize = 0;
+            lastConfirmationTime = 0;
+        }
+
+        /**
+         * Stop the monitor
+         */
+        private void stop() {
+            stopped = true;
+        }
+
+        /**
+         * Record a transaction submission
+         *
+         * @param   transactionId       Transaction identifier
+         */
+        private void submitted(long transactionId) {
+            pending.put(transactionId, System.nanoTime());
+        }
+
+        /**
+         * Record a transaction rejection
+         *
+         * @param   transactionId       Transaction identifier
+         */
+        private void rejected(long transactionId) {
+            pending.remove(transactionId);
+        }
+
+        /**
+         * Wait until all submitted transactions are confirmed
+         *
+         * @param   seconds             Maximum wait in seconds
+         * @return                      TRUE if all transactions are confirmed
+         * @throws  InterruptedException  Wait interrupted
+         */
+        private synchronized boolean awaitConfirmations(int seconds) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + seconds * 1000L;
+            long now;
+            while (!pending.isEmpty() && (now = System.currentTimeMillis()) < deadline) {
+                wait(deadline - now);
+            }
+            return pending.isEmpty();
+        }
+
+        private synchronized List<Long> getLatencies() {
+            return new ArrayList<>(latencies);
+        }
+
+        private synchronized long getLastConfirmationTime() {
+            return lastConfirmationTime;
+        }
+
+        private synchronized int getBlockCount() {
+            return blockCount;
+        }
+
+        private synchronized long getBlockTransactionCount() {
+            return blockTransactionCount;
+        }
+
+        private synchronized int getMaxBlockTransactionCount() {
+            return maxBlockTransactionCount;
+        }
+
+        private synchronized int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+    }
+
+    /**
+     * Load target
+     */
+    private interface Target {
+
+        /**
+         * Node status
+         */
+        final class Status {
+
+            /** Blockchain height */
+            private final int height;
+
+            /** Number of unconfirmed transactions */
+            private final int poolSize;
+
+            private Status(int height, int poolSize) {
+                this.height = height;
+                this.poolSize = poolSize;
+            }
+        }
+
+        /**
+         * Return the node epoch time
+         *
+         * @return                      Epoch time
+         * @throws  IOException         Unable to contact the node
+         */
+        int getTime() throws IOException;
+
+        /**
+         * Set the economic clustering block for a transaction
+         *
+         * @param   builder             Transaction builder
+         * @param   timestamp           Transaction timestamp
+         * @throws  IOException         Unable to contact the node
+         */
+        void setECBlock(Transaction.Builder builder, int timestamp) throws IOException;
+
+        /**
+         * Submit a transaction
+         *
+         * @param   transaction         Signed transaction
+         * @throws  Exception           Transaction was not accepted
+         */
+        void submit(Transaction transaction) throws Exception;
+
+        /**
+         * Return the node status
+         *
+         * @return                      Node status
+         * @throws  IOException         Unable to contact the node
+         */
+        Status getStatus() throws IOException;
+
+        /**
+         * Return the transaction identifiers for a block
+         *
+         * @param   height              Block height
+         * @return                      Transaction identifiers
+         * @throws  IOException         Unable to contact the node
+         */
+        List<Long> getBlockTransactionIds(int height) throws IOException;
+
+        /**
+         * Stop the target
+         */
+        void shutdown();
+    }
+
+    /**
+     * Node accessed through the HTTP API
+     *
+     * The node must be running on the testnet.
+     */
+    private static final class ApiTarget implements Target {
+
+        /** Node client */
+        private final NodeClient client;
+
+        /** Cached EC block (timestamp, height, identifier) */
+        private volatile long[] ecBlock;
+
+        private ApiTarget(String url) throws IOException {
+            this.client = new NodeClient(url);
+            if (!Boolean.TRUE.equals(client.call("getBlockchainStatus").get("isTestnet"))) {
+                throw new IllegalArgumentException(url + " is not a testnet node");
+            }
+        }
+
+        @Override
+        public int getTime() throws IOException {
+            return ((Long)client.call("getBlockchainStatus").get("time")).intValue();
+        }
+
+        @Override
+        public void setECBlock(Transaction.Builder builder, int timestamp) throws IOException {
+            long[] cached = ecBlock;
+            if (cached == null || cached[0] != timestamp) {
+                JSONObject response = client.call("getECBlock", "timestamp", Integer.toString(timestamp));
+                cached = new long[] {timestamp, (Long)response.get("ecBlockHeight"),
+                        Convert.parseUnsignedLong((String)response.get("ecBlockId"))};
+                ecBlock = cached;
+            }
+            builder.ecBlockHeight((int)cached[1]).ecBlockId(cached[2]);
+        }
+
+        @Override
+        public void submit(Transaction transaction) throws IOException {
+            client.call("broadcastTransaction", "transactionBytes", Convert.toHexString(transaction.getBytes()));
+        }
+
+        @Override
+        public Status getStatus() throws IOException {
+            JSONObject response = client.call("getBlockchainStatus");
+            Long poolSize = (Long)response.get("numberOfUnconfirmedTransactions");
+            return new Status(((Long)response.get("numberOfBlocks")).intValue() - 1, poolSize != null ? poolSize.intValue() : 0);
+        }
+
+        @Override
+        public List<Long> getBlockTransactionIds(int height) throws IOException {
+            List<?> transactions = (List<?>)client.call("getBlock", "height", Integer.toString(height)).get("transactions");
+            List<Long> ids = new ArrayList<>(transactions.size());
+            transactions.forEach(id -> ids.add(Convert.parseUnsignedLong((String)id)));
+            return ids;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * In-process offline testnet node
+     *
+     * The node forges with the funding account and time runs faster by the time multiplier.
+     */
+    private static final class LocalTarget implements Target {
+
+        private LocalTarget(String secretPhrase, int timeMultiplier, Path dir) throws IOException {
+            Path dbDir = dir.resolve("spa_db").toAbsolutePath();
+            Path marker = dir.resolve(MARKER_FILE);
+            if (Files.exists(dbDir) && !Files.exists(marker)) {
+                throw new IllegalArgumentException(dbDir + " contains a database that was not created by the load generator");
+            }
+            Files.createDirectories(dbDir);
+            if (!Files.exists(marker)) {
+                Files.createFile(marker);
+            }
+            Properties properties = new Properties();
+            properties.setProperty("spa.dbDir", dbDir.resolve("spa").toString());
+            properties.setProperty("spa.isTestnet", "true");
+            properties.setProperty("spa.isOffline", "true");
+            properties.setProperty("spa.timeMultiplier", Integer.toString(timeMultiplier));
+            Spa.init(properties);
+            Generator.startForging(secretPhrase);
+        }
+
+        @Override
+        public int getTime() {
+            return Spa.getEpochTime();
+        }
+
+        @Override
+        public void setECBlock(Transaction.Builder builder, int timestamp) {
+            Block ecBlock = Spa.getBlockchain().getECBlock(timestamp);
+            builder.ecBlockHeight(ecBlock.getHeight()).ecBlockId(ecBlock.getId());
+        }
+
+        @Override
+        public void submit(Transaction transaction) throws SpaException.ValidationException {
+            Spa.getTransactionProcessor().broadcast(transaction);
+        }
+
+        @Override
+        public Status getStatus() {
+            return new Status(Spa.getBlockchain().getHeight(), Spa.getTransactionProcessor().getUnconfirmedTransactionCount());
+        }
+
+        @Override
+        public List<Long> getBlockTransactionIds(int height) {
+            List<Long> ids = new ArrayList<>();
+            Spa.getBlockchain().getBlockAtHeight(height).getTransactions().forEach(transaction -> ids.add(transaction.getId()));
+            return ids;
+        }
+
+        @Override
+        public void shutdown() {
+            Spa.shutdown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.tools;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal HTTP client for the node API used by the benchmark tools
+ */
+final class NodeClient {
+
+    /** API URL */
+    private final URL url;
+
+    /**
+     * Create the client
+     *
+     * @param   baseUrl                 Node base URL (http://host:port)
+     * @throws  IOException             Base URL is not valid
+     */
+    NodeClient(String baseUrl) throws IOException {
+        this.url = new URL(baseUrl.endsWith("/") ? baseUrl + "spa" : baseUrl + "/spa");
+    }
+
+    /**
+     * Return the API URL
+     *
+     * @return                          API URL
+     */
+    URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Issue an API request
+     *
+     * @param   requestType             Request type
+     * @param   params                  Parameter name and value pairs
+     * @return                          Response
+     * @throws  IOException             I/O error occurred or the request failed
+     */
+    JSONObject call(String requestType, String... params) throws IOException {
+        StringBuilder sb = new StringBuilder("requestType=").append(requestType);
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            if (params[i + 1] != null) {
+                sb.append('&').append(params[i]).append('=').append(URLEncoder.encode(params[i + 1], "UTF-8"));
+            }
+        }
+        byte[] requestBytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(60000);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(requestBytes);
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException(requestType + " failed with HTTP status " + connection.getResponseCode());
+            }
+            JSONObject response;
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                response = (JSONObject)JSONValue.parseWithException(reader);
+            } catch (ParseException | ClassCastException e) {
+                throw new IOException(requestType + " returned an invalid response", e);
+            }
+            if (response.get("errorCode") != null) {
+                throw new IOException(requestType + " failed: " + response.get("errorDescription"));
+            }
+            return response;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.tools;
+
+import spa.ReplayStatistics;
+import spa.Spa;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block replay benchmark
+ *
+ * The benchmark starts the node offline on an existing database and measures the time needed
+ * to push blocks, broken down by block push stage.  Each run either pops off the last blocks and
+ * pushes them again or, when a chain archive is specified, pushes the archive blocks following
+ * the last block and then pops them off again, so that every run replays the same blocks.
+ * The blocks are loaded into memory before each run, so the results measure the block
+ * processing only.
+ *
+ * If a replayed block is not accepted, the benchmark stops and the blockchain is left below
+ * its starting height.  The missing blocks are downloaded again when the node is next started.
+ *
+ * The node must not be running.  To replay the last 500 blocks five times:
+ *
+ *   java -cp "classes:lib/*:conf" spa.tools.ReplayBenchmark --blocks=500 --runs=5
+ *
+ * Options:
+ *
+ *   --blocks=n                 Number of blocks to replay (default 100).  This is limited by
+ *                              the maximum rollback.
+ *   --runs=n                   Number of runs (default 3).  The first run warms up the JVM and
+ *                              is reported but not included in the average.
+ *   --archive=file             Chain archive created by the exportChain API
+ */
+public final class ReplayBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param   args                    Command line arguments
+     */
+    public static void main(String[] args) {
+        int blocks = 100;
+        int runs = 3;
+        Path archive = null;
+        try {
+            for (String arg : args) {
+                int pos = arg.indexOf('=');
+                String name = pos < 0 ? arg : arg.substring(0, pos);
+                String value = pos < 0 ? "" : arg.substring(pos + 1);
+                switch (name) {
+                    case "--blocks":
+                        blocks = Integer.parseInt(value);
+                        break;
+                    case "--runs":
+                        runs = Integer.parseInt(value);
+                        break;
+                    case "--archive":
+                        archive = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unrecognized option " + arg);
+                }
+            }
+            if (blocks < 1 || runs < 1) {
+                throw new IllegalArgumentException("Option value is out of range");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: ReplayBenchmark [--blocks=n] [--runs=n] [--archive=file]");
+            System.exit(1);
+        }
+        int exitCode = 0;
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("spa.isOffline", "true");
+            properties.setProperty("spa.launchDesktopApplication", "false");
+            Spa.init(properties);
+            List<ReplayStatistics> results = new ArrayList<>();
+            for (int run = 1; run <= runs; run++) {
+                ReplayStatistics statistics;
+                if (archive != null) {
+                    int height = Spa.getBlockchain().getHeight();
+                    statistics = Spa.getBlockchainProcessor().replayArchive(archive, blocks);
+                    Spa.getBlockchainProcessor().popOffTo(height);
+                } else {
+                    statistics = Spa.getBlockchainProcessor().replayBlocks(blocks);
+                }
+                results.add(statistics);
+                print("Run " + run, Collections.singletonList(statistics), statistics.getBlockCount());
+            }
+            if (results.size() > 1) {
+                ReplayStatistics first = results.remove(0);
+                System.out.println();
+                print("Average", results, first.getBlockCount());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            Spa.shutdown();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Print the average statistics
+     *
+     * @param   label                   Label
+     * @param   results                 Replay statistics for each run
+     * @param   blockCount              Number of blocks per run
+     */
+    private static void print(String label, List<ReplayStatistics> results, int blockCount) {
+        long elapsed = 0;
+        long transactionCount = 0;
+        for (ReplayStatistics statistics : results) {
+            elapsed += statistics.getElapsedTime();
+            transactionCount += statistics.getTransactionCount();
+        }
+        int runs = results.size();
+        System.out.printf("%s: %d blocks, %d transactions, %d ms, %.1f blocks/s, %.1f transactions/s%n",
+                label, blockCount, transactionCount / runs, TimeUnit.NANOSECONDS.toMillis(elapsed / runs),
+                blockCount * runs * 1e9 / elapsed, transactionCount * 1e9 / elapsed);
+        for (ReplayStatistics.Stage stage : ReplayStatistics.Stage.values()) {
+            long stageTime = 0;
+            for (ReplayStatistics statistics : results) {
+                stageTime += statistics.getStageTime(stage);
+            }
+            System.out.printf("  %-14s %10.3f ms %6.1f%% %10.1f us/block%n", stage.name().toLowerCase(),
+                    stageTime / runs / 1e6, elapsed == 0 ? 0.0 : 100.0 * stageTime / elapsed,
+                    blockCount == 0 ? 0.0 : stageTime / runs / 1e3 / blockCount);
+        }
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.tools;
+
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback testnet harness
+ *
+ * The harness launches a number of testnet nodes on the local host, each in its own JVM with
+ * its own database directory, API port and clock.  Node n listens for peers on loopback address
+ * 127.0.0.(n+2) and knows only the other harness nodes as peers.  The harness starts forging
+ * on the nodes, optionally runs the LoadGenerator against the first node and measures:
+ *
+ *   - block propagation latency: the delay between a block becoming the last block on the
+ *     first node and on each of the other nodes (sampled every 100 ms)
+ *   - fork rate: the fraction of the blocks seen on any node that are not in the final chain
+ *     of the first node
+ *   - sync throughput: the blocks per second downloaded by nodes started after the forging phase
+ *
+ * Each node runs in a separate process because the node state is held in static singletons.
+ * The loopback addresses other than 127.0.0.1 must be routable, which is the default on Linux.
+ * The harness must be run from the installation directory:
+ *
+ *   java -cp "classes:lib/*:conf" spa.tools.TestnetHarness --forgers=forgers.txt --nodes=4
+ *
+ * Options:
+ *
+ *   --nodes=n                  Number of nodes (default 3)
+ *   --lateNodes=n              Number of nodes started after the forging phase (default 0)
+ *   --dir=path                 Harness directory (default harness)
+ *   --apiPort=n                API port of the first node (default 7900)
+ *   --forgers=file             File containing one forging secret phrase per line.  The phrases
+ *                              are assigned to the nodes started at the beginning in turn.
+ *   --duration=n               Forging phase duration in seconds (default 600)
+ *   --transactions=n           Number of payments submitted by the LoadGenerator during the forging
+ *                              phase (default 0).  The first forging account funds the load.
+ *   --set=name=value           Node property, may be repeated
+ */
+public final class TestnetHarness {
+
+    /** Status poll interval in milliseconds */
+    private static final int POLL_INTERVAL = 100;
+
+    /** Node startup timeout in seconds */
+    private static final int STARTUP_TIMEOUT = 300;
+
+    /**
+     * Run the harness
+     *
+     * @param   args                    Command line arguments
+     */
+    public static void main(String[] args) {
+        int exitCode = 0;
+        TestnetHarness harness = null;
+        try {
+            harness = new TestnetHarness(args);
+            harness.run();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: TestnetHarness --forgers=<file> [--nodes=n] [--lateNodes=n] [--dir=path] " +
+                    "[--apiPort=n] [--duration=n] [--transactions=n] [--set=name=value]...");
+            exitCode = 1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            if (harness != null) {
+                harness.stopNodes();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    /** Number of nodes */
+    private int nodeCount = 3;
+
+    /** Number of late nodes */
+    private int lateNodeCount;
+
+    /** Harness directory */
+    private Path harnessDir = Paths.get("harness");
+
+    /** First API port */
+    private int apiPort = 7900;
+
+    /** Forging secret phrases */
+    private List<String> forgers;
+
+    /** Forging phase duration in seconds */
+    private int duration = 600;
+
+    /** Number of load transactions */
+    private int transactions;
+
+    /** Additional node properties */
+    private final Map<String, String> nodeProperties = new LinkedHashMap<>();
+
+    /** Nodes */
+    private final List<Node> nodes = new ArrayList<>();
+
+    /** LoadGenerator process */
+    private Process loadProcess;
+
+    /**
+     * Parse the command line options
+     *
+     * @param   args                    Command line arguments
+     * @throws  IOException             Unable to read the forgers file
+     * @throws  IllegalArgumentException  Options are not valid
+     */
+    private TestnetHarness(String[] args) throws IOException {
+        for (String arg : args) {
+            int pos = arg.indexOf('=');
+            String name = pos < 0 ? arg : arg.substring(0, pos);
+            String value = pos < 0 ? "" : arg.substring(pos + 1);
+            try {
+                switch (name) {
+                    case "--nodes":
+                        nodeCount = Integer.parseInt(value);
+                        break;
+                    case "--lateNodes":
+                        lateNodeCount = Integer.parseInt(value);
+                        break;
+                    case "--dir":
+                        harnessDir = Paths.get(value);
+                        break;
+                    case "--apiPort":
+                        apiPort = Integer.parseInt(value);
+                        break;
+                    case "--forgers":
+                        forgers = new ArrayList<>();
+                        for (String line : Files.readAllLines(Paths.get(value), StandardCharsets.UTF_8)) {
+                            if (!line.trim().isEmpty()) {
+                                forgers.add(line.trim());
+                            }
+                        }
+                        break;
+                    case "--duration":
+                        duration = Integer.parseInt(value);
+                        break;
+                    case "--transactions":
+                        transactions = Integer.parseInt(value);
+                        break;
+                    case "--set":
+                        int sep = value.indexOf('=');
+                        if (sep <= 0) {
+                            throw new IllegalArgumentException("Option --set value must be name=value");
+                        }
+                        nodeProperties.put(value.substring(0, sep), value.substring(sep + 1));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unrecognized option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Option " + name + " value is not valid");
+            }
+        }
+        if (forgers == null || forgers.isEmpty()) {
+            throw new IllegalArgumentException("No forging secret phrases specified");
+        }
+        if (nodeCount < 2 || nodeCount > 250 || lateNodeCount < 0 || lateNodeCount >= nodeCount ||
+                duration < 1 || transactions < 0 || apiPort < 1 || apiPort + nodeCount > 65535) {
+            throw new IllegalArgumentException("Option value is out of range");
+        }
+    }
+
+    /**
+     * Run the harness
+     *
+     * @throws  Exception               Harness failed
+     */
+    private void run() throws Exception {
+        Files.createDirectories(harnessDir);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new Node(i));
+        }
+        //
+        // Start the initial nodes and assign the forgers
+        //
+        int initialCount = nodeCount - lateNodeCount;
+        for (int i = 0; i < initialCount; i++) {
+            nodes.get(i).start();
+        }
+        for (int i = 0; i < initialCount; i++) {
+            nodes.get(i).awaitStarted();
+        }
+        for (int i = 0; i < forgers.size(); i++) {
+            Node node = nodes.get(i % initialCount);
+            node.client.call("startForging", "secretPhrase", forgers.get(i));
+            System.out.printf("Node %d forging with account %d%n", node.index, i);
+        }
+        //
+        // Run the forging phase
+        //
+        if (transactions > 0) {
+            startLoad();
+        }
+        System.out.printf("Forging for %d seconds%n", duration);
+        Map<String, long[]> blocks = new LinkedHashMap<>();
+        String[] lastBlocks = new String[initialCount];
+        long end = System.currentTimeMillis() + duration * 1000L;
+        while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < initialCount; i++) {
+                Node node = nodes.get(i);
+                try {
+                    String blockId = (String)node.client.call("getBlockchainStatus").get("lastBlock");
+                    long now = System.nanoTime();
+                    if (blockId != null && !blockId.equals(lastBlocks[i])) {
+                        lastBlocks[i] = blockId;
+                        long[] seen = blocks.computeIfAbsent(blockId, id -> new long[initialCount]);
+                        seen[i] = now;
+                    }
+                } catch (IOException e) {
+                    System.out.printf("Node %d: %s%n", node.index, e.getMessage());
+                }
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        if (loadProcess != null) {
+            loadProcess.waitFor(5, TimeUnit.MINUTES);
+        }
+        //
+        // Compute the propagation latency and fork rate
+        //
+        List<Long> latencies = new ArrayList<>();
+        List<Long> fullLatencies = new ArrayList<>();
+        int orphaned = 0;
+        Node first = nodes.get(0);
+        for (Map.Entry<String, long[]> entry : blocks.entrySet()) {
+            long[] seen = entry.getValue();
+            try {
+                first.client.call("getBlock", "block", entry.getKey());
+            } catch (IOException e) {
+                orphaned++;
+                continue;
+            }
+            if (seen[0] == 0) {
+                continue;
+            }
+            long full = 0;
+            boolean complete = true;
+            for (int i = 1; i < initialCount; i++) {
+                if (seen[i] == 0) {
+                    complete = false;
+                    continue;
+                }
+                long latency = Math.max(0, TimeUnit.NANOSECONDS.toMillis(seen[i] - seen[0]));
+                latencies.add(latency);
+                full = Math.max(full, latency);
+            }
+            if (complete) {
+                fullLatencies.add(full);
+            }
+        }
+        int height = first.getHeight();
+        System.out.println();
+        System.out.printf("Blocks seen:               %d%n", blocks.size());
+        System.out.printf("Final height:              %d%n", height);
+        System.out.printf("Fork rate:                 %.2f%% (%d orphaned)%n",
+                blocks.isEmpty() ? 0.0 : 100.0 * orphaned / blocks.size(), orphaned);
+        printPercentiles("Propagation latency:      ", latencies);
+        printPercentiles("Full propagation latency: ", fullLatencies);
+        //
+        // Start the late nodes and measure the sync throughput
+        //
+        if (lateNodeCount > 0) {
+            System.out.printf("%nStarting %d nodes to synchronize %d blocks%n", lateNodeCount, height);
+            for (int i = initialCount; i < nodeCount; i++) {
+                nodes.get(i).start();
+            }
+            for (int i = initialCount; i < nodeCount; i++) {
+                Node node = nodes.get(i);
+                node.awaitStarted();
+                int startHeight = node.getHeight();
+                long start = System.nanoTime();
+                long timeout = start + TimeUnit.SECONDS.toNanos(Math.max(duration, STARTUP_TIMEOUT));
+                int nodeHeight = startHeight;
+                while (nodeHeight < height && System.nanoTime() < timeout) {
+                    Thread.sleep(POLL_INTERVAL);
+                    nodeHeight = node.getHeight();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("Node %d synchronized %d blocks in %.1f seconds (%.1f blocks per second)%s%n",
+                        node.index, nodeHeight - startHeight, seconds, (nodeHeight - startHeight) / seconds,
+                        nodeHeight < height ? " (timed out)" : "");
+            }
+        }
+    }
+
+    /**
+     * Start the LoadGenerator for the first node
+     *
+     * @throws  IOException             Unable to start the LoadGenerator
+     */
+    private void startLoad() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(getClassPath());
+        command.add(LoadGenerator.class.getName());
+        command.add("--url=http://127.0.0.1:" + apiPort);
+        command.add("--transactions=" + transactions);
+        command.add("--wait=" + duration);
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(harnessDir.resolve("load.log").toFile());
+        loadProcess = builder.start();
+        try (Writer writer = new OutputStreamWriter(loadProcess.getOutputStream(), StandardCharsets.UTF_8)) {
+            writer.write(forgers.get(0));
+            writer.write(System.lineSeparator());
+        }
+        System.out.printf("Submitting %d payments to node 0, see %s%n", transactions, harnessDir.resolve("load.log"));
+    }
+
+    /**
+     * Stop the nodes and the LoadGenerator
+     */
+    private void stopNodes() {
+        if (loadProcess != null) {
+            loadProcess.destroy();
+        }
+        for (Node node : nodes) {
+            if (node.process != null) {
+                node.process.destroy();
+            }
+        }
+        for (Node node : nodes) {
+            try {
+                if (node.process != null && !node.process.waitFor(60, TimeUnit.SECONDS)) {
+                    node.process.destroyForcibly();
+                }
+            } catch (InterruptedException ignore) {}
+        }
+    }
+
+    /**
+     * Return the harness class path with absolute entries
+     *
+     * The nodes run in their own directories, so relative class path entries are resolved
+     * against the harness working directory.
+     *
+     * @return                          Class path
+     */
+    private static String getClassPath() {
+        StringBuilder sb = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparator);
+            }
+            if (entry.endsWith("*")) {
+                sb.append(Paths.get(entry.substring(0, entry.length() - 1)).toAbsolutePath()).append(File.separator).append('*');
+            } else {
+                sb.append(Paths.get(entry).toAbsolutePath());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Print latency percentiles
+     *
+     * @param   label                   Label
+     * @param   latencies               Latencies in milliseconds
+     */
+    private static void printPercentiles(String label, List<Long> latencies) {
+        if (latencies.isEmpty()) {
+            System.out.println(label + " no data");
+            return;
+        }
+        Collections.sort(latencies);
+        int size = latencies.size();
+        System.out.printf("%s p50 %d ms, p90 %d ms, p99 %d ms, max %d ms%n", label,
+                latencies.get((size - 1) / 2), latencies.get((int)Math.ceil(0.9 * size) - 1),
+                latencies.get((int)Math.ceil(0.99 * size) - 1), latencies.get(size - 1));
+    }
+
+    /**
+     * Harness node
+     */
+    private final class Node {
+
+        /** Node index */
+        private final int index;
+
+        /** Peer address */
+        private final String host;
+
+        /** Node directory */
+        private final Path dir;
+
+        /** API client */
+        private final NodeClient client;
+
+        /** Node process */
+        private Process process;
+
+        /**
+         * Create the node
+         *
+         * @param   index               Node index
+         * @throws  IOException         Unable to create the node directory
+         */
+        private Node(int index) throws IOException {
+            this.index = index;
+            this.host = "127.0.0." + (index + 2);
+            this.dir = harnessDir.resolve("node-" + index).toAbsolutePath();
+            this.client = new NodeClient("http://127.0.0.1:" + (apiPort + index));
+            Files.createDirectories(dir);
+        }
+
+        /**
+         * Write the node properties and start the node process
+         *
+         * @throws  IOException         Unable to start the node
+         */
+        private void start() throws IOException {
+            StringBuilder peers = new StringBuilder();
+            for (int i = 0; i < nodeCount; i++) {
+                if (i != index) {
+                    peers.append("127.0.0.").append(i + 2).append(';');
+                }
+            }
+            Properties properties = new Properties();
+            properties.setProperty("spa.isTestnet", "true");
+            properties.setProperty("spa.isOffline", "false");
+            properties.setProperty("spa.allowLoopbackPeers", "true");
+            properties.setProperty("spa.myAddress", host);
+            properties.setProperty("spa.peerServerHost", host);
+            properties.setProperty("spa.shareMyAddress", "true");
+            properties.setProperty("spa.testnetPeers", peers.toString());
+            properties.setProperty("spa.defaultTestnetPeers", peers.toString());
+            properties.setProperty("spa.getMorePeers", "false");
+            properties.setProperty("spa.usePeersDb", "false");
+            properties.setProperty("spa.savePeers", "false");
+            properties.setProperty("spa.enablePeerUPnP", "false");
+            properties.setProperty("spa.enableAPIUPnP", "false");
+            properties.setProperty("spa.apiServerHost", "127.0.0.1");
+            properties.setProperty("spa.apiServerPort", Integer.toString(apiPort + index));
+            properties.setProperty("spa.dbDir", dir.resolve("spa_db").resolve("spa").toString());
+            properties.setProperty("spa.launchDesktopApplication", "false");
+            nodeProperties.forEach(properties::setProperty);
+            Path propertiesFile = dir.resolve("spa.properties");
+            try (OutputStream out = Files.newOutputStream(propertiesFile)) {
+                properties.store(out, "Testnet harness node " + index);
+            }
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-Dspa.properties=" + propertiesFile);
+            command.add("-cp");
+            command.add(getClassPath());
+            command.add("spa.Spa");
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.directory(dir.toFile());
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(dir.resolve("node.log").toFile());
+            process = builder.start();
+            System.out.printf("Node %d started on %s, API port %d, directory %s%n", index, host, apiPort + index, dir);
+        }
+
+        /**
+         * Wait until the node API is available
+         *
+         * @throws  IOException         Node did not start
+         * @throws  InterruptedException  Wait interrupted
+         */
+        private void awaitStarted() throws IOException, InterruptedException {
+            long timeout = System.currentTimeMillis() + STARTUP_TIMEOUT * 1000L;
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IOException("Node " + index + " stopped, see " + dir.resolve("node.log"));
+                }
+                try {
+                    JSONObject response = client.call("getBlockchainStatus");
+                    if (!Boolean.TRUE.equals(response.get("isStarting"))) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > timeout) {
+                        throw new IOException("Node " + index + " did not start: " + e.getMessage());
+                    }
+                }
+                if (System.currentTimeMillis() > timeout) {
+                    throw new IOException("Node " + index + " did not start within " + STARTUP_TIMEOUT + " seconds");
+                }
+                Thread.sleep(1000);
+            }
+        }
+
+        /**
+         * Return the node height
+         *
+         * @return                      Blockchain height
+         * @throws  IOException         Unable to contact the node
+         */
+        private int getHeight() throws IOException {
+            return ((Long)client.call("getBlockchainStatus").get("numberOfBlocks")).intValue() - 1;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Bloom filter for 64-bit identifiers
+ * </p>
+ * <p>
+ * A Bloom filter can report that an identifier might have been added when it was not, but never
+ * reports that an identifier was not added when it was.  Identifiers cannot be removed.  The filter
+ * is thread-safe and an identifier is visible to other threads as soon as put() returns.
+ * </p>
+ */
+public final class BloomFilter {
+
+    /** Filter bits */
+    private final AtomicLongArray bits;
+
+    /** Number of filter bits */
+    private final long bitCount;
+
+    /** Number of hash functions */
+    private final int hashCount;
+
+    /** Expected number of identifiers */
+    private final long capacity;
+
+    /** Number of identifiers added */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Create a Bloom filter
+     *
+     * @param   capacity            Expected number of identifiers
+     * @param   falsePositiveRate   False positive rate when the filter contains the expected number of identifiers
+     */
+    public BloomFilter(long capacity, double falsePositiveRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        long requiredBits = (long)Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int)Math.min((requiredBits + 63) / 64, Integer.MAX_VALUE);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long)words * 64;
+        this.hashCount = Math.max(1, (int)Math.round((double)bitCount / capacity * Math.log(2)));
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add an identifier
+     *
+     * @param   id                  Identifier
+     */
+    public void put(long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            int word = (int)(bit >>> 6);
+            long mask = 1L << bit;
+            long value = bits.get(word);
+            while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+                value = bits.get(word);
+            }
+        }
+        count.increment();
+    }
+
+    /**
+     * Check if an identifier might have been added
+     *
+     * @param   id                  Identifier
+     * @return                      FALSE if the identifier was definitely not added
+     */
+    public boolean mightContain(long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((bits.get((int)(bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the expected number of identifiers
+     *
+     * @return                      Filter capacity
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the number of identifiers added
+     *
+     * @return                      Identifier count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Mix the identifier bits
+     *
+     * @param   value               Value to mix
+     * @return                      Mixed value
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Bounded concurrent cache
+ * </p>
+ * <p>
+ * Entries are evicted using the CLOCK approximation of least recently used eviction.  A lookup
+ * only sets the referenced flag of the entry, so lookups do not lock and can run in parallel.
+ * When the cache exceeds its capacity, the clock hand sweeps the entries, clearing the referenced
+ * flag of each entry it passes and evicting entries which have not been referenced since the
+ * previous sweep.  Only threads adding entries to a full cache wait for the eviction.
+ * </p>
+ *
+ * @param   <K>                 Key type
+ * @param   <V>                 Value type
+ */
+public final class ClockCache<K, V> {
+
+    /** Cache entries */
+    private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+
+    /** Maximum number of entries */
+    private final int capacity;
+
+    /** Clock hand (guarded by the cache monitor) */
+    private Iterator<Map.Entry<K, Entry<V>>> hand;
+
+    /**
+     * Create a cache
+     *
+     * @param   capacity            Maximum number of entries
+     */
+    public ClockCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Return a cached value
+     *
+     * @param   key                 Key
+     * @return                      Value or null if the key is not cached
+     */
+    public V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Check if a key is cached
+     *
+     * The referenced flag of the entry is not changed.
+     *
+     * @param   key                 Key
+     * @return                      TRUE if the key is cached
+     */
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Add or replace a cached value
+     *
+     * @param   key                 Key
+     * @param   value               Value
+     */
+    public void put(K key, V value) {
+        map.put(key, new Entry<>(value));
+        if (map.size() > capacity) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove a cached value
+     *
+     * @param   key                 Key
+     */
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    /**
+     * Remove all cached values
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * Return the number of cached values
+     *
+     * @return                      Number of cached values
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Evict entries until the cache is within its capacity
+     */
+    private synchronized void evict() {
+        while (map.size() > capacity) {
+            if (hand == null || !hand.hasNext()) {
+                hand = map.entrySet().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<K, Entry<V>> mapEntry = hand.next();
+            Entry<V> entry = mapEntry.getValue();
+            if (entry.referenced) {
+                entry.referenced = false;
+            } else {
+                map.remove(mapEntry.getKey(), entry);
+            }
+        }
+    }
+
+    /**
+     * Cache entry
+     *
+     * @param   <V>                 Value type
+     */
+    private static final class Entry<V> {
+
+        /** Cached value */
+        private final V value;
+
+        /** Entry has been referenced since the clock hand last passed */
+        private volatile boolean referenced;
+
+        /**
+         * Create a cache entry
+         *
+         * @param   value           Cached value
+         */
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,792 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package spa.util;
+
+import spa.Spa;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Flight Recorder support
+ *
+ * The custom events are emitted by the block, transaction, peer and forging pipelines and
+ * can be correlated with the JVM events (garbage collection, I/O, monitor contention) using
+ * the standard JDK tooling.  An event costs little more than the event allocation when no
+ * recording is enabled for it, and the event values are only set when the event is committed.
+ *
+ * The jdk.jfr API is not part of Java 8 before 8u262, so the events are defined at runtime
+ * using jdk.jfr.EventFactory and are accessed through method handles.  The events do nothing
+ * when the JVM does not provide the Flight Recorder.
+ *
+ * A single recording can be started and stopped through the startFlightRecording and
+ * stopFlightRecording APIs.  Recordings are written to the spa.flightRecordingDir directory.
+ */
+public final class FlightRecorder {
+
+    /** Event types */
+    private static final int BLOCK_PUSH = 0;
+    private static final int VALIDATE_TRANSACTIONS = 1;
+    private static final int BLOCK_ACCEPT = 2;
+    private static final int PROCESS_TRANSACTION = 3;
+    private static final int PEER_SEND = 4;
+    private static final int FORGE = 5;
+
+    /** Flight Recorder is available */
+    private static final boolean available = checkAvailable();
+
+    /** Recording directory */
+    private static final Path recordingDir;
+    static {
+        Path dir = Paths.get(Spa.getStringProperty("spa.flightRecordingDir", "recordings"));
+        recordingDir = dir.isAbsolute() ? dir : Paths.get(Spa.getUserHomeDir()).resolve(dir);
+    }
+
+    /** Current recording (jdk.jfr.Recording) */
+    private static Object recording;
+
+    /** Current recording file */
+    private static Path recordingFile;
+
+    /**
+     * Check if the Flight Recorder is available
+     *
+     * @return                          TRUE if the Flight Recorder is available
+     */
+    private static boolean checkAvailable() {
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        try {
+            return Jfr.factories.length > 0;
+        } catch (LinkageError e) {
+            Logger.logWarningMessage("Unable to define the Flight Recorder events", e);
+            return false;
+        }
+    }
+
+    /**
+     * Check if the Flight Recorder is available
+     *
+     * @return                          TRUE if the Flight Recorder is available
+     */
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Start a recording
+     *
+     * @param   name                    Recording file name without a directory
+     * @param   configuration           JFR configuration name ("default" or "profile")
+     * @param   duration                Recording duration in seconds or 0 to record until stopped
+     * @return                          Recording file
+     * @throws  IllegalStateException   Flight Recorder is not available or a recording is already running
+     * @throws  IOException             Unable to create the recording file
+     * @throws  ParseException          Configuration is not valid
+     */
+    public static synchronized Path startRecording(String name, String configuration, int duration)
+                                            throws IOException, ParseException {
+        if (!available) {
+            throw new IllegalStateException("Flight Recorder is not supported by this JVM");
+        }
+        if (recording != null && Jfr.isRunning(recording)) {
+            throw new IllegalStateException("Recording " + recordingFile + " is already running");
+        }
+        closeRecording();
+        Path file = recordingDir.resolve(name).normalize();
+        if (!file.getParent().equals(recordingDir.normalize())) {
+            throw new IllegalArgumentException("Recording name must not contain a directory");
+        }
+        Files.createDirectories(recordingDir);
+        recording = Jfr.startRecording(configuration, file, duration);
+        recordingFile = file;
+        Logger.logInfoMessage("Flight recording started, recording file " + file);
+        return file;
+    }
+
+    /**
+     * Stop the current recording and write the recording file
+     *
+     * @return                          Recording file or null if there is no recording
+     * @throws  IOException             Unable to write the recording file
+     */
+    public static synchronized Path stopRecording() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        Path file = recordingFile;
+        try {
+            if (Jfr.isRunning(recording)) {
+                Jfr.invoke(recording, "stop");
+            }
+        } catch (ParseException e) {
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            closeRecording();
+        }
+        Logger.logInfoMessage("Flight recording stopped, recording file " + file);
+        return file;
+    }
+
+    /**
+     * Return the current recording file
+     *
+     * @return                          Recording file or null if no recording is running
+     */
+    public static synchronized Path getRecordingFile() {
+        return recording != null && Jfr.isRunning(recording) ? recordingFile : null;
+    }
+
+    /**
+     * Close the current recording
+     */
+    private static void closeRecording() {
+        if (recording != null) {
+            try {
+                Jfr.invoke(recording, "close");
+            } catch (IOException | ParseException e) {
+                throw new RuntimeException(e.toString(), e);
+            } finally {
+                recording = null;
+                recordingFile = null;
+            }
+        }
+    }
+
+    /**
+     * Flight Recorder event
+     *
+     * The jdk.jfr event is only created when the Flight Recorder is available and
+     * the event type is enabled in a running recording.
+     */
+    public abstract static class RecorderEvent {
+
+        /** jdk.jfr event or null if the event is not enabled */
+        private final Object event;
+
+        /**
+         * Create the event
+         *
+         * @param   type                Event type
+         */
+        private RecorderEvent(int type) {
+            event = available ? Jfr.newEvent(type) : null;
+        }
+
+        /**
+         * Start timing the event
+         */
+        public void begin() {
+            if (event != null) {
+                Jfr.begin(event);
+            }
+        }
+
+        /**
+         * Stop timing the event
+         */
+        public void end() {
+            if (event != null) {
+                Jfr.end(event);
+            }
+        }
+
+        /**
+         * Check if the event should be committed
+         *
+         * @return                      TRUE if the event should be committed
+         */
+        boolean shouldCommit() {
+            return event != null && Jfr.shouldCommit(event);
+        }
+
+        /**
+         * Commit the event
+         *
+         * @param   values              Event values in field order
+         */
+        void commit(Object... values) {
+            for (int i = 0; i < values.length; i++) {
+                Jfr.set(event, i, values[i]);
+            }
+            Jfr.commit(event);
+        }
+    }
+
+    /**
+     * Block pushed to the blockchain
+     */
+    public static final class BlockPushEvent extends RecorderEvent {
+
+        /** Lock wait in nanoseconds */
+        private long lockWait;
+
+        /**
+         * Create the event
+         */
+        public BlockPushEvent() {
+            super(BLOCK_PUSH);
+        }
+
+        /**
+         * Record the time spent waiting for the blockchain lock
+         *
+         * @param   lockWait            Lock wait in nanoseconds
+         */
+        public void setLockWait(long lockWait) {
+            this.lockWait = lockWait;
+        }
+
+        /**
+         * Commit the event if it is enabled
+         *
+         * @param   height              Block height
+         * @param   blockId             Block identifier
+         * @param   transactionCount    Number of transactions
+         * @param   accepted            TRUE if the block was accepted
+         */
+        public void commit(int height, long blockId, int transactionCount, boolean accepted) {
+            if (shouldCommit()) {
+                commit(height, blockId, transactionCount, lockWait, accepted);
+            }
+        }
+    }
+
+    /**
+     * Block transactions validated
+     */
+    public static final class ValidateTransactionsEvent extends RecorderEvent {
+
+        /**
+         * Create the event
+         */
+        public ValidateTransactionsEvent() {
+            super(VALIDATE_TRANSACTIONS);
+        }
+
+        /**
+         * Commit the event if it is enabled
+         *
+         * @param   height              Block height
+         * @param   transactionCount    Number of transactions
+         */
+        public void commit(int height, int transactionCount) {
+            if (shouldCommit()) {
+                commit(new Object[] {height, transactionCount});
+            }
+        }
+    }
+
+    /**
+     * Block transactions applied
+     */
+    public static final class BlockAcceptEvent extends RecorderEvent {
+
+        /**
+         * Create the event
+         */
+        public BlockAcceptEvent() {
+            super(BLOCK_ACCEPT);
+        }
+
+        /**
+         * Commit the event if it is enabled
+         *
+         * @param   height              Block height
+         * @param   transactionCount    Number of transactions
+         */
+        public void commit(int height, int transactionCount) {
+            if (shouldCommit()) {
+                commit(new Object[] {height, transactionCount});
+            }
+        }
+    }
+
+    /**
+     * Unconfirmed transaction processed
+     */
+    public static final class ProcessTransactionEvent extends RecorderEvent {
+
+        /** Lock wait in nanoseconds */
+        private long lockWait;
+
+        /**
+         * Create the event
+         */
+        public ProcessTransactionEvent() {
+            super(PROCESS_TRANSACTION);
+        }
+
+        /**
+         * Record the time spent waiting for the blockchain lock
+         *
+         * @param   lockWait            Lock wait in nanoseconds
+         */
+        public void setLockWait(long lockWait) {
+            this.lockWait = lockWait;
+        }
+
+        /**
+         * Commit the event if it is enabled
+         *
+         * @param   transactionId       Transaction identifier
+         * @param   type                Transaction type
+         * @param   subtype             Transaction subtype
+         * @param   accepted            TRUE if the transaction was accepted
+         */
+        public void commit(long transactionId, byte type, byte subtype, boolean accepted) {
+            if (shouldCommit()) {
+                commit(transactionId, type, subtype, lockWait, accepted);
+            }
+        }
+    }
+
+    /**
+     * Request sent to a peer
+     */
+    public static final class PeerSendEvent extends RecorderEvent {
+
+        /** Request sent using the WebSocket session */
+        private boolean webSocket;
+
+        /** Number of bytes sent */
+        private long bytesOut;
+
+        /** Number of bytes received */
+        private long bytesIn;
+
+        /**
+         * Create the event
+         */
+        public PeerSendEvent() {
+            super(PEER_SEND);
+        }
+
+        /**
+         * Record the request transport
+         *
+         * @param   webSocket           TRUE if the request was sent using the WebSocket session
+         */
+        public void setWebSocket(boolean webSocket) {
+            this.webSocket = webSocket;
+        }
+
+        /**
+         * Record the number of bytes sent
+         *
+         * @param   bytesOut            Number of bytes sent
+         */
+        public void setBytesOut(long bytesOut) {
+            this.bytesOut = bytesOut;
+        }
+
+        /**
+         * Record the number of bytes received
+         *
+         * @param   bytesIn             Number of bytes received
+         */
+        public void setBytesIn(long bytesIn) {
+            this.bytesIn = bytesIn;
+        }
+
+        /**
+         * Commit the event if it is enabled
+         *
+         * @param   host                Peer host
+         * @param   success             TRUE if a response was received
+         */
+        public void commit(String host, boolean success) {
+            if (shouldCommit()) {
+                commit(host, webSocket, bytesOut, bytesIn, success);
+            }
+        }
+    }
+
+    /**
+     * Block forging attempt
+     */
+    public static final class ForgeEvent extends RecorderEvent {
+
+        /**
+         * Create the event
+         */
+        public ForgeEvent() {
+            super(FORGE);
+        }
+
+        /**
+         * Commit the event if it is enabled
+         *
+         * @param   height              Height of the forged block
+         * @param   accountId           Forging account identifier
+         * @param   generated           TRUE if a block was generated
+         */
+        public void commit(int height, long accountId, boolean generated) {
+            if (shouldCommit()) {
+                commit(new Object[] {height, accountId, generated});
+            }
+        }
+    }
+
+    /**
+     * jdk.jfr access
+     *
+     * This class is only loaded after jdk.jfr.EventFactory has been found, so a JVM
+     * without the Flight Recorder never resolves the jdk.jfr classes.
+     */
+    private static final class Jfr {
+
+        /** Event factories (jdk.jfr.EventFactory) indexed by event type */
+        private static final Object[] factories;
+
+        /** Event types (jdk.jfr.EventType) indexed by event type */
+        private static final Object[] eventTypes;
+
+        /** Method handles */
+        private static final MethodHandle newEvent;
+        private static final MethodHandle isEnabled;
+        private static final MethodHandle begin;
+        private static final MethodHandle end;
+        private static final MethodHandle shouldCommit;
+        private static final MethodHandle set;
+        private static final MethodHandle commit;
+
+        /** jdk.jfr classes used to define the events */
+        private static final Constructor<?> annotationElement;
+        private static final Constructor<?> valueDescriptor;
+        private static final Class<?> labelClass;
+        private static final Class<?> timespanClass;
+        private static final Class<?> dataAmountClass;
+
+        static {
+            try {
+                Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+                Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+                annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+                valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+                labelClass = Class.forName("jdk.jfr.Label");
+                timespanClass = Class.forName("jdk.jfr.Timespan");
+                dataAmountClass = Class.forName("jdk.jfr.DataAmount");
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                newEvent = lookup.findVirtual(factoryClass, "newEvent", MethodType.methodType(eventClass))
+                        .asType(MethodType.methodType(Object.class, Object.class));
+                isEnabled = lookup.findVirtual(eventTypeClass, "isEnabled", MethodType.methodType(boolean.class))
+                        .asType(MethodType.methodType(boolean.class, Object.class));
+                begin = lookup.findVirtual(eventClass, "begin", MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(void.class, Object.class));
+                end = lookup.findVirtual(eventClass, "end", MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(void.class, Object.class));
+                shouldCommit = lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class))
+                        .asType(MethodType.methodType(boolean.class, Object.class));
+                set = lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class))
+                        .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+                commit = lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(void.class, Object.class));
+                Method create = factoryClass.getMethod("create", List.class, List.class);
+                Method getEventType = factoryClass.getMethod("getEventType");
+                List<List<Object>> definitions = Arrays.asList(
+                        eventDefinition("spa.BlockPush", "Block Push", "Blockchain", "Block validated, applied and committed", true),
+                        eventDefinition("spa.ValidateTransactions", "Validate Transactions", "Blockchain", null, false),
+                        eventDefinition("spa.BlockAccept", "Block Accept", "Blockchain", null, false),
+                        eventDefinition("spa.ProcessTransaction", "Process Transaction", "Transactions", null, false),
+                        eventDefinition("spa.PeerSend", "Peer Send", "Peers", null, false),
+                        eventDefinition("spa.Forge", "Forge", "Forging", null, true));
+                List<List<Object>> fields = Arrays.asList(
+                        Arrays.asList(field(int.class, "height", "Height"),
+                                field(long.class, "blockId", "Block Id"),
+                                field(int.class, "transactionCount", "Transactions"),
+                                field(long.class, "lockWait", "Lock Wait", timespanClass, "NANOSECONDS"),
+                                field(boolean.class, "accepted", "Accepted")),
+                        Arrays.asList(field(int.class, "height", "Height"),
+                                field(int.class, "transactionCount", "Transactions")),
+                        Arrays.asList(field(int.class, "height", "Height"),
+                                field(int.class, "transactionCount", "Transactions")),
+                        Arrays.asList(field(long.class, "transactionId", "Transaction Id"),
+                                field(byte.class, "type", "Type"),
+                                field(byte.class, "subtype", "Subtype"),
+                                field(long.class, "lockWait", "Lock Wait", timespanClass, "NANOSECONDS"),
+                                field(boolean.class, "accepted", "Accepted")),
+                        Arrays.asList(field(String.class, "host", "Host"),
+                                field(boolean.class, "webSocket", "WebSocket"),
+                                field(long.class, "bytesOut", "Bytes Out", dataAmountClass, "BYTES"),
+                                field(long.class, "bytesIn", "Bytes In", dataAmountClass, "BYTES"),
+                                field(boolean.class, "success", "Success")),
+                        Arrays.asList(field(int.class, "height", "Height"),
+                                field(long.class, "accountId", "Account Id"),
+                                field(boolean.class, "generated", "Generated")));
+                factories = new Object[definitions.size()];
+                eventTypes = new Object[definitions.size()];
+                for (int i = 0; i < factories.length; i++) {
+                    factories[i] = create.invoke(null, definitions.get(i), fields.get(i));
+                    eventTypes[i] = getEventType.invoke(factories[i]);
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * Create the event annotations
+         *
+         * @param   name                Event name
+         * @param   label               Event label
+         * @param   category            Event category
+         * @param   description         Event description or null
+         * @param   stackTrace          TRUE to record the stack trace
+         * @return                      Annotation elements
+         * @throws  ReflectiveOperationException  Unable to create the annotations
+         */
+        private static List<Object> eventDefinition(String name, String label, String category, String description,
+                                                    boolean stackTrace) throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation("jdk.jfr.Name", name));
+            annotations.add(annotation("jdk.jfr.Label", label));
+            annotations.add(annotation("jdk.jfr.Category", new String[] {"SPARTA", category}));
+            if (description != null) {
+                annotations.add(annotation("jdk.jfr.Description", description));
+            }
+            annotations.add(annotation("jdk.jfr.StackTrace", stackTrace));
+            return annotations;
+        }
+
+        /**
+         * Create an event field
+         *
+         * @param   type                Field type
+         * @param   name                Field name
+         * @param   label               Field label
+         * @param   unit                Optional unit annotation class followed by the unit
+         * @return                      Value descriptor
+         * @throws  ReflectiveOperationException  Unable to create the field
+         */
+        private static Object field(Class<?> type, String name, String label, Object... unit)
+                                            throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotationElement.newInstance(labelClass, label));
+            if (unit.length > 0) {
+                annotations.add(annotationElement.newInstance(unit[0], unit[1]));
+            }
+            return valueDescriptor.newInstance(type, name, annotations);
+        }
+
+        /**
+         * Create an annotation element
+         *
+         * @param   className           Annotation class name
+         * @param   value               Annotation value
+         * @return                      Annotation element
+         * @throws  ReflectiveOperationException  Unable to create the annotation
+         */
+        private static Object annotation(String className, Object value) throws ReflectiveOperationException {
+            return annotationElement.newInstance(Class.forName(className).asSubclass(Annotation.class), value);
+        }
+
+        /**
+         * Create an event if the event type is enabled
+         *
+         * @param   type                Event type
+         * @return                      Event or null if the event type is not enabled
+         */
+        static Object newEvent(int type) {
+            try {
+                return (boolean)isEnabled.invokeExact(eventTypes[type]) ? (Object)newEvent.invokeExact(factories[type]) : null;
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        static void begin(Object event) {
+            try {
+                begin.invokeExact(event);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        static void end(Object event) {
+            try {
+                end.invokeExact(event);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        static boolean shouldCommit(Object event) {
+            try {
+                return (boolean)shouldCommit.invokeExact(event);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        static void set(Object event, int index, Object value) {
+            try {
+                set.invokeExact(event, index, value);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        static void commit(Object event) {
+            try {
+                commit.invokeExact(event);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        /**
+         * Create and start a recording
+         *
+         * @param   configuration       Configuration name
+         * @param   file                Recording file
+         * @param   duration            Recording duration in seconds or 0 to record until stopped
+         * @return                      Recording (jdk.jfr.Recording)
+         * @throws  IOException         Unable to create the recording file
+         * @throws  ParseException      Configuration is not valid
+         */
+        static Object startRecording(String configuration, Path file, int duration) throws IOException, ParseException {
+            try {
+                Class<?> configurationClass = Class.forName("jdk.jfr.Configuration");
+                Object config;
+                try {
+                    config = configurationClass.getMethod("getConfiguration", String.class).invoke(null, configuration);
+                } catch (InvocationTargetException e) {
+                    throw unwrap(e);
+                }
+                Object newRecording = Class.forName("jdk.jfr.Recording").getConstructor(configurationClass).newInstance(config);
+                invoke(newRecording, "setName", String.class, "spa");
+                invoke(newRecording, "setToDisk", boolean.class, true);
+                invoke(newRecording, "setDestination", Path.class, file);
+                if (duration > 0) {
+                    invoke(newRecording, "setDuration", Duration.class, Duration.ofSeconds(duration));
+                }
+                invoke(newRecording, "start");
+                return newRecording;
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+
+        /**
+         * Check if a recording is running
+         *
+         * @param   recording           Recording (jdk.jfr.Recording)
+         * @return                      TRUE if the recording is running
+         */
+        static boolean isRunning(Object recording) {
+            try {
+                return "RUNNING".equals(String.valueOf(recording.getClass().getMethod("getState").invoke(recording)));
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+
+        /**
+         * Invoke a recording method
+         *
+         * @param   recording           Recording (jdk.jfr.Recording)
+         * @param   name                Method name
+         * @throws  IOException         I/O error occurred
+         * @throws  ParseException      Configuration is not valid
+         */
+        static void invoke(Object recording, String name) throws IOException, ParseException {
+            invoke(recording, name, null, null);
+        }
+
+        /**
+         * Invoke a recording method
+         *
+         * @param   recording           Recording (jdk.jfr.Recording)
+         * @param   name                Method name
+         * @param   parameterType       Parameter type or null if the method has no parameter
+         * @param   value               Parameter value
+         * @throws  IOException         I/O error occurred
+         * @throws  ParseException      Configuration is not valid
+         */
+        private static void invoke(Object recording, String name, Class<?> parameterType, Object value)
+                                            throws IOException, ParseException {
+            try {
+                if (parameterType == null) {
+                    recording.getClass().getMethod(name).invoke(recording);
+                } else {
+                    recording.getClass().getMethod(name, parameterType).invoke(recording, value);
+                }
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+
+        /**
+         * Rethrow the cause of a reflective call
+         *
+         * @param   e                   Invocation exception
+         * @return                      Runtime exception for any other cause
+         * @throws  IOException         I/O error occurred
+         * @throws  ParseException      Configuration is not valid
+         */
+        private static RuntimeException unwrap(InvocationTargetException e) throws IOException, ParseException {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof ParseException) {
+                throw (ParseException)cause;
+            }
+            return propagate(cause);
+        }
+
+        /**
+         * Return an unchecked exception for a method handle failure
+         *
+         * @param   t                   Failure
+         * @return                      Runtime exception
+         */
+        private static RuntimeException propagate(Throwable t) {
+            if (t instanceof RuntimeException) {
+                return (RuntimeException)t;
+            }
+            if (t instanceof Error) {
+                throw (Error)t;
+            }
+            return new RuntimeException(t.toString(), t);
+        }
+    }
+
+    private FlightRecorder() {}
+}
@@ -22,17 +22,26 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * QueuedThreadPool creates threads to process requests until the maximum pool
  * size is reached.  Additional requests are queued until a thread becomes
  * available.  Threads that are idle for 60 seconds are terminated if the
  * pool size is greater than the core size.
+ *
+ * The time each task waits before it starts running is recorded so the
+ * queue depth and wait times can be reported.
  */
 public class QueuedThreadPool extends ThreadPoolExecutor {
 
+    /** Thread pool name */
+    private final String name;
+
     /** Core pool size */
     private int coreSize;
 
@@ -42,6 +51,15 @@ public class QueuedThreadPool extends ThreadPoolExecutor {
     /** Pending task queue */
     private final LinkedBlockingQueue<Runnable> pendingQueue = new LinkedBlockingQueue<>();
 
+    /** Number of tasks started */
+    private final AtomicLong startedCount = new AtomicLong();
+
+    /** Total task wait time (nanoseconds) */
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    /** Maximum task wait time (nanoseconds) */
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
     /**
      * Create the queued thread pool
      *
@@ -50,10 +68,64 @@ public class QueuedThreadPool extends ThreadPoolExecutor {
      */
     public QueuedThreadPool(int coreSize, int maxSize) {
         super(coreSize, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+        this.name = "pool";
+        this.coreSize = coreSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create a named queued thread pool
+     *
+     * @param   name                    Thread pool name
+     * @param   coreSize                Core pool size
+     * @param   maxSize                 Maximum pool size
+     * @param   threadFactory           Thread factory or null to create platform threads
+     */
+    public QueuedThreadPool(String name, int coreSize, int maxSize, ThreadFactory threadFactory) {
+        super(coreSize, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                threadFactory != null ? threadFactory : new NamedThreadFactory(name));
+        this.name = name;
         this.coreSize = coreSize;
         this.maxSize = maxSize;
     }
 
+    /**
+     * Return the thread pool name
+     *
+     * @return                          Thread pool name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the number of tasks waiting for a thread
+     *
+     * @return                          Number of queued tasks
+     */
+    public int getQueueSize() {
+        return pendingQueue.size();
+    }
+
+    /**
+     * Return the average time a task waited before it started
+     *
+     * @return                          Average wait time (milliseconds)
+     */
+    public long getAverageWaitTime() {
+        long count = startedCount.get();
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get() / count) : 0;
+    }
+
+    /**
+     * Return the longest time a task waited before it started
+     *
+     * @return                          Maximum wait time (milliseconds)
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
     /**
      * Return the core pool size
      *
@@ -106,10 +178,11 @@ public class QueuedThreadPool extends ThreadPoolExecutor {
         if (task == null)
             throw new NullPointerException("Null runnable passed to execute()");
         try {
+            Runnable timedTask = new TimedTask(task);
             if (getActiveCount() >= maxSize) {
-                pendingQueue.put(task);
+                pendingQueue.put(timedTask);
             } else {
-                super.execute(task);
+                super.execute(timedTask);
             }
         } catch (InterruptedException exc) {
             throw new RejectedExecutionException("Unable to queue task", exc);
@@ -167,6 +240,23 @@ public class QueuedThreadPool extends ThreadPoolExecutor {
         return futureTask;
     }
 
+    /**
+     * Record the task wait time
+     *
+     * @param   thread                  Thread running the task
+     * @param   task                    Runnable task
+     */
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        super.beforeExecute(thread, task);
+        if (task instanceof TimedTask) {
+            long waitTime = System.nanoTime() - ((TimedTask)task).queueTime;
+            startedCount.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+            maxWaitTime.accumulateAndGet(waitTime, Math::max);
+        }
+    }
+
     /**
      * Process task completion
      *
@@ -180,4 +270,65 @@ public class QueuedThreadPool extends ThreadPoolExecutor {
         if (newTask != null)
             super.execute(newTask);
     }
+
+    /**
+     * Task with the time it was queued
+     */
+    private static class TimedTask implements Runnable {
+
+        /** Task */
+        private final Runnable task;
+
+        /** Queue time (nanoseconds) */
+        private final long queueTime = System.nanoTime();
+
+        /**
+         * Create the timed task
+         *
+         * @param   task                Task
+         */
+        private TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Run the task
+         */
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * Thread factory creating named platform threads
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        /** Thread name prefix */
+        private final String prefix;
+
+        /** Thread number */
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        /**
+         * Create the thread factory
+         *
+         * @param   name                Thread pool name
+         */
+        private NamedThreadFactory(String name) {
+            this.prefix = name + "-";
+        }
+
+        /**
+         * Create a new thread
+         *
+         * @param   runnable            Thread runnable
+         * @return                      Thread
+         */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, prefix + threadNumber.incrementAndGet());
+        }
+    }
 }
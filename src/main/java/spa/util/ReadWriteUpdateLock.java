@@ -16,8 +16,13 @@
 
 package spa.util;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * <p>
@@ -38,6 +43,19 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * will cause the thread to be suspended until the blocking lock is released.
  * An attempt to obtain the write lock while holding the read lock will result in an exception.</li>
  * </ul>
+ * <p>
+ * A short reader can use an optimistic read instead of the read lock.  The reader obtains a stamp
+ * using tryOptimisticRead(), reads the shared state and then calls validate() to check that the
+ * write lock was not obtained in the meantime.  The reader must obtain the read lock and repeat the
+ * reads if the stamp is zero or is no longer valid.  The update lock does not invalidate the stamp,
+ * so an optimistic read must not be used for state which is changed while holding the update lock.
+ * </p>
+ * <p>
+ * Lock metrics can be enabled when the lock is created.  The wait time, hold time and queue length
+ * are then recorded for each call site obtaining the lock, along with the threads currently holding
+ * the lock.  Determining the call site requires a stack trace for each outermost lock request, so
+ * metrics should only be enabled while diagnosing lock contention.
+ * </p>
  */
 public class ReadWriteUpdateLock {
 
@@ -47,6 +65,18 @@ public class ReadWriteUpdateLock {
     /** Lock used by the update lock */
     private final ReentrantLock mutexLock = new ReentrantLock();
 
+    /** Sequence lock held while the write lock is held and used for optimistic reads */
+    private final StampedLock sequenceLock = new StampedLock();
+
+    /** Lock metrics enabled */
+    private final boolean metricsEnabled;
+
+    /** Call site statistics */
+    private final ConcurrentMap<String, SiteStatistics> siteStatistics = new ConcurrentHashMap<>();
+
+    /** Current lock holders */
+    private final ConcurrentMap<Holder, Boolean> holders = new ConcurrentHashMap<>();
+
     /** Lock counts */
     private final ThreadLocal<LockCount> lockCount = ThreadLocal.withInitial(LockCount::new);
 
@@ -59,6 +89,146 @@ public class ReadWriteUpdateLock {
     /** Write lock */
     private final WriteLock writeLock = new WriteLock();
 
+    /**
+     * Create the lock without lock metrics
+     */
+    public ReadWriteUpdateLock() {
+        this(false);
+    }
+
+    /**
+     * Create the lock
+     *
+     * @param   metricsEnabled      TRUE to record lock metrics
+     */
+    public ReadWriteUpdateLock(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * Start an optimistic read
+     *
+     * @return                      Read stamp or zero if the write lock is held
+     */
+    public long tryOptimisticRead() {
+        return sequenceLock.tryOptimisticRead();
+    }
+
+    /**
+     * Check if the write lock has not been obtained since the optimistic read was started
+     *
+     * @param   stamp               Read stamp returned by tryOptimisticRead()
+     * @return                      TRUE if the reads performed since the stamp was obtained are consistent
+     */
+    public boolean validate(long stamp) {
+        return stamp != 0 && sequenceLock.validate(stamp);
+    }
+
+    /**
+     * Check if lock metrics are enabled
+     *
+     * @return                      TRUE if lock metrics are enabled
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Return the number of threads waiting for the lock
+     *
+     * @return                      Queue length
+     */
+    public int getQueueLength() {
+        return sharedLock.getQueueLength() + mutexLock.getQueueLength();
+    }
+
+    /**
+     * Return the call site statistics
+     *
+     * @return                      Statistics for each call site and lock type
+     */
+    public List<SiteStatistics> getSiteStatistics() {
+        List<SiteStatistics> statistics = new ArrayList<>(siteStatistics.size());
+        siteStatistics.values().forEach(stats -> statistics.add(stats.copy()));
+        return statistics;
+    }
+
+    /**
+     * Return the current lock holders
+     *
+     * @return                      Lock holders
+     */
+    public List<Holder> getHolders() {
+        return new ArrayList<>(holders.keySet());
+    }
+
+    /**
+     * Reset the call site statistics
+     */
+    public void resetStatistics() {
+        siteStatistics.clear();
+    }
+
+    /**
+     * Start recording an outermost lock request
+     *
+     * @param   type                Lock type
+     * @return                      Lock holder or null if metrics are not enabled
+     */
+    private Holder startRequest(String type) {
+        if (!metricsEnabled) {
+            return null;
+        }
+        return new Holder(type, getCallSite(), getQueueLength());
+    }
+
+    /**
+     * Record an obtained lock
+     *
+     * @param   holder              Lock holder or null if metrics are not enabled
+     */
+    private void lockObtained(Holder holder) {
+        if (holder != null) {
+            holder.lockTime = System.nanoTime();
+            holders.put(holder, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Record a released lock
+     *
+     * @param   holder              Lock holder or null if metrics are not enabled
+     */
+    private void lockReleased(Holder holder) {
+        if (holder != null) {
+            holders.remove(holder);
+            long holdTime = System.nanoTime() - holder.lockTime;
+            siteStatistics.computeIfAbsent(holder.type + " " + holder.site, key -> new SiteStatistics(holder.type, holder.site))
+                    .update(holder.lockTime - holder.requestTime, holdTime, holder.queueLength);
+        }
+    }
+
+    /**
+     * Return the call site for the current lock request
+     *
+     * The call site is the first stack frame outside the lock and the lock wrapper methods
+     *
+     * @return                      Call site
+     */
+    private static String getCallSite() {
+        StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+        for (StackTraceElement element : trace) {
+            String className = element.getClassName();
+            String methodName = element.getMethodName();
+            if (className.equals(Thread.class.getName()) || className.startsWith(ReadWriteUpdateLock.class.getName()) ||
+                    methodName.equals("readLock") || methodName.equals("updateLock") || methodName.equals("writeLock")) {
+                continue;
+            }
+            return className.substring(className.lastIndexOf('.') + 1) + "." + methodName;
+        }
+        return "unknown";
+    }
+
     /**
      * Return the read lock
      *
@@ -119,8 +289,13 @@ public class ReadWriteUpdateLock {
          */
         @Override
         public void lock() {
+            LockCount counts = lockCount.get();
+            Holder holder = (counts.readCount == 0 ? startRequest("read") : null);
             sharedLock.readLock().lock();
-            lockCount.get().readCount++;
+            if (counts.readCount++ == 0) {
+                counts.readHolder = holder;
+                lockObtained(holder);
+            }
         }
 
         /**
@@ -128,8 +303,12 @@ public class ReadWriteUpdateLock {
          */
         @Override
         public void unlock() {
+            LockCount counts = lockCount.get();
             sharedLock.readLock().unlock();
-            lockCount.get().readCount--;
+            if (--counts.readCount == 0) {
+                lockReleased(counts.readHolder);
+                counts.readHolder = null;
+            }
         }
 
         /**
@@ -162,8 +341,12 @@ public class ReadWriteUpdateLock {
             if (counts.writeCount != 0) {
                 throw new IllegalStateException("Update lock cannot be obtained while holding the write lock");
             }
+            Holder holder = (counts.updateCount == 0 ? startRequest("update") : null);
             mutexLock.lock();
-            counts.updateCount++;
+            if (counts.updateCount++ == 0) {
+                counts.updateHolder = holder;
+                lockObtained(holder);
+            }
         }
 
         /**
@@ -171,8 +354,12 @@ public class ReadWriteUpdateLock {
          */
         @Override
         public void unlock() {
+            LockCount counts = lockCount.get();
             mutexLock.unlock();
-            lockCount.get().updateCount--;
+            if (--counts.updateCount == 0) {
+                lockReleased(counts.updateHolder);
+                counts.updateHolder = null;
+            }
         }
 
         /**
@@ -202,13 +389,18 @@ public class ReadWriteUpdateLock {
             if (counts.readCount != 0) {
                 throw new IllegalStateException("Write lock cannot be obtained while holding the read lock");
             }
+            Holder holder = (counts.writeCount == 0 ? startRequest("write") : null);
             boolean lockObtained = false;
             try {
                 mutexLock.lock();
                 counts.updateCount++;
                 lockObtained = true;
                 sharedLock.writeLock().lock();
-                counts.writeCount++;
+                if (counts.writeCount++ == 0) {
+                    counts.writeStamp = sequenceLock.writeLock();
+                    counts.writeHolder = holder;
+                    lockObtained(holder);
+                }
             } catch (Exception exc) {
                 if (lockObtained) {
                     mutexLock.unlock();
@@ -224,10 +416,20 @@ public class ReadWriteUpdateLock {
         @Override
         public void unlock() {
             LockCount counts = lockCount.get();
+            if (counts.writeCount == 1) {
+                sequenceLock.unlockWrite(counts.writeStamp);
+                counts.writeStamp = 0;
+            }
             sharedLock.writeLock().unlock();
-            counts.writeCount--;
+            if (--counts.writeCount == 0) {
+                lockReleased(counts.writeHolder);
+                counts.writeHolder = null;
+            }
             mutexLock.unlock();
-            counts.updateCount--;
+            if (--counts.updateCount == 0) {
+                lockReleased(counts.updateHolder);
+                counts.updateHolder = null;
+            }
         }
 
         /**
@@ -254,5 +456,251 @@ public class ReadWriteUpdateLock {
 
         /** Write lock count */
         private int writeCount;
+
+        /** Sequence lock stamp while the write lock is held */
+        private long writeStamp;
+
+        /** Read lock holder */
+        private Holder readHolder;
+
+        /** Update lock holder */
+        private Holder updateHolder;
+
+        /** Write lock holder */
+        private Holder writeHolder;
+    }
+
+    /**
+     * Lock holder
+     */
+    public static final class Holder {
+
+        /** Lock type */
+        private final String type;
+
+        /** Call site */
+        private final String site;
+
+        /** Thread name */
+        private final String threadName;
+
+        /** Queue length when the lock was requested */
+        private final int queueLength;
+
+        /** Time the lock was requested (nanoseconds) */
+        private final long requestTime;
+
+        /** Time the lock was obtained (nanoseconds) */
+        private volatile long lockTime;
+
+        /**
+         * Create a lock holder
+         *
+         * @param   type            Lock type
+         * @param   site            Call site
+         * @param   queueLength     Queue length
+         */
+        private Holder(String type, String site, int queueLength) {
+            this.type = type;
+            this.site = site;
+            this.threadName = Thread.currentThread().getName();
+            this.queueLength = queueLength;
+            this.requestTime = System.nanoTime();
+        }
+
+        /**
+         * Return the lock type
+         *
+         * @return                  Lock type (read, update or write)
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Return the call site
+         *
+         * @return                  Call site
+         */
+        public String getSite() {
+            return site;
+        }
+
+        /**
+         * Return the thread name
+         *
+         * @return                  Thread name
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * Return the time the lock has been held
+         *
+         * @return                  Hold time (microseconds)
+         */
+        public long getHoldTime() {
+            return (System.nanoTime() - lockTime) / 1000;
+        }
+    }
+
+    /**
+     * Call site statistics
+     */
+    public static final class SiteStatistics {
+
+        /** Lock type */
+        private final String type;
+
+        /** Call site */
+        private final String site;
+
+        /** Number of times the lock was obtained */
+        private long count;
+
+        /** Total wait time (nanoseconds) */
+        private long waitTime;
+
+        /** Maximum wait time (nanoseconds) */
+        private long maxWaitTime;
+
+        /** Total hold time (nanoseconds) */
+        private long holdTime;
+
+        /** Maximum hold time (nanoseconds) */
+        private long maxHoldTime;
+
+        /** Total queue length */
+        private long queueLength;
+
+        /** Maximum queue length */
+        private int maxQueueLength;
+
+        /**
+         * Create the call site statistics
+         *
+         * @param   type            Lock type
+         * @param   site            Call site
+         */
+        private SiteStatistics(String type, String site) {
+            this.type = type;
+            this.site = site;
+        }
+
+        /**
+         * Update the statistics
+         *
+         * @param   waitTime        Wait time (nanoseconds)
+         * @param   holdTime        Hold time (nanoseconds)
+         * @param   queueLength     Queue length when the lock was requested
+         */
+        private synchronized void update(long waitTime, long holdTime, int queueLength) {
+            count++;
+            this.waitTime += waitTime;
+            maxWaitTime = Math.max(maxWaitTime, waitTime);
+            this.holdTime += holdTime;
+            maxHoldTime = Math.max(maxHoldTime, holdTime);
+            this.queueLength += queueLength;
+            maxQueueLength = Math.max(maxQueueLength, queueLength);
+        }
+
+        /**
+         * Return a copy of the statistics
+         *
+         * @return                  Statistics copy
+         */
+        private synchronized SiteStatistics copy() {
+            SiteStatistics stats = new SiteStatistics(type, site);
+            stats.count = count;
+            stats.waitTime = waitTime;
+            stats.maxWaitTime = maxWaitTime;
+            stats.holdTime = holdTime;
+            stats.maxHoldTime = maxHoldTime;
+            stats.queueLength = queueLength;
+            stats.maxQueueLength = maxQueueLength;
+            return stats;
+        }
+
+        /**
+         * Return the lock type
+         *
+         * @return                  Lock type (read, update or write)
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Return the call site
+         *
+         * @return                  Call site
+         */
+        public String getSite() {
+            return site;
+        }
+
+        /**
+         * Return the number of times the lock was obtained
+         *
+         * @return                  Lock count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Return the total wait time
+         *
+         * @return                  Wait time (microseconds)
+         */
+        public long getWaitTime() {
+            return waitTime / 1000;
+        }
+
+        /**
+         * Return the maximum wait time
+         *
+         * @return                  Wait time (microseconds)
+         */
+        public long getMaxWaitTime() {
+            return maxWaitTime / 1000;
+        }
+
+        /**
+         * Return the total hold time
+         *
+         * @return                  Hold time (microseconds)
+         */
+        public long getHoldTime() {
+            return holdTime / 1000;
+        }
+
+        /**
+         * Return the maximum hold time
+         *
+         * @return                  Hold time (microseconds)
+         */
+        public long getMaxHoldTime() {
+            return maxHoldTime / 1000;
+        }
+
+        /**
+         * Return the average queue length when the lock was requested
+         *
+         * @return                  Average queue length
+         */
+        public double getAverageQueueLength() {
+            return count == 0 ? 0 : (double)queueLength / count;
+        }
+
+        /**
+         * Return the maximum queue length when the lock was requested
+         *
+         * @return                  Maximum queue length
+         */
+        public int getMaxQueueLength() {
+            return maxQueueLength;
+        }
     }
 }
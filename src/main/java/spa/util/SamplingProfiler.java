@@ -0,0 +1,298 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package spa.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Sampling profiler
+ *
+ * The profiler samples the stack of each thread at a fixed interval using the thread MX bean
+ * and aggregates the samples by thread group.  Threads whose names differ only by a trailing
+ * sequence number, such as the Jetty worker threads, are combined into a single group.  The
+ * thread CPU time is measured for each group over the profile duration.
+ *
+ * The aggregated stacks are returned in the collapsed stack format used by flame graph tools,
+ * with one line for each distinct stack consisting of the thread group and the stack frames
+ * from the outermost frame to the innermost frame separated by semicolons, followed by the
+ * number of samples.
+ *
+ * Only one profile can be taken at a time.
+ */
+public final class SamplingProfiler {
+
+    /** Trailing thread sequence number */
+    private static final Pattern THREAD_NUMBER = Pattern.compile("[-#]?\\d+$");
+
+    /** Profile in progress */
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Profile the threads
+     *
+     * The profile is taken by the calling thread, which is not included in the samples.
+     *
+     * @param   duration                Profile duration in milliseconds
+     * @param   interval                Sample interval in milliseconds
+     * @param   depth                   Maximum stack depth
+     * @param   threadPrefix            Only sample threads whose name starts with this prefix or null for all threads
+     * @param   includeWaiting          TRUE to sample threads that are not runnable
+     * @return                          Profile or null if another profile is in progress
+     * @throws  InterruptedException    Profile interrupted
+     */
+    public static Profile profile(int duration, int interval, int depth, String threadPrefix, boolean includeWaiting)
+                                            throws InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        ThreadMXBean tmxBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTimeSupported = tmxBean.isThreadCpuTimeSupported();
+        boolean cpuTimeEnabled = cpuTimeSupported && tmxBean.isThreadCpuTimeEnabled();
+        try {
+            if (cpuTimeSupported && !cpuTimeEnabled) {
+                tmxBean.setThreadCpuTimeEnabled(true);
+            }
+            long selfId = Thread.currentThread().getId();
+            Map<Long, Long> startCpuTimes = new HashMap<>();
+            if (cpuTimeSupported) {
+                for (long id : tmxBean.getAllThreadIds()) {
+                    startCpuTimes.put(id, tmxBean.getThreadCpuTime(id));
+                }
+            }
+            Map<Long, String> threadGroups = new HashMap<>();
+            Map<String, ThreadStatistics> groups = new HashMap<>();
+            Map<String, Integer> stacks = new HashMap<>();
+            StringBuilder sb = new StringBuilder(1024);
+            int sampleCount = 0;
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MILLISECONDS.toNanos(duration);
+            long nextSample = start;
+            while (true) {
+                for (ThreadInfo info : tmxBean.getThreadInfo(tmxBean.getAllThreadIds(), depth)) {
+                    if (info == null || info.getThreadId() == selfId) {
+                        continue;
+                    }
+                    String name = info.getThreadName();
+                    if (threadPrefix != null && !name.startsWith(threadPrefix)) {
+                        continue;
+                    }
+                    String group = threadGroups.computeIfAbsent(info.getThreadId(),
+                            id -> THREAD_NUMBER.matcher(name).replaceFirst(""));
+                    ThreadStatistics stats = groups.computeIfAbsent(group, ThreadStatistics::new);
+                    stats.threadIds.add(info.getThreadId());
+                    if (!includeWaiting && info.getThreadState() != Thread.State.RUNNABLE) {
+                        continue;
+                    }
+                    StackTraceElement[] elements = info.getStackTrace();
+                    if (elements.length == 0) {
+                        continue;
+                    }
+                    stats.samples++;
+                    sb.setLength(0);
+                    sb.append(group);
+                    for (int i = elements.length - 1; i >= 0; i--) {
+                        sb.append(';').append(elements[i].getClassName()).append('.').append(elements[i].getMethodName());
+                    }
+                    stacks.merge(sb.toString(), 1, Integer::sum);
+                }
+                sampleCount++;
+                nextSample += TimeUnit.MILLISECONDS.toNanos(interval);
+                long now = System.nanoTime();
+                if (nextSample >= end) {
+                    break;
+                }
+                if (nextSample > now) {
+                    TimeUnit.NANOSECONDS.sleep(nextSample - now);
+                } else {
+                    nextSample = now;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (cpuTimeSupported) {
+                for (ThreadStatistics stats : groups.values()) {
+                    for (Long id : stats.threadIds) {
+                        long cpuTime = tmxBean.getThreadCpuTime(id);
+                        if (cpuTime >= 0) {
+                            stats.cpuTime += cpuTime - startCpuTimes.getOrDefault(id, 0L);
+                        }
+                    }
+                }
+            }
+            List<ThreadStatistics> threads = new ArrayList<>(groups.values());
+            threads.sort((s1, s2) -> s1.cpuTime != s2.cpuTime ? Long.compare(s2.cpuTime, s1.cpuTime) : Integer.compare(s2.samples, s1.samples));
+            List<Map.Entry<String, Integer>> stackList = new ArrayList<>(stacks.entrySet());
+            stackList.sort((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
+            sb.setLength(0);
+            for (Map.Entry<String, Integer> entry : stackList) {
+                sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+            return new Profile(TimeUnit.NANOSECONDS.toMillis(elapsed), sampleCount, cpuTimeSupported, threads, sb.toString());
+        } finally {
+            if (cpuTimeSupported && !cpuTimeEnabled) {
+                tmxBean.setThreadCpuTimeEnabled(false);
+            }
+            running.set(false);
+        }
+    }
+
+    /**
+     * Profile result
+     */
+    public static final class Profile {
+
+        /** Profile duration (milliseconds) */
+        private final long duration;
+
+        /** Number of sampling passes */
+        private final int sampleCount;
+
+        /** Thread CPU time measured */
+        private final boolean cpuTimeSupported;
+
+        /** Thread group statistics ordered by CPU time */
+        private final List<ThreadStatistics> threads;
+
+        /** Collapsed stacks */
+        private final String collapsedStacks;
+
+        private Profile(long duration, int sampleCount, boolean cpuTimeSupported, List<ThreadStatistics> threads,
+                        String collapsedStacks) {
+            this.duration = duration;
+            this.sampleCount = sampleCount;
+            this.cpuTimeSupported = cpuTimeSupported;
+            this.threads = threads;
+            this.collapsedStacks = collapsedStacks;
+        }
+
+        /**
+         * Return the profile duration
+         *
+         * @return                      Duration (milliseconds)
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Return the number of sampling passes
+         *
+         * @return                      Number of sampling passes
+         */
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * Check if the thread CPU time was measured
+         *
+         * @return                      TRUE if the CPU time was measured
+         */
+        public boolean isCpuTimeSupported() {
+            return cpuTimeSupported;
+        }
+
+        /**
+         * Return the thread group statistics
+         *
+         * @return                      Thread group statistics ordered by descending CPU time
+         */
+        public List<ThreadStatistics> getThreads() {
+            return threads;
+        }
+
+        /**
+         * Return the collapsed stacks
+         *
+         * @return                      Collapsed stacks, one stack per line
+         */
+        public String getCollapsedStacks() {
+            return collapsedStacks;
+        }
+    }
+
+    /**
+     * Thread group statistics
+     */
+    public static final class ThreadStatistics {
+
+        /** Thread group name */
+        private final String name;
+
+        /** Threads in the group */
+        private final Set<Long> threadIds = new HashSet<>();
+
+        /** Number of stack samples */
+        private int samples;
+
+        /** CPU time (nanoseconds) */
+        private long cpuTime;
+
+        private ThreadStatistics(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Return the thread group name
+         *
+         * @return                      Thread group name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Return the number of threads in the group
+         *
+         * @return                      Number of threads
+         */
+        public int getThreadCount() {
+            return threadIds.size();
+        }
+
+        /**
+         * Return the number of stack samples
+         *
+         * @return                      Number of samples
+         */
+        public int getSamples() {
+            return samples;
+        }
+
+        /**
+         * Return the CPU time used by the group during the profile
+         *
+         * @return                      CPU time (milliseconds)
+         */
+        public long getCpuTime() {
+            return TimeUnit.NANOSECONDS.toMillis(cpuTime);
+        }
+    }
+
+    private SamplingProfiler() {}
+}
@@ -20,11 +20,13 @@ import spa.Spa;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 public final class ThreadPool {
@@ -34,6 +36,78 @@ public final class ThreadPool {
     private static List<Runnable> beforeStartJobs = new ArrayList<>();
     private static List<Runnable> lastBeforeStartJobs = new ArrayList<>();
     private static List<Runnable> afterStartJobs = new ArrayList<>();
+    private static final Map<String, QueuedThreadPool> executors = new LinkedHashMap<>();
+    private static Boolean useVirtualThreads;
+
+    /**
+     * Create a named executor
+     *
+     * The number of threads is limited to the maximum pool size and additional tasks
+     * are queued.  The maximum pool size can be changed with the spa.&lt;name&gt;Threads
+     * property.
+     *
+     * @param   name                Executor name
+     * @param   coreSize            Core pool size
+     * @param   maxSize             Default maximum pool size
+     * @return                      Executor
+     */
+    public static synchronized QueuedThreadPool newExecutor(String name, int coreSize, int maxSize) {
+        return newExecutor(name, coreSize, maxSize, null);
+    }
+
+    /**
+     * Create a named executor for tasks that block on network I/O
+     *
+     * Virtual threads are used when spa.useVirtualThreads is enabled and they are
+     * supported by the Java runtime.  The number of concurrent tasks is still limited
+     * to the maximum pool size.
+     *
+     * @param   name                Executor name
+     * @param   coreSize            Core pool size
+     * @param   maxSize             Default maximum pool size
+     * @return                      Executor
+     */
+    public static synchronized QueuedThreadPool newBlockingExecutor(String name, int coreSize, int maxSize) {
+        if (useVirtualThreads == null) {
+            useVirtualThreads = Spa.getBooleanProperty("spa.useVirtualThreads");
+        }
+        ThreadFactory threadFactory = null;
+        if (useVirtualThreads) {
+            threadFactory = virtualThreadFactory(name);
+            if (threadFactory == null) {
+                Logger.logWarningMessage("Virtual threads are not supported by this Java runtime, using platform threads for " + name);
+                useVirtualThreads = false;
+            }
+        }
+        return newExecutor(name, coreSize, maxSize, threadFactory);
+    }
+
+    private static QueuedThreadPool newExecutor(String name, int coreSize, int maxSize, ThreadFactory threadFactory) {
+        int maxThreads = Math.max(Spa.getIntProperty("spa." + name + "Threads", maxSize), 1);
+        QueuedThreadPool executor = new QueuedThreadPool(name, Math.min(coreSize, maxThreads), maxThreads, threadFactory);
+        executors.put(name, executor);
+        return executor;
+    }
+
+    /**
+     * Return the named executors
+     *
+     * @return                      Executor list
+     */
+    public static synchronized List<QueuedThreadPool> getExecutors() {
+        return new ArrayList<>(executors.values());
+    }
+
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
 
     public static synchronized void runBeforeStart(Runnable runnable, boolean runLast) {
         if (scheduledThreadPool != null) {
@@ -66,17 +140,39 @@ public final class ThreadPool {
     }
 
     public static synchronized void start(int timeMultiplier) {
+        start(timeMultiplier, false);
+    }
+
+    /**
+     * Run the startup tasks and start the background jobs
+     *
+     * The final tasks start the API and peer servers.  When fast start is enabled,
+     * they are run before the other startup tasks so the servers are available
+     * while the blockchain is being loaded.
+     *
+     * @param   timeMultiplier      Time multiplier
+     * @param   fastStart           TRUE to run the final tasks first
+     */
+    public static synchronized void start(int timeMultiplier, boolean fastStart) {
         if (scheduledThreadPool != null) {
             throw new IllegalStateException("Executor service already started");
         }
 
+        if (fastStart) {
+            Logger.logDebugMessage("Running " + lastBeforeStartJobs.size() + " server tasks...");
+            runAll(lastBeforeStartJobs);
+            lastBeforeStartJobs = null;
+        }
+
         Logger.logDebugMessage("Running " + beforeStartJobs.size() + " tasks...");
         runAll(beforeStartJobs);
         beforeStartJobs = null;
 
-        Logger.logDebugMessage("Running " + lastBeforeStartJobs.size() + " final tasks...");
-        runAll(lastBeforeStartJobs);
-        lastBeforeStartJobs = null;
+        if (!fastStart) {
+            Logger.logDebugMessage("Running " + lastBeforeStartJobs.size() + " final tasks...");
+            runAll(lastBeforeStartJobs);
+            lastBeforeStartJobs = null;
+        }
 
         Logger.logDebugMessage("Starting " + backgroundJobs.size() + " background jobs");
         scheduledThreadPool = Executors.newScheduledThreadPool(backgroundJobs.size());